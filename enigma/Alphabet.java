@@ -27,33 +27,18 @@ class Alphabet {
 
     /** Returns true if C is in this alphabet. */
     boolean contains(char c) {
-        char[] alphabetArray = _chars.toCharArray();
-        for (int i = 0; i < alphabetArray.length; i++) {
-            if (alphabetArray[i] == c) {
-                return true;
-
-            }
-        }
-        return false;
+        return _chars.indexOf(c) >= 0;
     }
 
     /** Returns character number INDEX in the alphabet, where
      *  0 <= INDEX < size(). */
     char toChar(int index) {
-        char[] alphabetArray = _chars.toCharArray();
-        return alphabetArray[index];
+        return _chars.charAt(index);
     }
 
     /** Returns the index of character C, which must be in the alphabet. */
     int toInt(char c) {
-        char[] alphabetArray = _chars.toCharArray();
-        int saved = 0;
-        for (int i = 0; i < alphabetArray.length; i++) {
-            if (alphabetArray[i] == c) {
-                saved = i;
-            }
-        }
-        return saved;
+        return Math.max(0, _chars.lastIndexOf(c));
     }
 
 }
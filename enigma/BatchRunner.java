@@ -0,0 +1,200 @@
+package enigma;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ExecutionException;
+
+import static enigma.EnigmaException.*;
+
+/** Runs many Enigma jobs in one JVM, so that start-up, class loading and
+ *  warm-up are paid once.  Usage:
+ *      java enigma.BatchRunner [--jobs=N] MANIFEST
+ *  Each line of MANIFEST that is not blank and does not start with '#'
+ *  holds the arguments of one job, as for Main: any options, then a
+ *  configuration file, an input file and an output file.  Up to N jobs
+ *  (by default, one per processor) run at a time, and configuration
+ *  files are read once and shared by all jobs that use them.
+ *
+ *  For each job, in manifest order, prints its manifest line number, the
+ *  code with which Main would have exited for it, and its output file,
+ *  followed by the error message, if any.  Exits with code 1 if any job
+ *  failed.  Jobs run with --stats report each message tagged with their
+ *  output file; the totals of the jobs that succeeded are merged into
+ *  one run report for each alphabet, written on the standard error at
+ *  the end.
+ *  @author Neha Kompella
+ */
+public final class BatchRunner {
+
+    /** Run the jobs specified by ARGS (see above). */
+    public static void main(String... args) {
+        try {
+            System.exit(new BatchRunner(args).run());
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** A runner of the jobs specified by ARGS. */
+    BatchRunner(String[] args) {
+        int k = 0;
+        _threads = Runtime.getRuntime().availableProcessors();
+        while (k < args.length && args[k].startsWith("--")) {
+            if (!args[k].startsWith("--jobs=")) {
+                throw error("unknown option: %s", args[k]);
+            }
+            try {
+                _threads =
+                    Integer.parseInt(args[k].substring("--jobs=".length()));
+            } catch (NumberFormatException excp) {
+                throw error("bad option: %s", args[k]);
+            }
+            if (_threads <= 0) {
+                throw error("bad option: %s", args[k]);
+            }
+            k += 1;
+        }
+        if (args.length != k + 1) {
+            throw error("expected one manifest file");
+        }
+        _jobs = readManifest(args[k]);
+    }
+
+    /** Run all my jobs, reporting on each, and return 0 if all succeeded,
+     *  or 1 otherwise. */
+    int run() {
+        ExecutorService pool = Executors.newFixedThreadPool(_threads);
+        ArrayList<Future<String>> results = new ArrayList<>();
+        for (Job job : _jobs) {
+            results.add(pool.submit(() -> job.run(_configs)));
+        }
+        pool.shutdown();
+        int failures = 0;
+        LinkedHashMap<String, CipherStats> totals = new LinkedHashMap<>();
+        for (int i = 0; i < _jobs.size(); i++) {
+            Job job = _jobs.get(i);
+            String message;
+            try {
+                message = results.get(i).get();
+            } catch (ExecutionException excp) {
+                message = String.valueOf(excp.getCause());
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+                message = "interrupted";
+            }
+            if (message == null) {
+                System.out.printf("%d 0 %s%n", job.line(), job.output());
+                CipherStats stats = job.stats();
+                if (stats != null) {
+                    totals.computeIfAbsent(stats.alphabet(), chars ->
+                        new CipherStats(new Alphabet(chars))).merge(stats);
+                }
+            } else {
+                failures += 1;
+                System.out.printf("%d 1 %s Error: %s%n", job.line(),
+                                  job.output(), message);
+            }
+        }
+        for (CipherStats stats : totals.values()) {
+            System.err.println(stats.report());
+        }
+        System.err.printf("%d jobs, %d failed; %s%n", _jobs.size(), failures,
+                          _configs);
+        return failures == 0 ? 0 : 1;
+    }
+
+    /** Return the jobs listed in the manifest file named NAME. */
+    private static ArrayList<Job> readManifest(String name) {
+        ArrayList<Job> jobs = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new FileReader(name))) {
+            int lineNum = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNum += 1;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                jobs.add(new Job(lineNum, line.split("\\s+")));
+            }
+        } catch (IOException excp) {
+            throw error("could not read %s", name);
+        }
+        return jobs;
+    }
+
+    /** One run of Main. */
+    private static final class Job {
+
+        /** The job on manifest line LINE, with arguments ARGS. */
+        Job(int line, String[] args) {
+            _line = line;
+            _args = args;
+        }
+
+        /** Return my manifest line number. */
+        int line() {
+            return _line;
+        }
+
+        /** Return the name of my output file, or "-" if there is none. */
+        String output() {
+            int files = 0;
+            for (String arg : _args) {
+                if (!arg.startsWith("--")) {
+                    files += 1;
+                }
+            }
+            return files == FILES ? _args[_args.length - 1] : "-";
+        }
+
+        /** Run me, taking configurations from CONFIGS, and return null
+         *  on success, or the error message otherwise. */
+        String run(ConfigCache configs) {
+            if (output().equals("-")) {
+                return "batch jobs need configuration, input and output"
+                    + " files";
+            }
+            try {
+                Main main = new Main(_args, configs);
+                main.process();
+                _stats = main.stats();
+                return null;
+            } catch (EnigmaException excp) {
+                return excp.getMessage();
+            }
+        }
+
+        /** Return the statistics gathered by my run, if it succeeded
+         *  and they were wanted, or null. */
+        CipherStats stats() {
+            return _stats;
+        }
+
+        /** Manifest line number. */
+        private final int _line;
+        /** Arguments for Main. */
+        private final String[] _args;
+        /** Statistics gathered by my run, or null. */
+        private CipherStats _stats;
+    }
+
+    /** Number of files named by each job. */
+    private static final int FILES = 3;
+    /** Largest number of configurations kept. */
+    private static final int CONFIG_CACHE_SIZE = 256;
+
+    /** Number of jobs run at once. */
+    private int _threads;
+    /** The jobs, in manifest order. */
+    private final ArrayList<Job> _jobs;
+    /** Configurations shared by my jobs. */
+    private final ConfigCache _configs = new ConfigCache(CONFIG_CACHE_SIZE);
+}
@@ -0,0 +1,150 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static enigma.TestUtils.*;
+
+/** Tests of the batch runner and of its cache of configurations.
+ *  @author Neha Kompella
+ */
+public class BatchRunnerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /** A second configuration, over a different alphabet. */
+    private static final String SMALL_CONFIG =
+        "ABCDEF 4 2 I MA (ABC)(DEF) II MB (AD)(BCEF) III MC (AFCB)(DE)"
+        + " N N (ABCDEF) R R (AB)(CD)(EF)";
+
+    /** Run the jobs listed in MANIFEST with N threads, returning what
+     *  the runner prints on the standard output, and check that it
+     *  returns CODE. */
+    private static String runBatch(String manifest, int n, int code)
+        throws IOException {
+        File file = tempFile(".manifest", manifest);
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(report, true));
+        try {
+            assertEquals(code,
+                         new BatchRunner(new String[] {
+                             "--jobs=" + n, file.getPath() }).run());
+        } finally {
+            System.setOut(stdout);
+        }
+        return report.toString();
+    }
+
+    @Test
+    public void checkAgainstSeparateRuns() throws IOException {
+        Random random = new Random(38);
+        File naval = tempFile(".conf", NAVAL_CONFIG);
+        File small = tempFile(".conf", SMALL_CONFIG);
+        String[] options = { "", "--pipeline ", "--stats " };
+        StringBuilder manifest = new StringBuilder("# jobs\n\n");
+        ArrayList<String[]> jobs = new ArrayList<>();
+        ArrayList<File> outputs = new ArrayList<>();
+        for (int k = 0; k < 12; k++) {
+            String input;
+            File conf;
+            if (k % 4 == 3) {
+                conf = small;
+                input = "* R N I II ABC (AF)\nABCDEF FEDCBA\n\nCAB\n"
+                    + "* R N III I FFF\nDEADBEEF\n";
+            } else {
+                conf = naval;
+                input = randomMessages(random, 10, 10);
+            }
+            File in = tempFile(".inp", input);
+            File out = tempFile(".out", "");
+            String line = options[k % options.length] + conf.getPath() + " "
+                + in.getPath() + " " + out.getPath();
+            manifest.append(line).append('\n');
+            jobs.add(line.trim().split(" "));
+            outputs.add(out);
+        }
+        String report = runBatch(manifest.toString(), 4, 0);
+        for (int k = 0; k < jobs.size(); k++) {
+            String batched = contents(outputs.get(k));
+            assertTrue(report.contains((k + 3) + " 0 "
+                                       + outputs.get(k).getPath()));
+            runMain(jobs.get(k));
+            assertEquals(contents(outputs.get(k)), batched);
+        }
+    }
+
+    @Test
+    public void checkFailures() throws IOException {
+        File naval = tempFile(".conf", NAVAL_CONFIG);
+        File good = tempFile(".inp", "* B BETA I II III AAAA\nHELLOWORLD\n");
+        File bad = tempFile(".inp", "* B BETA I I III AAAA\nHELLOWORLD\n");
+        File out1 = tempFile(".out", "");
+        File out2 = tempFile(".out", "");
+        File out3 = tempFile(".out", "");
+        String report =
+            runBatch(naval + " " + good + " " + out1 + "\n"
+                     + "--pipeline " + naval + " " + bad + " " + out2 + "\n"
+                     + naval + " " + good + "\n"
+                     + naval + " " + good + " " + out3 + "\n", 2, 1);
+        String[] lines = report.split(System.lineSeparator());
+        assertEquals(4, lines.length);
+        assertEquals("1 0 " + out1, lines[0]);
+        assertTrue(lines[1].startsWith("2 1 " + out2 + " Error: "));
+        assertTrue(lines[2].startsWith("3 1 - Error: "));
+        assertEquals("4 0 " + out3, lines[3]);
+        assertEquals("ILBDA AMTAZ" + System.lineSeparator(),
+                     contents(out3).replace(" " + System.lineSeparator(),
+                                            System.lineSeparator()));
+    }
+
+    @Test
+    public void checkConfigCache() throws Exception {
+        File file = tempFile(".conf", SMALL_CONFIG);
+        ConfigCache cache = new ConfigCache(2);
+        MachineConfig config = cache.get(file.getPath());
+        assertTrue(config == cache.get(file.getPath()));
+        Files.write(file.toPath(), (SMALL_CONFIG + " S R (AC)(BE)(DF)")
+                    .getBytes());
+        MachineConfig changed = cache.get(file.getPath());
+        assertTrue(changed != config);
+        assertEquals(6, changed.numAvailable());
+
+        File other = tempFile(".conf", NAVAL_CONFIG);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        ArrayList<Future<MachineConfig>> results = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            results.add(pool.submit(() -> cache.get(other.getPath())));
+        }
+        pool.shutdown();
+        for (Future<MachineConfig> result : results) {
+            assertTrue(result.get() == results.get(0).get());
+        }
+
+        File broken = tempFile(".conf", "ABC 3");
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.get(broken.getPath());
+                fail("bad configuration accepted");
+            } catch (EnigmaException excp) {
+                assertTrue(excp.getMessage().contains("truncated"));
+            }
+        }
+    }
+
+}
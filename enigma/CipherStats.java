@@ -0,0 +1,360 @@
+package enigma;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Statistics of converted text.  For each message (the characters
+ *  converted under one settings line), its length, index of coincidence
+ *  and character frequencies, the last as an array in alphabet order;
+ *  in total, also the frequencies of adjacent pairs of characters within
+ *  a message and the distribution of message lengths.  Pairs are
+ *  counted straight into the totals, so that short messages cost little
+ *  to report.  Counts are kept in primitive arrays (except that pairs
+ *  of characters of large alphabets are counted in a map of the pairs
+ *  seen) by the one thread that feeds me; each message's counts are
+ *  merged into the totals when it ends, and the totals of collectors
+ *  fed by other threads, with the same alphabet, may be merged in
+ *  turn.
+ *  Reports are JSON objects, each on one line, tagged with my label if
+ *  I have one.
+ *  @author Neha Kompella
+ */
+final class CipherStats {
+
+    /** A collector for text in alphabet ALPHA. */
+    CipherStats(Alphabet alpha) {
+        this(alpha, null);
+    }
+
+    /** A collector for text in alphabet ALPHA whose reports are tagged
+     *  with LABEL, unless it is null. */
+    CipherStats(Alphabet alpha, String label) {
+        int n = alpha.size();
+        _label = label;
+        _size = n;
+        _alphabet = alpha;
+        _chars = new char[n];
+        _keys = new String[n];
+        for (int i = 0; i < n; i++) {
+            _chars[i] = alpha.toChar(i);
+            StringBuilder key = new StringBuilder();
+            quote(key, String.valueOf(_chars[i]));
+            _keys[i] = key.append(':').toString();
+        }
+        _letters = new long[n];
+        _bigrams = (long) n * n <= MAX_DENSE_BIGRAMS ? new long[n * n]
+            : null;
+        _lengths = new long[Long.SIZE + 1];
+        _messageLetters = new long[n];
+    }
+
+    /** Start a new message, set up by the settings line SETTINGS,
+     *  ending the current one, if any, and returning its report (see
+     *  end). */
+    String begin(String settings) {
+        String report = end();
+        _settings = settings;
+        _inMessage = true;
+        return report;
+    }
+
+    /** Count the characters of CONVERTED, continuing the current
+     *  message.  Characters outside my alphabet are ignored. */
+    void add(String converted) {
+        Alphabet alpha = _alphabet;
+        long[] letters = _messageLetters, bigrams = _bigrams;
+        int size = _size, prev = _prev;
+        int count = 0;
+        for (int i = 0; i < converted.length(); i++) {
+            char ch = converted.charAt(i);
+            if (!alpha.contains(ch)) {
+                continue;
+            }
+            int c = alpha.toInt(ch);
+            letters[c] += 1;
+            count += 1;
+            if (prev >= 0) {
+                if (bigrams != null) {
+                    bigrams[prev * size + c] += 1;
+                } else {
+                    _sparseBigrams.computeIfAbsent(
+                        (long) prev * size + c, k -> new long[1])[0] += 1;
+                }
+            }
+            prev = c;
+        }
+        _prev = prev;
+        _messageLength += count;
+    }
+
+    /** End the current message, if any, merging its counts into my
+     *  totals and returning its report, or return null if there is no
+     *  current message. */
+    String end() {
+        if (!_inMessage) {
+            return null;
+        }
+        StringBuilder report = start("message");
+        report.append(_messages).append(",\"settings\":");
+        quote(report, _settings);
+        report.append(",\"length\":").append(_messageLength);
+        report.append(",\"ioc\":");
+        format(report, ioc(_messageLetters, _messageLength));
+        report.append(",\"letters\":[");
+        for (int c = 0; c < _size; c++) {
+            if (c > 0) {
+                report.append(',');
+            }
+            report.append(_messageLetters[c]);
+            _letters[c] += _messageLetters[c];
+            _messageLetters[c] = 0;
+        }
+        report.append("]}");
+        _lengths[bucket(_messageLength)] += 1;
+        _total += _messageLength;
+        _messages += 1;
+        _messageLength = 0;
+        _prev = -1;
+        _inMessage = false;
+        return report.toString();
+    }
+
+    /** Add the totals of OTHER, whose current message, if any, has been
+     *  ended, to mine.  OTHER must have my alphabet. */
+    void merge(CipherStats other) {
+        for (int c = 0; c < _size; c++) {
+            _letters[c] += other._letters[c];
+        }
+        if (_bigrams != null) {
+            for (int k = 0; k < _bigrams.length; k++) {
+                _bigrams[k] += other._bigrams[k];
+            }
+        } else {
+            for (Map.Entry<Long, long[]> pair
+                     : other._sparseBigrams.entrySet()) {
+                _sparseBigrams.computeIfAbsent(pair.getKey(),
+                                               k -> new long[1])[0] +=
+                    pair.getValue()[0];
+            }
+        }
+        for (int b = 0; b < _lengths.length; b++) {
+            _lengths[b] += other._lengths[b];
+        }
+        _messages += other._messages;
+        _total += other._total;
+    }
+
+    /** Return the number of messages ended. */
+    long messages() {
+        return _messages;
+    }
+
+    /** Return the number of characters counted in the messages
+     *  ended. */
+    long length() {
+        return _total;
+    }
+
+    /** Return my label, or null. */
+    String label() {
+        return _label;
+    }
+
+    /** Return the characters of my alphabet, in order. */
+    String alphabet() {
+        return new String(_chars);
+    }
+
+    /** Return the report of my totals. */
+    String report() {
+        StringBuilder report = start("messages");
+        report.append(_messages).append(",\"length\":").append(_total);
+        report.append(",\"ioc\":");
+        format(report, ioc(_letters, _total));
+        report.append(",\"letters\":");
+        letters(report, _letters);
+        report.append(",\"bigrams\":{");
+        boolean comma = false;
+        if (_bigrams != null) {
+            for (int k = 0; k < _bigrams.length; k++) {
+                if (_bigrams[k] != 0) {
+                    bigram(report, comma, k, _bigrams[k]);
+                    comma = true;
+                }
+            }
+        } else {
+            Long[] pairs = _sparseBigrams.keySet().toArray(new Long[0]);
+            Arrays.sort(pairs);
+            for (Long k : pairs) {
+                bigram(report, comma, k, _sparseBigrams.get(k)[0]);
+                comma = true;
+            }
+        }
+        report.append("},\"lengths\":{");
+        comma = false;
+        for (int b = 0; b < _lengths.length; b++) {
+            if (_lengths[b] != 0) {
+                long low = b == 0 ? 0 : 1L << (b - 1);
+                long high = b == 0 ? 0 : (1L << (b - 1)) * 2 - 1;
+                report.append(comma ? ",\"" : "\"").append(low);
+                if (high > low) {
+                    report.append('-').append(high);
+                }
+                report.append("\":").append(_lengths[b]);
+                comma = true;
+            }
+        }
+        report.append("}}");
+        return report.toString();
+    }
+
+    /** Return the index of coincidence of text of LENGTH characters
+     *  with character counts LETTERS: the chance that two of its
+     *  characters chosen at random are the same. */
+    static double ioc(long[] letters, long length) {
+        if (length < 2) {
+            return 0.0;
+        }
+        double pairs = 0;
+        for (long n : letters) {
+            pairs += (double) n * (n - 1);
+        }
+        return pairs / ((double) length * (length - 1));
+    }
+
+    /** Return the bucket of the distribution of message lengths that
+     *  holds LENGTH: 0 for empty messages, and otherwise B for lengths
+     *  from 2**(B-1) to 2**B - 1. */
+    private static int bucket(long length) {
+        return Long.SIZE - Long.numberOfLeadingZeros(length);
+    }
+
+    /** Return the start of a report whose first member is named FIRST,
+     *  preceded by my label, if any. */
+    private StringBuilder start(String first) {
+        StringBuilder report = _report;
+        report.setLength(0);
+        report.append('{');
+        if (_label != null) {
+            report.append("\"job\":");
+            quote(report, _label);
+            report.append(',');
+        }
+        return report.append('"').append(first).append("\":");
+    }
+
+    /** Append to REPORT, as a JSON object, the nonzero counts in
+     *  LETTERS, keyed by character. */
+    private void letters(StringBuilder report, long[] letters) {
+        report.append('{');
+        boolean comma = false;
+        for (int c = 0; c < _size; c++) {
+            if (letters[c] != 0) {
+                if (comma) {
+                    report.append(',');
+                }
+                report.append(_keys[c]).append(letters[c]);
+                comma = true;
+            }
+        }
+        report.append('}');
+    }
+
+    /** Append to REPORT, preceded by a comma if COMMA, the JSON member
+     *  for the pair of characters numbered K with count COUNT. */
+    private void bigram(StringBuilder report, boolean comma, long k,
+                        long count) {
+        if (comma) {
+            report.append(',');
+        }
+        quote(report, new String(new char[] {
+            _chars[(int) (k / _size)], _chars[(int) (k % _size)] }));
+        report.append(':').append(count);
+    }
+
+    /** Append S to REPORT as a JSON string, or null if S is null. */
+    private static void quote(StringBuilder report, String s) {
+        if (s == null) {
+            report.append("null");
+            return;
+        }
+        report.append('"');
+        if (plain(s)) {
+            report.append(s).append('"');
+            return;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                report.append('\\').append(c);
+            } else if (c < ' ') {
+                report.append(String.format("\\u%04x", (int) c));
+            } else {
+                report.append(c);
+            }
+        }
+        report.append('"');
+    }
+
+    /** Return true iff S needs no escaping in a JSON string. */
+    private static boolean plain(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\' || c < ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Append X, which is between 0 and 1, to REPORT with six decimal
+     *  places. */
+    private static void format(StringBuilder report, double x) {
+        long micros = Math.round(x * MICROS);
+        report.append(micros / MICROS).append('.');
+        String fraction = Long.toString(micros % MICROS + MICROS);
+        report.append(fraction, 1, fraction.length());
+    }
+
+    /** Units of the last decimal place of a formatted statistic. */
+    private static final long MICROS = 1_000_000;
+    /** Largest number of pairs of characters counted in an array. */
+    private static final long MAX_DENSE_BIGRAMS = 1 << 16;
+
+    /** Label of my reports, or null. */
+    private final String _label;
+    /** Buffer in which reports are built. */
+    private final StringBuilder _report = new StringBuilder();
+    /** Size of the alphabet. */
+    private final int _size;
+    /** The characters of the alphabet, in order. */
+    private final char[] _chars;
+    /** For each character, its quoted name and a colon, as JSON. */
+    private final String[] _keys;
+    /** The alphabet. */
+    private final Alphabet _alphabet;
+    /** Total counts of characters over the messages ended, and of pairs
+     *  over all messages (entry A * size + B counts A followed by B), the
+     *  latter null if the alphabet has more than MAX_DENSE_BIGRAMS
+     *  pairs. */
+    private final long[] _letters, _bigrams;
+    /** Counts of the pairs seen over all messages, keyed as in _bigrams,
+     *  if _bigrams is null. */
+    private final HashMap<Long, long[]> _sparseBigrams = new HashMap<>();
+    /** Entry B is the number of messages ended whose length falls in
+     *  bucket B (see bucket). */
+    private final long[] _lengths;
+    /** Number of messages ended, and of their characters. */
+    private long _messages, _total;
+    /** Counts of characters in the current message. */
+    private final long[] _messageLetters;
+    /** Length of the current message. */
+    private long _messageLength;
+    /** Last character of the current message, or -1. */
+    private int _prev = -1;
+    /** True iff a message has been begun and not ended. */
+    private boolean _inMessage;
+    /** Settings line of the current message. */
+    private String _settings;
+}
@@ -0,0 +1,110 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+import static enigma.TestUtils.*;
+
+/** Tests of the statistics of converted text.
+ *  @author Neha Kompella
+ */
+public class CipherStatsTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    @Test
+    public void checkCipherStats() {
+        CipherStats stats = new CipherStats(new Alphabet("ABC"));
+        assertEquals(null, stats.begin("* one"));
+        stats.add("AAB");
+        stats.add("CA");
+        assertEquals("{\"message\":0,\"settings\":\"* one\",\"length\":5,"
+                     + "\"ioc\":0.300000,\"letters\":[3,1,1]}",
+                     stats.begin("* two"));
+        stats.add("BB");
+        stats.end();
+        CipherStats other = new CipherStats(new Alphabet("ABC"), "out2");
+        other.begin("* three");
+        assertEquals("{\"job\":\"out2\",\"message\":0,\"settings\":"
+                     + "\"* three\",\"length\":0,\"ioc\":0.000000,"
+                     + "\"letters\":[0,0,0]}", other.end());
+        stats.merge(other);
+        assertEquals("{\"messages\":3,\"length\":7,\"ioc\":0.285714,"
+                     + "\"letters\":{\"A\":3,\"B\":3,\"C\":1},"
+                     + "\"bigrams\":{\"AA\":1,\"AB\":1,\"BB\":1,"
+                     + "\"BC\":1,\"CA\":1},"
+                     + "\"lengths\":{\"0\":1,\"2-3\":1,\"4-7\":1}}",
+                     stats.report());
+    }
+
+    @Test
+    public void checkOutsideAlphabet() {
+        CipherStats stats = new CipherStats(new Alphabet("AB\""));
+        stats.begin("* one");
+        stats.add("A-B A\"\u00e9");
+        stats.end();
+        assertEquals("{\"messages\":1,\"length\":4,\"ioc\":0.166667,"
+                     + "\"letters\":{\"A\":2,\"B\":1,\"\\\"\":1},"
+                     + "\"bigrams\":{\"AB\":1,\"A\\\"\":1,\"BA\":1},"
+                     + "\"lengths\":{\"4-7\":1}}",
+                     stats.report());
+    }
+
+    @Test
+    public void checkLargeAlphabet() {
+        int n = 3000;
+        Alphabet alpha = alphabet(n);
+        Random random = new Random(48);
+        CipherStats[] parts = {
+            new CipherStats(alpha), new CipherStats(alpha)
+        };
+        TreeMap<Long, Integer> pairs = new TreeMap<>();
+        int length = 0;
+        for (int message = 0; message < 40; message++) {
+            CipherStats stats = parts[message % 2];
+            stats.begin("* " + message);
+            int prev = -1;
+            for (int line = random.nextInt(4); line >= 0; line--) {
+                StringBuilder text = new StringBuilder();
+                for (int i = random.nextInt(200); i > 0; i--) {
+                    if (random.nextInt(10) == 0) {
+                        text.append(' ');
+                        continue;
+                    }
+                    int c = random.nextInt(50) * 60;
+                    text.append(alpha.toChar(c));
+                    if (prev >= 0) {
+                        pairs.merge((long) prev * n + c, 1, Integer::sum);
+                    }
+                    prev = c;
+                    length += 1;
+                }
+                stats.add(text.toString());
+            }
+            stats.end();
+        }
+        parts[0].merge(parts[1]);
+        StringBuilder expected = new StringBuilder("\"bigrams\":{");
+        for (long k : pairs.keySet()) {
+            if (expected.charAt(expected.length() - 1) != '{') {
+                expected.append(',');
+            }
+            expected.append('"').append(alpha.toChar((int) (k / n)))
+                .append(alpha.toChar((int) (k % n))).append("\":")
+                .append(pairs.get(k));
+        }
+        expected.append('}');
+        String report = parts[0].report();
+        assertTrue(report.startsWith("{\"messages\":40,\"length\":"
+                                     + length + ","));
+        assertTrue(report.contains(expected));
+    }
+
+}
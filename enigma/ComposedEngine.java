@@ -0,0 +1,100 @@
+package enigma;
+
+import java.util.Arrays;
+
+/** An engine converting with a single lane of a MultiKeyEngine, which
+ *  composes all slots but the rightmost, with the reflector, into one
+ *  substitution that is renewed only when one of them moves, so that a
+ *  character takes five table lookups however many slots there are.
+ *  Skips are made by a Machine, from whose positions the lane is then
+ *  set again.  Requires an alphabet of at most 256 characters.
+ *  @author Neha Kompella
+ */
+final class ComposedEngine implements EncryptionEngine {
+
+    /** An engine for configuration CONFIG. */
+    ComposedEngine(MachineConfig config) {
+        _alphabet = config.alphabet();
+        _lane = new MultiKeyEngine(config, 1);
+        _machine = config.newMachine();
+        _out = new int[BLOCK];
+    }
+
+    @Override
+    public Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    @Override
+    public void setUp(String settings) {
+        setUp(new Settings(settings, _machine, _alphabet), settings);
+    }
+
+    @Override
+    public void setUp(Settings parsed, String line) {
+        _lane.set(0, parsed.rotors(), parsed.positions(), parsed.rings(),
+                  parsed.plugboard());
+        _parsed = parsed;
+        _settings = line;
+        _step = 0;
+    }
+
+    @Override
+    public String settings() {
+        return _settings;
+    }
+
+    @Override
+    public Settings parsed() {
+        return _parsed;
+    }
+
+    @Override
+    public long step() {
+        return _step;
+    }
+
+    @Override
+    public void convert(int[] msg, int n) {
+        if (n > _out.length) {
+            _out = new int[Math.max(n, 2 * _out.length)];
+        }
+        _lane.convert(msg, n, _out);
+        System.arraycopy(_out, 0, msg, 0, n);
+        _step += n;
+    }
+
+    @Override
+    public void skip(long n) {
+        if (_parsed == null || n == 0) {
+            return;
+        }
+        _machine.insertRotors(_parsed.rotors());
+        _machine.setRings(_parsed.rings());
+        _machine.setRotors(_lane.positions(0));
+        _machine.skip(n);
+        int[] positions = _machine.positions();
+        _lane.set(0, _parsed.rotors(),
+                  Arrays.copyOfRange(positions, 1, positions.length),
+                  _parsed.rings(), _parsed.plugboard());
+        _step += n;
+    }
+
+    /** Initial size of the output buffer. */
+    private static final int BLOCK = 1 << 12;
+
+    /** Alphabet of my messages. */
+    private final Alphabet _alphabet;
+    /** The lane doing the conversions. */
+    private final MultiKeyEngine _lane;
+    /** Machine used to validate settings lines and to skip. */
+    private final Machine _machine;
+    /** My last settings line, parsed, or null. */
+    private Settings _parsed;
+    /** My last settings line, or null. */
+    private String _settings;
+    /** Characters converted or skipped since _settings. */
+    private long _step;
+    /** Buffer for converted characters. */
+    private int[] _out;
+}
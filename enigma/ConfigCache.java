@@ -0,0 +1,94 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/** Configurations read from configuration files, kept so that many runs
+ *  using the same file read and parse it only once.  An entry is reused
+ *  only while its file keeps the same size and modification time.  May
+ *  be shared between threads; a thread asking for a file that another is
+ *  already reading waits for that reading instead of repeating it.
+ *  @author Neha Kompella
+ */
+final class ConfigCache {
+
+    /** A cache holding at most CAPACITY configurations. */
+    ConfigCache(int capacity) {
+        _capacity = capacity;
+    }
+
+    /** Return the configuration in the file named NAME. */
+    MachineConfig get(String name) {
+        String key = key(name);
+        FutureTask<MachineConfig> task;
+        boolean mine = false;
+        synchronized (_configs) {
+            task = _configs.get(key);
+            if (task == null) {
+                task = new FutureTask<>(() -> Main.loadConfig(name));
+                _configs.put(key, task);
+                mine = true;
+                _misses += 1;
+            } else {
+                _hits += 1;
+            }
+        }
+        if (mine) {
+            task.run();
+        }
+        try {
+            return task.get();
+        } catch (ExecutionException excp) {
+            synchronized (_configs) {
+                _configs.remove(key, task);
+            }
+            if (excp.getCause() instanceof EnigmaException) {
+                throw (EnigmaException) excp.getCause();
+            }
+            throw new IllegalStateException(excp.getCause());
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(excp);
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (_configs) {
+            return String.format("configs: %d cached, %d hits, %d misses",
+                                 _configs.size(), _hits, _misses);
+        }
+    }
+
+    /** Return the key identifying the current contents of the file
+     *  named NAME. */
+    private static String key(String name) {
+        File file = new File(name);
+        String path;
+        try {
+            path = file.getCanonicalPath();
+        } catch (IOException excp) {
+            path = file.getAbsolutePath();
+        }
+        return path + ":" + file.length() + ":" + file.lastModified();
+    }
+
+    /** Largest number of configurations kept. */
+    private final int _capacity;
+    /** Readings of configurations by key, most recently used last. */
+    private final LinkedHashMap<String, FutureTask<MachineConfig>> _configs =
+        new LinkedHashMap<String, FutureTask<MachineConfig>>(16, 0.75f,
+                                                              true) {
+            @Override
+            protected boolean removeEldestEntry(
+                Map.Entry<String, FutureTask<MachineConfig>> eldest) {
+                return size() > _capacity;
+            }
+        };
+    /** Numbers of lookups that did and did not find a configuration. */
+    private long _hits, _misses;
+}
@@ -0,0 +1,257 @@
+package enigma;
+
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static enigma.EnigmaException.*;
+
+/** Finds where a crib (a guessed piece of plaintext) can lie in a
+ *  ciphertext.  An Enigma never converts a character to itself, since
+ *  its reflector is a derangement, so the crib cannot be aligned at any
+ *  offset where one of its characters faces the same ciphertext
+ *  character.  Usage:
+ *      java enigma.CribLocator [--threads=N] CONFIG CRIB [CIPHERTEXT]
+ *  CONFIG supplies the alphabet; characters of CIPHERTEXT (by default,
+ *  the standard input) outside it, such as blanks and line ends, are
+ *  ignored.  Prints, one per line and in increasing order, the offsets
+ *  (counting ciphertext characters from 0) of all admissible alignments.
+ *
+ *  The ciphertext is processed in chunks, in parallel.  For each chunk,
+ *  a bitset of the occurrences of each character of the crib is built,
+ *  and the bitset of conflicting offsets is the OR of those bitsets, each
+ *  shifted by the position of its character in the crib, 64 offsets per
+ *  word operation.
+ *  @author Neha Kompella
+ */
+public final class CribLocator {
+
+    /** Locate a crib as specified by ARGS (see above). */
+    public static void main(String... args) {
+        try {
+            new CribLocator(args).run();
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** A locator as specified by ARGS. */
+    CribLocator(String[] args) {
+        int k = 0;
+        _threads = Runtime.getRuntime().availableProcessors();
+        while (k < args.length && args[k].startsWith("--")) {
+            if (!args[k].startsWith("--threads=")) {
+                throw error("unknown option: %s", args[k]);
+            }
+            try {
+                _threads =
+                    Integer.parseInt(args[k].substring("--threads=".length()));
+            } catch (NumberFormatException excp) {
+                throw error("bad option: %s", args[k]);
+            }
+            if (_threads <= 0) {
+                throw error("bad option: %s", args[k]);
+            }
+            k += 1;
+        }
+        if (args.length - k < 2 || args.length - k > 3) {
+            throw error("expected a configuration, a crib and at most one"
+                        + " ciphertext file");
+        }
+        MachineConfig config = Main.loadConfig(args[k]);
+        _alphabet = config.alphabet();
+        if (_alphabet.size() > MAX_ALPHABET) {
+            throw error("alphabet too large");
+        }
+        for (int i = 0; i < config.numAvailable(); i++) {
+            if (config.rotorKind(i) == RotorCatalogue.REFLECTOR
+                && !config.permutation(i).derangement()) {
+                throw error("reflector %s maps a character to itself",
+                            config.rotorName(i));
+            }
+        }
+        _index = new int[Character.MAX_VALUE + 1];
+        Arrays.fill(_index, -1);
+        for (int i = 0; i < _alphabet.size(); i++) {
+            _index[_alphabet.toChar(i)] = i;
+        }
+        String crib = args[k + 1].toUpperCase();
+        _crib = new byte[crib.length()];
+        for (int i = 0; i < crib.length(); i++) {
+            int c = _index[crib.charAt(i)];
+            if (c < 0) {
+                throw error("crib character not in alphabet");
+            }
+            _crib[i] = (byte) c;
+        }
+        if (_crib.length == 0) {
+            throw error("empty crib");
+        }
+        _input = args.length - k == 3 ? args[k + 2] : null;
+    }
+
+    /** Read the ciphertext and print the admissible alignments. */
+    void run() {
+        PrintStream out =
+            new PrintStream(new BufferedOutputStream(System.out, 1 << 16),
+                            false);
+        ExecutorService pool = Executors.newFixedThreadPool(_threads);
+        ArrayDeque<Future<int[]>> pending = new ArrayDeque<>();
+        ArrayDeque<Long> bases = new ArrayDeque<>();
+        long total = 0, found = 0;
+        try (Reader in = open()) {
+            char[] buffer = new char[CHUNK];
+            int overlap = _crib.length - 1;
+            byte[] text = new byte[CHUNK + overlap];
+            int length = 0;
+            long base = 0;
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                for (int i = 0; i < n; i++) {
+                    int c = _index[buffer[i]];
+                    if (c < 0) {
+                        continue;
+                    }
+                    text[length++] = (byte) c;
+                    total += 1;
+                    if (length == text.length) {
+                        byte[] chunk = text;
+                        int len = length;
+                        pending.add(pool.submit(() -> admissible(chunk, len,
+                                                                 _crib)));
+                        bases.add(base);
+                        base += length - overlap;
+                        text = new byte[CHUNK + overlap];
+                        System.arraycopy(chunk, length - overlap, text, 0,
+                                         overlap);
+                        length = overlap;
+                        if (pending.size() >= 2 * _threads) {
+                            found += emit(pending.poll(), bases.poll(), out);
+                        }
+                    }
+                }
+            }
+            byte[] chunk = text;
+            int len = length;
+            pending.add(pool.submit(() -> admissible(chunk, len, _crib)));
+            bases.add(base);
+            while (!pending.isEmpty()) {
+                found += emit(pending.poll(), bases.poll(), out);
+            }
+        } catch (IOException excp) {
+            throw error("could not read ciphertext");
+        } finally {
+            pool.shutdownNow();
+        }
+        out.flush();
+        System.err.printf("%d admissible alignments of %d%n", found,
+                          Math.max(0, total - _crib.length + 1));
+    }
+
+    /** Print the offsets in RESULT, relative to BASE, on OUT, and return
+     *  their number. */
+    private static int emit(Future<int[]> result, long base,
+                            PrintStream out) {
+        int[] offsets;
+        try {
+            offsets = result.get();
+        } catch (ExecutionException | InterruptedException excp) {
+            throw error("crib search failed: %s", excp);
+        }
+        for (int offset : offsets) {
+            out.println(base + offset);
+        }
+        return offsets.length;
+    }
+
+    /** Return a reader of the ciphertext. */
+    private Reader open() throws IOException {
+        InputStream in =
+            _input == null ? System.in : new FileInputStream(_input);
+        return new InputStreamReader(in, Charset.defaultCharset());
+    }
+
+    /** Return the offsets, in increasing order, at which CRIB may be
+     *  aligned with TEXT[0 .. LENGTH-1] without any character of CRIB
+     *  facing the same character of TEXT.  Characters are indices into
+     *  an alphabet of at most 256 characters. */
+    static int[] admissible(byte[] text, int length, byte[] crib) {
+        int m = crib.length;
+        if (length < m) {
+            return new int[0];
+        }
+        int words = (length + Long.SIZE - 1) / Long.SIZE;
+        long[][] occurs = new long[MAX_ALPHABET][];
+        for (byte c : crib) {
+            if (occurs[c & 0xff] == null) {
+                occurs[c & 0xff] = new long[words + 1];
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            long[] bits = occurs[text[i] & 0xff];
+            if (bits != null) {
+                bits[i >>> 6] |= 1L << i;
+            }
+        }
+        long[] conflicts = new long[words];
+        for (int j = 0; j < m; j++) {
+            long[] bits = occurs[crib[j] & 0xff];
+            int q = j >>> 6, s = j & (Long.SIZE - 1);
+            int last = words - q;
+            if (s == 0) {
+                for (int w = 0; w < last; w++) {
+                    conflicts[w] |= bits[w + q];
+                }
+            } else {
+                for (int w = 0; w < last; w++) {
+                    conflicts[w] |= (bits[w + q] >>> s)
+                        | (bits[w + q + 1] << (Long.SIZE - s));
+                }
+            }
+        }
+        int limit = length - m + 1;
+        int[] result = new int[limit];
+        int count = 0;
+        for (int w = 0; w * Long.SIZE < limit; w++) {
+            long free = ~conflicts[w];
+            while (free != 0) {
+                int i = w * Long.SIZE + Long.numberOfTrailingZeros(free);
+                if (i >= limit) {
+                    break;
+                }
+                result[count++] = i;
+                free &= free - 1;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /** Largest alphabet handled. */
+    private static final int MAX_ALPHABET = 256;
+    /** Number of alignments examined per chunk. */
+    private static final int CHUNK = 1 << 22;
+
+    /** Number of threads. */
+    private int _threads;
+    /** Alphabet of the ciphertext. */
+    private final Alphabet _alphabet;
+    /** Index in _alphabet of each character, or -1. */
+    private final int[] _index;
+    /** The crib, as indices into _alphabet. */
+    private final byte[] _crib;
+    /** Name of the ciphertext file, or null for the standard input. */
+    private final String _input;
+}
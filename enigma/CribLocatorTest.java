@@ -0,0 +1,68 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/** Tests of the crib locator.
+ *  @author Neha Kompella
+ */
+public class CribLocatorTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Return the admissible offsets of CRIB in TEXT, found one
+     *  character at a time. */
+    private static int[] slowly(byte[] text, byte[] crib) {
+        ArrayList<Integer> found = new ArrayList<>();
+        for (int i = 0; i + crib.length <= text.length; i++) {
+            boolean ok = true;
+            for (int j = 0; j < crib.length; j++) {
+                ok &= text[i + j] != crib[j];
+            }
+            if (ok) {
+                found.add(i);
+            }
+        }
+        int[] result = new int[found.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = found.get(i);
+        }
+        return result;
+    }
+
+    @Test
+    public void checkExample() {
+        byte[] text = { 0, 1, 2, 0, 1, 2, 2 };
+        byte[] crib = { 1, 2 };
+        assertArrayEquals(new int[] { 0, 2, 3 },
+                          CribLocator.admissible(text, text.length, crib));
+        assertArrayEquals(new int[0],
+                          CribLocator.admissible(text, 1, crib));
+    }
+
+    @Test
+    public void checkAgainstSlowSearch() {
+        Random random = new Random(42);
+        for (int trial = 0; trial < 500; trial++) {
+            byte[] text = new byte[random.nextInt(400)];
+            byte[] crib = new byte[1 + random.nextInt(130)];
+            for (int i = 0; i < text.length; i++) {
+                text[i] = (byte) random.nextInt(3);
+            }
+            for (int i = 0; i < crib.length; i++) {
+                crib[i] = (byte) random.nextInt(3);
+            }
+            assertArrayEquals(slowly(text, crib),
+                              CribLocator.admissible(text, text.length,
+                                                     crib));
+        }
+    }
+
+}
@@ -0,0 +1,449 @@
+package enigma;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static enigma.EnigmaException.*;
+
+/** A catalogue of the cycle structures of the products of a machine's
+ *  substitutions, for recovering rotor orders and positions from
+ *  doubled message keys.  If A1, ..., A6 are the substitutions made at
+ *  the first six keystrokes from some key, the cycle types of the
+ *  products A1A4, A2A5 and A3A6 (the key's signature) do not depend on
+ *  the plugboard, and can be read off enough messages whose first six
+ *  characters encipher a repeated three-character key.  Usage:
+ *      java enigma.CycleCatalogue [--threads=N] [--rotors=R,...]
+ *                                 CONFIG INDEX
+ *  catalogues the keys of CONFIG (every order of its rotors, or of
+ *  those named, at every choice of positions, with the ring settings
+ *  at the first character) in the file INDEX, and
+ *      java enigma.CycleCatalogue --lookup CONFIG INDEX P1 P2 P3
+ *  prints, as settings lines, the keys whose products have the cycle
+ *  types of P1, P2 and P3, each given either as a permutation in cycle
+ *  notation or as its cycle lengths, such as 13,13.
+ *
+ *  Signatures are computed from keystream tables by a pool of threads,
+ *  each taking rotor orders in turn.  The index holds the distinct
+ *  signatures in increasing order, each with the start of its list of
+ *  keys, followed by those lists.  It is memory-mapped for lookups,
+ *  which search the signatures by bisection.
+ *  @author Neha Kompella
+ */
+public final class CycleCatalogue {
+
+    /** Build or consult a catalogue as specified by ARGS (see above). */
+    public static void main(String... args) {
+        try {
+            int threads = Runtime.getRuntime().availableProcessors();
+            List<String> allowed = null;
+            boolean lookup = false;
+            int k;
+            for (k = 0; k < args.length && args[k].startsWith("--"); k++) {
+                String opt = args[k];
+                if (opt.equals("--lookup")) {
+                    lookup = true;
+                } else if (opt.startsWith("--rotors=")) {
+                    allowed = Arrays.asList(
+                        opt.substring("--rotors=".length()).split(","));
+                } else if (opt.startsWith("--threads=")) {
+                    try {
+                        threads = Integer.parseInt(
+                            opt.substring("--threads=".length()));
+                    } catch (NumberFormatException excp) {
+                        threads = 0;
+                    }
+                    if (threads <= 0) {
+                        throw error("bad option: %s", opt);
+                    }
+                } else {
+                    throw error("unknown option: %s", opt);
+                }
+            }
+            if (args.length - k != (lookup ? 5 : 2)) {
+                throw error(lookup
+                            ? "expected a configuration, an index and"
+                              + " three permutations"
+                            : "expected a configuration and an index");
+            }
+            MachineConfig config = Main.loadConfig(args[k]);
+            File file = new File(args[k + 1]);
+            if (!lookup) {
+                build(config, allowed, threads, file);
+                return;
+            }
+            CycleCatalogue catalogue = open(config, file);
+            int[][] types = new int[PRODUCTS][];
+            for (int i = 0; i < PRODUCTS; i++) {
+                types[i] = cycleType(args[k + 2 + i], config.alphabet());
+            }
+            for (int key : catalogue.lookup(types)) {
+                System.out.println(catalogue.settings(key));
+            }
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Catalogue the keys of CONFIG that use only the rotors named in
+     *  ALLOWED (all of them if ALLOWED is null) in FILE, using THREADS
+     *  threads. */
+    static void build(MachineConfig config, List<String> allowed,
+                      int threads, File file) {
+        int size = config.alphabet().size();
+        if (size > KeystreamCache.MAX_ALPHABET) {
+            throw error("alphabet too large for a catalogue");
+        }
+        KeySpace space = new KeySpace(config, allowed);
+        if (space.size() > MAX_KEYS) {
+            throw error("too many keys to catalogue");
+        }
+        int[] ids = new int[(int) space.size()];
+        ConcurrentHashMap<String, Integer> numbers =
+            new ConcurrentHashMap<>();
+        AtomicInteger count = new AtomicInteger();
+        AtomicLong next = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            ArrayList<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                tasks.add(pool.submit(() -> scan(config, space, next, ids,
+                                                 numbers, count)));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof EnigmaException) {
+                throw (EnigmaException) excp.getCause();
+            }
+            throw new IllegalStateException(excp.getCause());
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw error("interrupted");
+        } finally {
+            pool.shutdownNow();
+        }
+        write(config, allowed, size, ids, numbers, file);
+    }
+
+    /** Compute the signatures of the keys of SPACE, for machines of
+     *  CONFIG, a rotor order at a time, taking order numbers from NEXT
+     *  until none remain.  Set IDS[K] to the number of the signature of
+     *  key K, numbering new signatures in NUMBERS from COUNT. */
+    private static void scan(MachineConfig config, KeySpace space,
+                             AtomicLong next, int[] ids,
+                             ConcurrentHashMap<String, Integer> numbers,
+                             AtomicInteger count) {
+        Alphabet alpha = config.alphabet();
+        Machine m = config.newMachine();
+        m.setPlugboard(new Permutation("", alpha));
+        int[] rotors = new int[config.numRotors()];
+        int[] posns = new int[config.numRotors() - 1];
+        byte[] signature = new byte[PRODUCTS * alpha.size()];
+        int[] lengths = new int[alpha.size() + 1];
+        long[] done = new long[(alpha.size() + 63) / 64];
+        HashMap<String, Integer> known = new HashMap<>();
+        long positions = space.positions();
+        for (long order = next.getAndIncrement(); order < space.orders();
+             order = next.getAndIncrement()) {
+            space.order(order, rotors);
+            m.insertRotors(rotors);
+            for (long p = 0; p < positions; p++) {
+                space.positions(p, posns);
+                m.setRotors(posns);
+                signature(m.keystream(2 * PRODUCTS), signature, lengths,
+                          done);
+                String key =
+                    new String(signature, StandardCharsets.ISO_8859_1);
+                Integer id = known.get(key);
+                if (id == null) {
+                    id = numbers.computeIfAbsent(
+                        key, (s) -> count.getAndIncrement());
+                    known.put(key, id);
+                }
+                ids[(int) (order * positions + p)] = id;
+            }
+        }
+    }
+
+    /** Set SIGNATURE to the cycle types of the products of the first
+     *  and fourth, second and fifth, and third and sixth substitutions
+     *  in TABLE, using LENGTHS, which has room for one more than the
+     *  alphabet size, and DONE, with a bit for each character, as
+     *  working storage. */
+    private static void signature(KeystreamCache.Entry table,
+                                  byte[] signature, int[] lengths,
+                                  long[] done) {
+        int size = signature.length / PRODUCTS;
+        for (int s = 0; s < PRODUCTS; s++) {
+            Arrays.fill(lengths, 0);
+            Arrays.fill(done, 0);
+            for (int c = 0; c < size; c++) {
+                if ((done[c >> 6] & (1L << c)) != 0) {
+                    continue;
+                }
+                int len = 0;
+                for (int x = c; (done[x >> 6] & (1L << x)) == 0;
+                     x = table.substitute(s + PRODUCTS,
+                                          table.substitute(s, x))) {
+                    done[x >> 6] |= 1L << x;
+                    len += 1;
+                }
+                lengths[len] += 1;
+            }
+            int k = s * size;
+            for (int len = size; len > 0; len--) {
+                for (int i = 0; i < lengths[len]; i++) {
+                    signature[k++] = (byte) len;
+                }
+            }
+            Arrays.fill(signature, k, (s + 1) * size, (byte) 0);
+        }
+    }
+
+    /** Write the catalogue of the keys of CONFIG that use the rotors
+     *  named in ALLOWED (or all, if null), with alphabet size SIZE, to
+     *  FILE.  Key K has the signature numbered IDS[K] in NUMBERS. */
+    private static void write(MachineConfig config, List<String> allowed,
+                              int size, int[] ids,
+                              Map<String, Integer> numbers, File file) {
+        int count = numbers.size();
+        String[] signatures = new String[count];
+        for (Map.Entry<String, Integer> entry : numbers.entrySet()) {
+            signatures[entry.getValue()] = entry.getKey();
+        }
+        Integer[] byRank = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            byRank[i] = i;
+        }
+        Arrays.sort(byRank, (a, b) -> signatures[a].compareTo(signatures[b]));
+        int[] rank = new int[count];
+        for (int r = 0; r < count; r++) {
+            rank[byRank[r]] = r;
+        }
+        int[] starts = new int[count + 1];
+        for (int id : ids) {
+            starts[rank[id] + 1] += 1;
+        }
+        for (int r = 0; r < count; r++) {
+            starts[r + 1] += starts[r];
+        }
+        int[] keys = new int[ids.length];
+        int[] fill = starts.clone();
+        for (int k = 0; k < ids.length; k++) {
+            keys[fill[rank[ids[k]]]++] = k;
+        }
+        byte[] names = allowed == null ? new byte[0]
+            : String.join(",", allowed).getBytes(StandardCharsets.UTF_8);
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(size);
+            out.writeLong(config.fingerprint());
+            out.writeInt(names.length);
+            out.write(names);
+            out.writeInt(count);
+            out.writeInt(keys.length);
+            for (int r = 0; r < count; r++) {
+                out.write(signatures[byRank[r]]
+                          .getBytes(StandardCharsets.ISO_8859_1));
+                out.writeInt(starts[r]);
+            }
+            for (int key : keys) {
+                out.writeInt(key);
+            }
+        } catch (IOException excp) {
+            throw error("could not write catalogue %s", file);
+        }
+    }
+
+    /** Return the catalogue in FILE, which must have been built for
+     *  CONFIG. */
+    static CycleCatalogue open(MachineConfig config, File file) {
+        ByteBuffer index;
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            index = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+                                        in.length());
+        } catch (IOException excp) {
+            throw error("could not read catalogue %s", file);
+        }
+        if (index.limit() < HEADER_SIZE || index.getInt(0) != MAGIC) {
+            throw error("%s is not a catalogue", file);
+        }
+        if (index.getInt(4) != config.alphabet().size()
+            || index.getLong(8) != config.fingerprint()) {
+            throw error("%s was built for a different configuration", file);
+        }
+        int namesLength = index.getInt(16);
+        if (namesLength < 0
+            || index.limit() < HEADER_SIZE + namesLength) {
+            throw error("%s is not a catalogue", file);
+        }
+        byte[] names = new byte[namesLength];
+        index.position(20);
+        index.get(names);
+        List<String> allowed = namesLength == 0 ? null
+            : Arrays.asList(new String(names, StandardCharsets.UTF_8)
+                            .split(","));
+        return new CycleCatalogue(config, allowed, index,
+                                  HEADER_SIZE + namesLength, file);
+    }
+
+    /** A catalogue of the keys of CONFIG using the rotors ALLOWED (all
+     *  if null), whose signatures start at byte START of INDEX, read
+     *  from FILE. */
+    private CycleCatalogue(MachineConfig config, List<String> allowed,
+                           ByteBuffer index, int start, File file) {
+        _alphabet = config.alphabet();
+        _space = new KeySpace(config, allowed);
+        _slots = config.numRotors();
+        _index = index;
+        _width = PRODUCTS * _alphabet.size();
+        _count = index.getInt(start - 8);
+        _keys = index.getInt(start - 4);
+        _signatures = start;
+        _lists = start + (long) _count * (_width + 4);
+        if (_count < 0 || _keys != _space.size()
+            || index.limit() != _lists + 4L * _keys) {
+            throw error("%s is not a catalogue", file);
+        }
+    }
+
+    /** Return the numbers of the keys, in increasing order, whose
+     *  products have the cycle types TYPES[0], TYPES[1] and TYPES[2],
+     *  each listing cycle lengths in decreasing order. */
+    int[] lookup(int[][] types) {
+        byte[] signature = new byte[_width];
+        int size = _alphabet.size();
+        for (int s = 0; s < PRODUCTS; s++) {
+            for (int i = 0; i < types[s].length && i < size; i++) {
+                signature[s * size + i] = (byte) types[s][i];
+            }
+        }
+        int lo = 0, hi = _count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = compare(mid, signature);
+            if (c == 0) {
+                int start = _index.getInt(entry(mid) + _width);
+                int end = mid + 1 < _count
+                    ? _index.getInt(entry(mid + 1) + _width) : _keys;
+                int[] result = new int[end - start];
+                for (int k = 0; k < result.length; k++) {
+                    result[k] = _index.getInt((int) (_lists + 4L
+                                                     * (start + k)));
+                }
+                return result;
+            } else if (c < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return new int[0];
+    }
+
+    /** Return the settings line (without plugboard) of key KEY. */
+    String settings(int key) {
+        int[] rotors = new int[_slots];
+        int[] posns = new int[_slots - 1];
+        _space.order(key / _space.positions(), rotors);
+        _space.positions(key % _space.positions(), posns);
+        StringBuilder result = new StringBuilder("*");
+        for (int r : rotors) {
+            result.append(' ').append(_space.name(r));
+        }
+        result.append(' ');
+        for (int p : posns) {
+            result.append(_alphabet.toChar(p));
+        }
+        return result.toString();
+    }
+
+    /** Return the cycle type, as cycle lengths in decreasing order, of
+     *  the permutation of ALPHA described by ARG: either its cycles, or
+     *  its cycle lengths separated by commas. */
+    static int[] cycleType(String arg, Alphabet alpha) {
+        if (arg.startsWith("(")) {
+            return new Permutation(arg, alpha).cycleType();
+        }
+        int[] result;
+        try {
+            result = Arrays.stream(arg.split(","))
+                .mapToInt(Integer::parseInt).map((x) -> -x).sorted()
+                .map((x) -> -x).toArray();
+        } catch (NumberFormatException excp) {
+            throw error("bad cycle type: %s", arg);
+        }
+        if (Arrays.stream(result).sum() != alpha.size()
+            || result[result.length - 1] <= 0) {
+            throw error("bad cycle type: %s", arg);
+        }
+        return result;
+    }
+
+    /** Return the byte offset of signature number K. */
+    private int entry(int k) {
+        return (int) (_signatures + (long) k * (_width + 4));
+    }
+
+    /** Return the result of comparing signature number K with
+     *  SIGNATURE, as unsigned bytes. */
+    private int compare(int k, byte[] signature) {
+        int at = entry(k);
+        for (int i = 0; i < _width; i++) {
+            int c = Integer.compare(_index.get(at + i) & 0xff,
+                                    signature[i] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    /** Number of products in a signature. */
+    static final int PRODUCTS = 3;
+
+    /** Identifies catalogue files. */
+    private static final int MAGIC = 0x456e4333;
+    /** Bytes in the header, less the names of the allowed rotors. */
+    private static final int HEADER_SIZE = 28;
+    /** Largest number of keys catalogued. */
+    private static final long MAX_KEYS = 1L << 27;
+
+    /** Alphabet of the machines catalogued. */
+    private final Alphabet _alphabet;
+    /** The keys catalogued. */
+    private final KeySpace _space;
+    /** Number of rotor slots. */
+    private final int _slots;
+    /** The mapped index file. */
+    private final ByteBuffer _index;
+    /** Bytes per signature. */
+    private final int _width;
+    /** Number of distinct signatures, and of keys. */
+    private final int _count, _keys;
+    /** Byte offsets of the signatures and of the lists of keys. */
+    private final long _signatures, _lists;
+}
@@ -0,0 +1,101 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static enigma.TestUtils.*;
+
+/** Tests of the catalogue of cycle types of keys.
+ *  @author Neha Kompella
+ */
+public class CycleCatalogueTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /** A small configuration: 6 rotor orders of 216 positions. */
+    private static final String SMALL_CONFIG =
+        "ABCDEF 4 2 I MA (ABC)(DEF) II MB (AD)(BCEF) III MC (AFCB)(DE)"
+        + " N N (ABCDEF) R R (AB)(CD)(EF)";
+
+    @Test
+    public void checkCycleCatalogue() throws IOException {
+        MachineConfig config = Main.parseConfig(SMALL_CONFIG);
+        Alphabet alpha = config.alphabet();
+        File file = tempFile(".idx", "");
+        CycleCatalogue.build(config, null, 2, file);
+        CycleCatalogue catalogue = CycleCatalogue.open(config, file);
+        Machine m6 = config.newMachine();
+        HashSet<String> found = new HashSet<>();
+        for (String rotors : new String[] {
+                "R N I II", "R N II I", "R N I III", "R N III I",
+                "R N II III", "R N III II" }) {
+            for (int p = 0; p < 6 * 6 * 6; p++) {
+                String line = "* " + rotors + " " + alpha.toChar(p / 36)
+                    + alpha.toChar(p / 6 % 6) + alpha.toChar(p % 6);
+                new Settings(line, m6, alpha).apply(m6);
+                int[][] subst = new int[6][6];
+                for (int c = 0; c < 6; c++) {
+                    m6.setRotors(line.substring(line.length() - 3));
+                    for (int s = 0; s < 6; s++) {
+                        subst[s][c] = m6.convert(c);
+                    }
+                }
+                int[][] types = new int[3][];
+                for (int s = 0; s < 3; s++) {
+                    int[] product = new int[6];
+                    for (int c = 0; c < 6; c++) {
+                        product[c] = subst[s + 3][subst[s][c]];
+                    }
+                    types[s] = new Permutation(product, alpha).cycleType();
+                }
+                HashSet<String> keys = new HashSet<>();
+                for (int key : catalogue.lookup(types)) {
+                    keys.add(catalogue.settings(key));
+                }
+                assertTrue(keys.contains(line));
+                found.addAll(keys);
+            }
+        }
+        assertEquals(6 * 6 * 6 * 6, found.size());
+    }
+
+    @Test
+    public void checkAllowed() throws IOException {
+        MachineConfig config = Main.parseConfig(SMALL_CONFIG);
+        File file = tempFile(".idx", "");
+        CycleCatalogue.build(config, Arrays.asList(
+            "R", "N", "I", "III"), 1, file);
+        CycleCatalogue catalogue = CycleCatalogue.open(config, file);
+        int[][] types = { { 2, 2, 1, 1 }, { 2, 2, 1, 1 }, { 2, 2, 1, 1 } };
+        for (int key : catalogue.lookup(types)) {
+            assertTrue(!catalogue.settings(key).contains(" II "));
+        }
+        assertEquals(0, catalogue.lookup(new int[][] {
+            { 6 }, { 6 }, { 6 } }).length);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkOtherConfiguration() throws IOException {
+        MachineConfig config = Main.parseConfig(SMALL_CONFIG);
+        File file = tempFile(".idx", "");
+        CycleCatalogue.build(config, null, 1, file);
+        CycleCatalogue.open(Main.parseConfig(
+            SMALL_CONFIG.replace("(AFCB)", "(AFBC)")), file);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkNotACatalogue() throws IOException {
+        CycleCatalogue.open(Main.parseConfig(SMALL_CONFIG),
+                            tempFile(".idx", "not a catalogue at all"));
+    }
+
+}
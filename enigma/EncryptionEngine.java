@@ -0,0 +1,134 @@
+package enigma;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** A means of converting messages with machines of one configuration,
+ *  set up from settings lines.  Every engine must convert exactly as
+ *  the machine was first written to; EngineCheck compares them all
+ *  with PlainEngine, a model of it, on random configurations, settings
+ *  and messages.  Engines are created by name, as chosen by Main's
+ *  --engine option.
+ *  @author Neha Kompella
+ */
+interface EncryptionEngine {
+
+    /** Names of the available engines, the reference engine first. */
+    List<String> NAMES =
+        Collections.unmodifiableList(Arrays.asList("reference",
+                                                   "composed"));
+
+    /** Return a new engine named NAME for configuration CONFIG. */
+    static EncryptionEngine create(String name, MachineConfig config) {
+        switch (name) {
+        case "reference":
+            return new ReferenceEngine(config);
+        case "composed":
+            return new ComposedEngine(config);
+        default:
+            throw error("unknown engine: %s", name);
+        }
+    }
+
+    /** Return the alphabet of my messages. */
+    Alphabet alphabet();
+
+    /** Set me up as specified by the settings line SETTINGS. */
+    void setUp(String settings);
+
+    /** Set me up as specified by PARSED, resolved for a machine of my
+     *  configuration, recording LINE as my settings line. */
+    void setUp(Settings parsed, String line);
+
+    /** Return my last settings line, or null if I have not been set
+     *  up. */
+    String settings();
+
+    /** Return my last settings, or null if I have not been set up. */
+    Settings parsed();
+
+    /** Return the number of characters converted or skipped since I
+     *  was last set up. */
+    long step();
+
+    /** Convert the N indices in MSG in place, advancing my rotors
+     *  accordingly. */
+    void convert(int[] msg, int n);
+
+    /** Advance me as if N characters had been converted. */
+    void skip(long n);
+
+    /** Return the conversion of the characters of MSG, ignoring
+     *  parentheses and in any case, advancing my rotors accordingly. */
+    default String convert(String msg) {
+        Alphabet alpha = alphabet();
+        String chars = msg.replace("(", "").replace(")", "").toUpperCase();
+        int[] msgArray = new int[chars.length()];
+        for (int i = 0; i < msgArray.length; i++) {
+            msgArray[i] = alpha.toInt(chars.charAt(i));
+        }
+        convert(msgArray, msgArray.length);
+        char[] result = new char[msgArray.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = alpha.toChar(msgArray[i]);
+        }
+        return new String(result);
+    }
+
+    /** Return a record of my current state. */
+    default Snapshot snapshot() {
+        return new Snapshot(settings(), parsed(), step());
+    }
+
+    /** Return me to the state recorded in SNAPSHOT, taken from an
+     *  engine of my configuration. */
+    default void restore(Snapshot snapshot) {
+        if (snapshot.parsed() != null) {
+            setUp(snapshot.parsed(), snapshot.settings());
+            skip(snapshot.step());
+        }
+    }
+
+    /** The state of an engine: its settings and the number of
+     *  characters converted since. */
+    final class Snapshot {
+
+        /** The state after STEP characters from settings line SETTINGS,
+         *  parsed as PARSED (both null if there has been none). */
+        Snapshot(String settings, Settings parsed, long step) {
+            _settings = settings;
+            _parsed = parsed;
+            _step = step;
+        }
+
+        /** Return the settings line, or null. */
+        String settings() {
+            return _settings;
+        }
+
+        /** Return the settings, or null. */
+        Settings parsed() {
+            return _parsed;
+        }
+
+        /** Return the number of characters converted. */
+        long step() {
+            return _step;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s @%d", _settings, _step);
+        }
+
+        /** Settings line, or null. */
+        private final String _settings;
+        /** Settings, or null. */
+        private final Settings _parsed;
+        /** Characters converted. */
+        private final long _step;
+    }
+}
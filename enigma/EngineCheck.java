@@ -0,0 +1,230 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import static enigma.EnigmaException.*;
+
+/** A differential test of the encryption engines.  Usage:
+ *      java enigma.EngineCheck [TRIALS [SEED]]
+ *  For each of TRIALS (by default 1000) random configurations, sets up
+ *  every engine with random settings lines and has each convert the same
+ *  random messages, with skips and restored snapshots in between, and
+ *  checks that all of them, the reference engine included, agree
+ *  throughout with PlainEngine, a model of the machine as first
+ *  written.  Reports the seed of the first trial on which they do not,
+ *  so that it can be repeated.
+ *  @author Neha Kompella
+ */
+public final class EngineCheck {
+
+    /** Run the trials specified by ARGS (see above). */
+    public static void main(String... args) {
+        try {
+            if (args.length > 2) {
+                throw error("expected at most a trial count and a seed");
+            }
+            int trials = DEFAULT_TRIALS;
+            long seed = System.nanoTime();
+            try {
+                if (args.length > 0) {
+                    trials = Integer.parseInt(args[0]);
+                }
+                if (args.length > 1) {
+                    seed = Long.parseLong(args[1]);
+                }
+            } catch (NumberFormatException excp) {
+                throw error("bad number: %s", excp.getMessage());
+            }
+            check(new Random(seed), trials);
+            System.out.printf("%d trials (seed %d): engines %s agree with"
+                              + " the plain engine%n",
+                              trials, seed, EncryptionEngine.NAMES);
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Run TRIALS trials, with seeds taken from RANDOM. */
+    static void check(Random random, int trials) {
+        for (int t = 0; t < trials; t++) {
+            long seed = random.nextLong();
+            try {
+                trial(new Random(seed));
+            } catch (EnigmaException excp) {
+                throw error("trial seed %d: %s", seed, excp.getMessage());
+            }
+        }
+    }
+
+    /** Compare all engines with the plain engine on a configuration,
+     *  settings and messages chosen with RANDOM. */
+    static void trial(Random random) {
+        MachineConfig config = randomConfig(random);
+        int size = config.alphabet().size();
+        EncryptionEngine plain = new PlainEngine(config);
+        ArrayList<EncryptionEngine> engines = new ArrayList<>();
+        for (String name : EncryptionEngine.NAMES) {
+            engines.add(EncryptionEngine.create(name, config));
+        }
+        EncryptionEngine.Snapshot saved = null;
+        for (int message = 0; message < MESSAGES; message++) {
+            String settings = randomSettings(random, config);
+            plain.setUp(settings);
+            for (EncryptionEngine engine : engines) {
+                engine.setUp(settings);
+            }
+            for (int op = 0; op < OPERATIONS; op++) {
+                int choice = random.nextInt(8);
+                if (choice == 0) {
+                    long n = random.nextInt(4 * MAX_BLOCK);
+                    plain.skip(n);
+                    for (EncryptionEngine engine : engines) {
+                        engine.skip(n);
+                    }
+                } else if (choice == 1) {
+                    saved = plain.snapshot();
+                } else if (choice == 2 && saved != null) {
+                    plain.restore(saved);
+                    for (EncryptionEngine engine : engines) {
+                        engine.restore(saved);
+                    }
+                } else if (choice == 3) {
+                    StringBuilder text = new StringBuilder();
+                    for (int i = random.nextInt(MAX_BLOCK); i > 0; i--) {
+                        text.append(config.alphabet()
+                                    .toChar(random.nextInt(size)));
+                    }
+                    String expected = plain.convert(text.toString());
+                    for (EncryptionEngine engine : engines) {
+                        compare(engine, settings, expected,
+                                engine.convert(text.toString()));
+                    }
+                } else {
+                    int[] msg = new int[random.nextInt(MAX_BLOCK)];
+                    for (int i = 0; i < msg.length; i++) {
+                        msg[i] = random.nextInt(size);
+                    }
+                    int[] expected = msg.clone();
+                    plain.convert(expected, expected.length);
+                    for (EncryptionEngine engine : engines) {
+                        int[] converted = msg.clone();
+                        engine.convert(converted, converted.length);
+                        compare(engine, settings, Arrays.toString(expected),
+                                Arrays.toString(converted));
+                    }
+                }
+                for (EncryptionEngine engine : engines) {
+                    if (engine.step() != plain.step()) {
+                        throw error("%s at step %d, not %d, under %s",
+                                    engine.getClass().getSimpleName(),
+                                    engine.step(), plain.step(), settings);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Check that ENGINE, set up with SETTINGS, produced EXPECTED, the
+     *  output of the plain engine, as its output ACTUAL. */
+    private static void compare(EncryptionEngine engine, String settings,
+                                String expected, String actual) {
+        if (!expected.equals(actual)) {
+            throw error("%s differs from the plain engine at step %d"
+                        + " under %s", engine.getClass().getSimpleName(),
+                        engine.step(), settings);
+        }
+    }
+
+    /** Return a configuration chosen with RANDOM, with randomly wired
+     *  rotors of every kind, more than fill its slots. */
+    static MachineConfig randomConfig(Random random) {
+        Alphabet alpha =
+            new Alphabet(CHARS.substring(0, 2 + random.nextInt(
+                                                   CHARS.length() - 1)));
+        int size = alpha.size();
+        int numRotors = 2 + random.nextInt(MAX_SLOTS - 1);
+        int pawls = 1 + random.nextInt(numRotors - 1);
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        for (int i = random.nextInt(2); i >= 0; i--) {
+            rotors.add(new Reflector("R" + i, randomWiring(random, alpha)));
+        }
+        for (int i = numRotors - 1 - pawls + random.nextInt(2); i > 0; i--) {
+            rotors.add(new FixedRotor("F" + i, randomWiring(random, alpha)));
+        }
+        for (int i = pawls + random.nextInt(2); i > 0; i--) {
+            StringBuilder notches = new StringBuilder();
+            for (int p = 0; p < size; p++) {
+                if (random.nextInt(size) < 2) {
+                    notches.append(alpha.toChar(p));
+                }
+            }
+            if (notches.length() == 0) {
+                notches.append(alpha.toChar(random.nextInt(size)));
+            }
+            rotors.add(new MovingRotor("M" + i, randomWiring(random, alpha),
+                                       notches.toString()));
+        }
+        return new MachineConfig(alpha, numRotors, pawls, rotors);
+    }
+
+    /** Return a random permutation of ALPHA, chosen with RANDOM. */
+    private static Permutation randomWiring(Random random, Alphabet alpha) {
+        int[] forward = new int[alpha.size()];
+        for (int i = 0; i < forward.length; i++) {
+            int j = random.nextInt(i + 1);
+            forward[i] = forward[j];
+            forward[j] = i;
+        }
+        return new Permutation(forward, alpha);
+    }
+
+    /** Return a settings line for CONFIG, with rotors, positions, ring
+     *  settings and plugboard chosen with RANDOM. */
+    static String randomSettings(Random random, MachineConfig config) {
+        Alphabet alpha = config.alphabet();
+        int size = alpha.size();
+        KeySpace space = new KeySpace(config, null);
+        int[] rotors = new int[config.numRotors()];
+        space.order(Math.floorMod(random.nextLong(), space.orders()),
+                    rotors);
+        StringBuilder line = new StringBuilder("*");
+        for (int r : rotors) {
+            line.append(' ').append(space.name(r));
+        }
+        for (int k = 0; k < 2; k++) {
+            line.append(' ');
+            for (int i = 1; i < rotors.length; i++) {
+                line.append(alpha.toChar(random.nextInt(size)));
+            }
+        }
+        int[] chars = new int[size];
+        for (int i = 0; i < size; i++) {
+            int j = random.nextInt(i + 1);
+            chars[i] = chars[j];
+            chars[j] = i;
+        }
+        for (int i = random.nextInt(size / 2 + 1) * 2 - 1; i > 0; i -= 2) {
+            line.append(" (").append(alpha.toChar(chars[i]))
+                .append(alpha.toChar(chars[i - 1])).append(')');
+        }
+        return line.toString();
+    }
+
+    /** Characters from which alphabets are drawn. */
+    private static final String CHARS =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    /** Default number of trials. */
+    private static final int DEFAULT_TRIALS = 1000;
+    /** Largest number of rotor slots. */
+    private static final int MAX_SLOTS = 6;
+    /** Number of settings lines per trial. */
+    private static final int MESSAGES = 4;
+    /** Number of conversions, skips and snapshots per settings line. */
+    private static final int OPERATIONS = 12;
+    /** Bound on the length of a converted block. */
+    private static final int MAX_BLOCK = 300;
+}
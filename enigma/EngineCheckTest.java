@@ -0,0 +1,62 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** Runs the differential test of the encryption engines, and checks
+ *  the plain engine that they are compared with.
+ *  @author Neha Kompella
+ */
+public class EngineCheckTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    @Test
+    public void checkEnginesAgree() {
+        EngineCheck.check(new Random(42), 300);
+    }
+
+    @Test
+    public void checkPlainEngine() {
+        EncryptionEngine plain =
+            new PlainEngine(Main.parseConfig(NAVAL_CONFIG));
+        plain.setUp("* B BETA I II III AAAA");
+        assertEquals("ILBDAAMTAZ", plain.convert("HELLOWORLD"));
+        plain.setUp("* B BETA I II III AAAA (AQ) (EP)");
+        assertEquals("IHBDQQMTQZ", plain.convert("HELLOWORLD"));
+        plain.setUp("* B BETA III II I AAAZ");
+        assertEquals("WGWZAPAACGXJFQVWXDQO",
+                     plain.convert("MYNAMEISNEHAKOMPELLA"));
+        assertEquals(20, plain.step());
+        plain.setUp("* B BETA III II I AAAZ");
+        plain.skip(15);
+        assertEquals(15, plain.step());
+        assertEquals("WXDQO", plain.convert("PELLA"));
+    }
+
+    @Test
+    public void checkDoubleStep() {
+        EncryptionEngine plain =
+            new PlainEngine(Main.parseConfig(NAVAL_CONFIG));
+        EncryptionEngine machine =
+            EncryptionEngine.create("reference",
+                                    Main.parseConfig(NAVAL_CONFIG));
+        for (String line : new String[] { "* B BETA I II III AADU",
+                                          "* C GAMMA IV V VI ZZEV",
+                                          "* B BETA VI VII VIII AMZM" }) {
+            plain.setUp(line);
+            machine.setUp(line);
+            String text = "A".repeat(2000);
+            assertEquals(line, machine.convert(text), plain.convert(text));
+        }
+    }
+
+}
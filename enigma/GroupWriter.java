@@ -0,0 +1,152 @@
+package enigma;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import static enigma.EnigmaException.*;
+
+/** A writer of converted messages in groups of five characters,
+ *  separated by blanks, one output line per input line.  Characters
+ *  are formatted directly into a large reusable byte buffer, which is
+ *  written to the underlying stream in large blocks.
+ *  @author Neha Kompella
+ */
+class GroupWriter {
+
+    /** A writer to OUT, which already holds OFFSET bytes.  If OUT is a
+     *  FileOutputStream, it may be synchronized to disk by sync(). */
+    GroupWriter(OutputStream out, long offset) {
+        _out = out;
+        _written = offset;
+        _buffer = new byte[BUFFER_SIZE];
+    }
+
+    /** Append the characters of S to the current line. */
+    void write(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            write(s.charAt(i));
+        }
+    }
+
+    /** Append C to the current line. */
+    void write(char c) {
+        if (_limit + MAX_CHAR_BYTES + 1 > _buffer.length) {
+            drain();
+        }
+        if (_group == GROUP_SIZE) {
+            _buffer[_limit++] = ' ';
+            _group = 0;
+        }
+        if (c < ASCII_LIMIT) {
+            _buffer[_limit++] = (byte) c;
+        } else {
+            byte[] bytes = String.valueOf(c).getBytes(CHARSET);
+            System.arraycopy(bytes, 0, _buffer, _limit, bytes.length);
+            _limit += bytes.length;
+        }
+        _group += 1;
+    }
+
+    /** End the current line. */
+    void endLine() {
+        if (_limit + NEWLINE.length + 1 > _buffer.length) {
+            drain();
+        }
+        if (_group == GROUP_SIZE) {
+            _buffer[_limit++] = ' ';
+        }
+        System.arraycopy(NEWLINE, 0, _buffer, _limit, NEWLINE.length);
+        _limit += NEWLINE.length;
+        _group = 0;
+    }
+
+    /** Return the total number of bytes written through me, including
+     *  those still in my buffer. */
+    long offset() {
+        return _written + _limit;
+    }
+
+    /** Write out my buffer. */
+    void flush() {
+        drain();
+        try {
+            _out.flush();
+        } catch (IOException excp) {
+            throw error("could not write output");
+        }
+    }
+
+    /** Write out my buffer and force it to disk, if my stream is a
+     *  file. */
+    void sync() {
+        flush();
+        if (_out instanceof FileOutputStream) {
+            try {
+                ((FileOutputStream) _out).getFD().sync();
+            } catch (IOException excp) {
+                throw error("could not write output");
+            }
+        }
+    }
+
+    /** Write out my buffer and close my stream. */
+    void close() {
+        flush();
+        try {
+            _out.close();
+        } catch (IOException excp) {
+            throw error("could not write output");
+        }
+    }
+
+    /** Close my stream after a failure, discarding my buffer. */
+    void abandon() {
+        _limit = 0;
+        try {
+            _out.close();
+        } catch (IOException excp) {
+            throw error("could not write output");
+        }
+    }
+
+    /** Write the contents of my buffer to my stream. */
+    private void drain() {
+        if (_limit == 0) {
+            return;
+        }
+        try {
+            _out.write(_buffer, 0, _limit);
+        } catch (IOException excp) {
+            throw error("could not write output");
+        }
+        _written += _limit;
+        _limit = 0;
+    }
+
+    /** Size of my buffer. */
+    private static final int BUFFER_SIZE = 1 << 20;
+    /** Number of characters in a group. */
+    private static final int GROUP_SIZE = 5;
+    /** Characters below this encode as themselves in one byte. */
+    private static final int ASCII_LIMIT = 0x80;
+    /** Largest number of bytes in an encoded character. */
+    private static final int MAX_CHAR_BYTES = 4;
+    /** Encoding of output characters. */
+    private static final Charset CHARSET = Charset.defaultCharset();
+    /** Encoded line separator. */
+    private static final byte[] NEWLINE =
+        System.lineSeparator().getBytes(CHARSET);
+
+    /** Destination of output. */
+    private final OutputStream _out;
+    /** Output bytes; _buffer[0 .. _limit-1] have not been written. */
+    private final byte[] _buffer;
+    /** Number of bytes in _buffer. */
+    private int _limit;
+    /** Characters in the current group. */
+    private int _group;
+    /** Bytes written to _out. */
+    private long _written;
+}
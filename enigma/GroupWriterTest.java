@@ -0,0 +1,94 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/** Tests of the grouped output writer.
+ *  @author Neha Kompella
+ */
+public class GroupWriterTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Line separator. */
+    private static final String NL = System.lineSeparator();
+
+    /** Return LINE as the original Main printed it: in groups of five,
+     *  with a blank after every fifth character, including the last. */
+    private static String grouped(String line) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < line.length(); i++) {
+            result.append(line.charAt(i));
+            if (i % 5 == 4) {
+                result.append(' ');
+            }
+        }
+        return result.append(NL).toString();
+    }
+
+    @Test
+    public void checkGroups() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GroupWriter out = new GroupWriter(bytes, 0);
+        out.write("HELLO");
+        out.write("WORLD");
+        out.endLine();
+        out.endLine();
+        out.write("ABC");
+        out.write('D');
+        out.write("EFG");
+        out.endLine();
+        assertEquals(0, bytes.size());
+        assertEquals(12 + 2 * NL.length() + 8 + NL.length(), out.offset());
+        out.flush();
+        assertEquals("HELLO WORLD " + NL + NL + "ABCDE FG" + NL,
+                     bytes.toString());
+    }
+
+    @Test
+    public void checkManyLines() throws IOException {
+        Random random = new Random(31);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GroupWriter out = new GroupWriter(bytes, 1000);
+        StringBuilder expected = new StringBuilder();
+        for (int k = 0; k < 20000; k++) {
+            StringBuilder line = new StringBuilder();
+            for (int i = random.nextInt(k % 100 == 0 ? 5000 : 60); i > 0;
+                 i--) {
+                line.append((char) ('A' + random.nextInt(26)));
+            }
+            out.write(line.toString());
+            out.endLine();
+            expected.append(grouped(line.toString()));
+        }
+        assertEquals(1000 + expected.length(), out.offset());
+        out.close();
+        assertEquals(expected.toString(), bytes.toString());
+    }
+
+    @Test
+    public void checkAbandon() {
+        boolean[] closed = new boolean[1];
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        GroupWriter out = new GroupWriter(bytes, 0);
+        out.write("LOST");
+        out.endLine();
+        out.abandon();
+        assertTrue(closed[0]);
+        assertEquals(0, bytes.size());
+    }
+
+}
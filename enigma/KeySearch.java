@@ -0,0 +1,702 @@
+package enigma;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import static enigma.EnigmaException.*;
+
+/** Searches for the keys under which a ciphertext decrypts to a known
+ *  crib, sharing the work among worker processes that connect over
+ *  sockets.  Usage:
+ *      java enigma.KeySearch [OPTIONS] CONFIG CIPHERTEXT CRIB
+ *  A key is an order of rotors from CONFIG with positions for all of
+ *  them but the reflector; the ring settings and plugboard are given.
+ *  A key is reported if the characters of the file CIPHERTEXT (less any
+ *  outside the alphabet) decrypt, starting at a given offset, to CRIB.
+ *  Options are
+ *      --workers=N    start N local worker processes (by default, one
+ *                     per processor); others may connect with
+ *                     java enigma.SearchWorker HOST PORT.
+ *      --bind=ADDR    accept workers on ADDR (by default, loopback).
+ *      --port=P       accept workers on port P (by default, any).
+ *      --lease=N      hand out N keys at a time (default 65536).
+ *      --timeout=S    hand a lease to another worker if it has not
+ *                     been finished after S seconds (default 60).
+ *      --rotors=R,... use only the rotors named.
+ *      --rings=RINGS  use the given ring settings.
+ *      --plugboard=C  use the plugboard with cycles C.
+ *      --offset=K     the crib starts at ciphertext character K.
+ *      --lanes=N      have each worker try N keys at once (default
+ *                     1024).
+ *  Prints the matching keys, as settings lines, on the standard output.
+ *
+ *  The keys are split into leases, each a range of positions for one
+ *  rotor order, which are handed to workers as they ask for them.  A
+ *  lease whose worker disconnects is handed out again at once; one that
+ *  is late is handed to the next idle worker once no fresh leases
+ *  remain, and whichever copy finishes first counts.
+ *  @author Neha Kompella
+ */
+public final class KeySearch {
+
+    /** Search as specified by ARGS (see above). */
+    public static void main(String... args) {
+        try {
+            new KeySearch(args).run();
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** A search as specified by ARGS. */
+    KeySearch(String[] args) {
+        int k = 0;
+        int workers = Runtime.getRuntime().availableProcessors();
+        String bind = null, allowed = "", rings = "", plugboard = "";
+        int offset = 0, lanes = DEFAULT_LANES;
+        for (; k < args.length && args[k].startsWith("--"); k += 1) {
+            String opt = args[k];
+            String value = opt.substring(opt.indexOf('=') + 1);
+            if (opt.startsWith("--workers=")) {
+                workers = number(opt, 0, Integer.MAX_VALUE);
+            } else if (opt.startsWith("--bind=")) {
+                bind = value;
+            } else if (opt.startsWith("--port=")) {
+                _port = number(opt, 0, MAX_PORT);
+            } else if (opt.startsWith("--lease=")) {
+                _leaseSize = number(opt, 1, Integer.MAX_VALUE);
+            } else if (opt.startsWith("--timeout=")) {
+                _timeout = TimeUnit.SECONDS.toMillis(
+                    number(opt, 1, Integer.MAX_VALUE));
+            } else if (opt.startsWith("--rotors=")) {
+                allowed = value;
+            } else if (opt.startsWith("--rings=")) {
+                rings = value;
+            } else if (opt.startsWith("--plugboard=")) {
+                plugboard = value;
+            } else if (opt.startsWith("--offset=")) {
+                offset = number(opt, 0, MAX_OFFSET);
+            } else if (opt.startsWith("--lanes=")) {
+                lanes = number(opt, 1, MAX_LANES);
+            } else {
+                throw error("unknown option: %s", opt);
+            }
+        }
+        if (args.length - k != 3) {
+            throw error("expected a configuration, a ciphertext file and"
+                        + " a crib");
+        }
+        _workers = workers;
+        try {
+            _bind = bind == null ? InetAddress.getLoopbackAddress()
+                : InetAddress.getByName(bind);
+        } catch (IOException excp) {
+            throw error("unknown address: %s", bind);
+        }
+        String config = read(args[k]);
+        MachineConfig machines = Main.parseConfig(config);
+        String crib = args[k + 2].toUpperCase();
+        String prefix =
+            ciphertext(read(args[k + 1]), machines.alphabet(),
+                       offset + crib.length());
+        _job = new Job(config, allowed, rings, plugboard, prefix, crib,
+                       offset, lanes);
+        _job.prepare();
+        _space = _job.space();
+        _leasesPerOrder =
+            (_space.positions() + _leaseSize - 1) / _leaseSize;
+        _leaseCount = _space.orders() * _leasesPerOrder;
+    }
+
+    /** Run the search, printing the keys found. */
+    void run() {
+        long start = System.nanoTime();
+        ArrayList<Process> processes = new ArrayList<>();
+        try (ServerSocket server = new ServerSocket(_port, BACKLOG, _bind)) {
+            Thread acceptor = new Thread(() -> accept(server),
+                                         "key search acceptor");
+            acceptor.setDaemon(true);
+            acceptor.start();
+            System.err.printf("searching %d keys in %d leases; workers may"
+                              + " connect to %s %d%n", _space.size(),
+                              _leaseCount,
+                              server.getInetAddress().getHostAddress(),
+                              server.getLocalPort());
+            for (int i = 0; i < _workers; i++) {
+                processes.add(spawn(server.getLocalPort()));
+            }
+            awaitCompletion(processes);
+        } catch (IOException excp) {
+            throw error("could not accept workers: %s", excp.getMessage());
+        } finally {
+            finish();
+            for (Process process : processes) {
+                try {
+                    if (!process.waitFor(GRACE, TimeUnit.MILLISECONDS)) {
+                        process.destroyForcibly();
+                    }
+                } catch (InterruptedException excp) {
+                    process.destroyForcibly();
+                }
+            }
+        }
+        synchronized (this) {
+            for (String hit : _hits) {
+                System.out.println(hit);
+            }
+            System.err.printf("%d keys found in %.1f s; %d leases, %d handed"
+                              + " out again, %d workers, %d lost%n",
+                              _hits.size(),
+                              (System.nanoTime() - start) / 1e9,
+                              _leaseCount, _reissued, _connected, _lost);
+        }
+    }
+
+    /** Accept workers on SERVER until the search is over, serving each
+     *  on a new thread. */
+    private void accept(ServerSocket server) {
+        while (true) {
+            Socket socket;
+            int number;
+            try {
+                socket = server.accept();
+            } catch (IOException excp) {
+                return;
+            }
+            synchronized (this) {
+                if (_finished) {
+                    close(socket);
+                    return;
+                }
+                _sockets.add(socket);
+                _connected += 1;
+                _active += 1;
+                number = _connected;
+            }
+            Thread handler = new Thread(() -> serve(socket),
+                                        "key search worker " + number);
+            handler.setDaemon(true);
+            handler.start();
+        }
+    }
+
+    /** Hand leases to the worker connected on SOCKET and collect its
+     *  results, until there are no more leases or it disconnects. */
+    private void serve(Socket socket) {
+        Lease lease = null;
+        try {
+            socket.setTcpNoDelay(true);
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(
+                new BufferedInputStream(socket.getInputStream()));
+            out.writeInt(MAGIC);
+            _job.write(out);
+            out.flush();
+            while ((lease = acquire()) != null) {
+                out.writeByte(LEASE);
+                out.writeLong(lease.id);
+                out.writeLong(lease.order);
+                out.writeLong(lease.start);
+                out.writeInt(lease.count);
+                out.flush();
+                ArrayList<String> hits = new ArrayList<>();
+                for (int tag = in.readByte(); tag != DONE;
+                     tag = in.readByte()) {
+                    if (tag != HIT) {
+                        throw new IOException("bad message from worker");
+                    }
+                    hits.add(in.readUTF());
+                }
+                if (in.readLong() != lease.id) {
+                    throw new IOException("bad message from worker");
+                }
+                complete(lease, hits);
+                lease = null;
+            }
+            out.writeByte(STOP);
+            out.flush();
+        } catch (IOException excp) {
+            if (lease != null) {
+                abandon(lease);
+            }
+        } finally {
+            synchronized (this) {
+                _sockets.remove(socket);
+                _active -= 1;
+                notifyAll();
+            }
+            close(socket);
+        }
+    }
+
+    /** Return a lease for a worker, waiting if need be, or null if
+     *  all leases have been completed.  Fresh leases and those abandoned
+     *  by disconnected workers are handed out first; when there are
+     *  none, the oldest late lease, if any, is handed out again. */
+    private synchronized Lease acquire() {
+        while (true) {
+            if (_completed == _leaseCount || _finished) {
+                return null;
+            }
+            Lease lease = _abandoned.poll();
+            if (lease == null && _nextLease < _leaseCount) {
+                long order = _nextLease / _leasesPerOrder;
+                long start = _nextLease % _leasesPerOrder * _leaseSize;
+                int count =
+                    (int) Math.min(_leaseSize, _space.positions() - start);
+                lease = new Lease(_nextLease, order, start, count);
+                _nextLease += 1;
+                _outstanding.put(lease.id, lease);
+            }
+            long now = System.currentTimeMillis();
+            long wake = Long.MAX_VALUE;
+            if (lease == null) {
+                for (Lease late : _outstanding.values()) {
+                    if (late.deadline <= now) {
+                        lease = late;
+                        _reissued += 1;
+                        break;
+                    }
+                    wake = Math.min(wake, late.deadline);
+                }
+            }
+            if (lease != null) {
+                lease.holders += 1;
+                lease.deadline = now + _timeout;
+                _outstanding.remove(lease.id);
+                _outstanding.put(lease.id, lease);
+                return lease;
+            }
+            try {
+                wait(Math.max(1, Math.min(wake - now, POLL)));
+            } catch (InterruptedException excp) {
+                return null;
+            }
+        }
+    }
+
+    /** Record that LEASE has been finished, with HITS. */
+    private synchronized void complete(Lease lease, List<String> hits) {
+        lease.holders -= 1;
+        if (_outstanding.remove(lease.id) != null) {
+            _completed += 1;
+            _hits.addAll(hits);
+            notifyAll();
+        }
+    }
+
+    /** Record that a worker holding LEASE has disconnected, handing it
+     *  out again unless it is finished or held by another worker. */
+    private synchronized void abandon(Lease lease) {
+        lease.holders -= 1;
+        _lost += 1;
+        if (lease.holders == 0 && _outstanding.containsKey(lease.id)) {
+            _outstanding.remove(lease.id);
+            _abandoned.addFirst(lease);
+            notifyAll();
+        }
+    }
+
+    /** Wait until all leases are completed.  Fail if all the local
+     *  worker processes, PROCESSES, have exited and no worker is
+     *  connected. */
+    private synchronized void awaitCompletion(List<Process> processes) {
+        while (_completed < _leaseCount) {
+            try {
+                wait(POLL);
+            } catch (InterruptedException excp) {
+                throw error("interrupted");
+            }
+            if (!processes.isEmpty() && _active == 0
+                && processes.stream().noneMatch(Process::isAlive)) {
+                throw error("all workers have exited");
+            }
+        }
+    }
+
+    /** End the search: let the connected workers be told to stop, and
+     *  after a grace period disconnect any that are still busy. */
+    private synchronized void finish() {
+        _finished = true;
+        notifyAll();
+        long deadline = System.currentTimeMillis() + GRACE;
+        for (long now = System.currentTimeMillis();
+             _active > 0 && now < deadline;
+             now = System.currentTimeMillis()) {
+            try {
+                wait(deadline - now);
+            } catch (InterruptedException excp) {
+                break;
+            }
+        }
+        for (Socket socket : _sockets) {
+            close(socket);
+        }
+    }
+
+    /** Start a local worker process that connects to PORT. */
+    private Process spawn(int port) {
+        String java = Paths.get(System.getProperty("java.home"), "bin",
+                                "java").toString();
+        ProcessBuilder builder = new ProcessBuilder(
+            java, "-cp", System.getProperty("java.class.path"),
+            SearchWorker.class.getName(), _bind.getHostAddress(),
+            Integer.toString(port));
+        builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        try {
+            return builder.start();
+        } catch (IOException excp) {
+            throw error("could not start worker: %s", excp.getMessage());
+        }
+    }
+
+    /** Close SOCKET, ignoring errors. */
+    private static void close(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException excp) {
+            /* Ignore: the worker is gone either way. */
+        }
+    }
+
+    /** Return the value of option OPT, of the form --NAME=N, checking
+     *  that LOW <= N <= HIGH. */
+    private static int number(String opt, int low, int high) {
+        int value;
+        try {
+            value = Integer.parseInt(opt.substring(opt.indexOf('=') + 1));
+        } catch (NumberFormatException excp) {
+            throw error("bad option: %s", opt);
+        }
+        if (value < low || value > high) {
+            throw error("bad option: %s", opt);
+        }
+        return value;
+    }
+
+    /** Return the contents of the file named NAME. */
+    private static String read(String name) {
+        try {
+            return new String(Files.readAllBytes(new File(name).toPath()),
+                              StandardCharsets.UTF_8);
+        } catch (IOException excp) {
+            throw error("could not read %s", name);
+        }
+    }
+
+    /** Return the first N characters of TEXT in ALPHA, converted to
+     *  upper case. */
+    private static String ciphertext(String text, Alphabet alpha, int n) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < text.length() && result.length() < n; i++) {
+            char c = Character.toUpperCase(text.charAt(i));
+            if (alpha.contains(c)) {
+                result.append(c);
+            }
+        }
+        if (result.length() < n) {
+            throw error("ciphertext too short for crib");
+        }
+        return result.toString();
+    }
+
+    /** What a worker needs to search part of the keys: the
+     *  configuration, the rotors allowed, the ring settings and
+     *  plugboard, the start of the ciphertext and the crib. */
+    static final class Job {
+
+        /** A search of the keys for the configuration described by
+         *  CONFIG, using the rotors named, separated by commas, in ALLOWED
+         *  (or all if it is empty), ring settings RINGS (by default, all
+         *  at the first character) and plugboard with cycles PLUGBOARD,
+         *  for keys under which PREFIX decrypts to CRIB at OFFSET, trying
+         *  LANES keys at once. */
+        Job(String config, String allowed, String rings, String plugboard,
+            String prefix, String crib, int offset, int lanes) {
+            _config = config;
+            _allowed = allowed;
+            _ringText = rings;
+            _plugboardText = plugboard;
+            _prefixText = prefix;
+            _cribText = crib;
+            _offset = offset;
+            _lanes = lanes;
+        }
+
+        /** Write me to OUT. */
+        void write(DataOutputStream out) throws IOException {
+            byte[] config = _config.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(config.length);
+            out.write(config);
+            out.writeUTF(_allowed);
+            out.writeUTF(_ringText);
+            out.writeUTF(_plugboardText);
+            out.writeUTF(_prefixText);
+            out.writeUTF(_cribText);
+            out.writeInt(_offset);
+            out.writeInt(_lanes);
+        }
+
+        /** Return the job written by write to IN. */
+        static Job read(DataInputStream in) throws IOException {
+            int length = in.readInt();
+            if (length < 0 || length > MAX_CONFIG) {
+                throw new IOException("bad job");
+            }
+            byte[] config = new byte[length];
+            in.readFully(config);
+            return new Job(new String(config, StandardCharsets.UTF_8),
+                           in.readUTF(), in.readUTF(), in.readUTF(),
+                           in.readUTF(), in.readUTF(), in.readInt(),
+                           in.readInt());
+        }
+
+        /** Parse and check my description, preparing to search. */
+        void prepare() {
+            MachineConfig config = Main.parseConfig(_config);
+            Alphabet alpha = config.alphabet();
+            _slots = config.numRotors();
+            _space = new KeySpace(config, _allowed.isEmpty() ? null
+                                  : Arrays.asList(_allowed.split(",")));
+            _rings = new int[_slots - 1];
+            if (!_ringText.isEmpty()) {
+                if (_ringText.length() != _slots - 1) {
+                    throw error("wrong number of ring settings");
+                }
+                for (int i = 0; i < _rings.length; i++) {
+                    char c = Character.toUpperCase(_ringText.charAt(i));
+                    if (!alpha.contains(c)) {
+                        throw error("ring setting not in alphabet");
+                    }
+                    _rings[i] = alpha.toInt(c);
+                }
+            }
+            _plugboard = new Permutation(_plugboardText, alpha);
+            _prefix = indices(_prefixText, alpha);
+            _crib = indices(_cribText, alpha);
+            if (_offset + _crib.length > _prefix.length) {
+                throw error("ciphertext too short for crib");
+            }
+            _engine = new MultiKeyEngine(config, _lanes);
+            _alphabet = alpha;
+        }
+
+        /** Return my key space. */
+        KeySpace space() {
+            return _space;
+        }
+
+        /** Add to HITS the settings lines of the keys with rotor order
+         *  ORDER and positions START to START+COUNT-1 under which my
+         *  ciphertext decrypts to my crib. */
+        void search(long order, long start, int count, List<String> hits) {
+            int[] rotors = new int[_slots];
+            int[] positions = new int[_slots - 1];
+            _space.order(order, rotors);
+            int lanes = _engine.lanes(), n = _prefix.length;
+            int[] out = new int[lanes * n];
+            for (long done = 0; done < count; done += lanes) {
+                int m = (int) Math.min(lanes, count - done);
+                for (int k = 0; k < lanes; k++) {
+                    _space.positions(start + done + Math.min(k, m - 1),
+                                     positions);
+                    _engine.set(k, rotors, positions, _rings, _plugboard);
+                }
+                _engine.convert(_prefix, n, out);
+                for (int k = 0; k < m; k++) {
+                    if (matches(out, k * n + _offset)) {
+                        _space.positions(start + done + k, positions);
+                        hits.add(settings(rotors, positions));
+                    }
+                }
+            }
+        }
+
+        /** Return true iff my crib appears in OUT at START. */
+        private boolean matches(int[] out, int start) {
+            for (int j = 0; j < _crib.length; j++) {
+                if (out[start + j] != _crib[j]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** Return the settings line for rotors ROTORS at POSITIONS with
+         *  my ring settings and plugboard. */
+        private String settings(int[] rotors, int[] positions) {
+            StringBuilder line = new StringBuilder("*");
+            for (int rotor : rotors) {
+                line.append(' ').append(_space.name(rotor));
+            }
+            line.append(' ');
+            for (int p : positions) {
+                line.append(_alphabet.toChar(p));
+            }
+            if (!_ringText.isEmpty()) {
+                line.append(' ').append(_ringText.toUpperCase());
+            }
+            if (!_plugboardText.trim().isEmpty()) {
+                line.append(' ').append(_plugboardText.trim());
+            }
+            return line.toString();
+        }
+
+        /** Return the indices in ALPHA of the characters of TEXT. */
+        private static int[] indices(String text, Alphabet alpha) {
+            int[] result = new int[text.length()];
+            for (int i = 0; i < result.length; i++) {
+                if (!alpha.contains(text.charAt(i))) {
+                    throw error("character not in alphabet: %c",
+                                text.charAt(i));
+                }
+                result[i] = alpha.toInt(text.charAt(i));
+            }
+            return result;
+        }
+
+        /** The configuration file's contents. */
+        private final String _config;
+        /** Names of the allowed rotors, separated by commas, or empty. */
+        private final String _allowed;
+        /** Ring settings, or empty. */
+        private final String _ringText;
+        /** Plugboard cycles. */
+        private final String _plugboardText;
+        /** Start of the ciphertext. */
+        private final String _prefixText;
+        /** The crib. */
+        private final String _cribText;
+        /** Offset of the crib in the ciphertext. */
+        private final int _offset;
+        /** Number of keys tried at once. */
+        private final int _lanes;
+        /** Alphabet, set by prepare. */
+        private Alphabet _alphabet;
+        /** Number of rotor slots, set by prepare. */
+        private int _slots;
+        /** Key space, set by prepare. */
+        private KeySpace _space;
+        /** Ring settings, set by prepare. */
+        private int[] _rings;
+        /** Plugboard, set by prepare. */
+        private Permutation _plugboard;
+        /** Ciphertext and crib as indices, set by prepare. */
+        private int[] _prefix, _crib;
+        /** Engine used by search, set by prepare. */
+        private MultiKeyEngine _engine;
+    }
+
+    /** A range of keys handed to workers. */
+    private static final class Lease {
+
+        /** Lease number ID: positions START .. START+COUNT-1 of rotor
+         *  order ORDER. */
+        Lease(long id, long order, long start, int count) {
+            this.id = id;
+            this.order = order;
+            this.start = start;
+            this.count = count;
+        }
+
+        /** Lease number. */
+        private final long id;
+        /** Rotor order. */
+        private final long order;
+        /** First position. */
+        private final long start;
+        /** Number of positions. */
+        private final int count;
+        /** Time (in milliseconds) after which it may be handed out
+         *  again. */
+        private long deadline;
+        /** Number of workers now holding it. */
+        private int holders;
+    }
+
+    /** Tags of messages between coordinator and workers. */
+    static final byte LEASE = 'L', STOP = 'S', HIT = 'H', DONE = 'D';
+    /** First word sent to a worker. */
+    static final int MAGIC = 0x454e4b53;
+
+    /** Default number of keys per lease. */
+    private static final int DEFAULT_LEASE = 1 << 16;
+    /** Default number of keys tried at once by each worker. */
+    private static final int DEFAULT_LANES = 1024;
+    /** Largest number of keys tried at once by each worker. */
+    private static final int MAX_LANES = 1 << 16;
+    /** Default lease timeout in milliseconds. */
+    private static final long DEFAULT_TIMEOUT = 60_000;
+    /** Largest crib offset. */
+    private static final int MAX_OFFSET = 1 << 15;
+    /** Largest port number. */
+    private static final int MAX_PORT = 65535;
+    /** Queue length for connecting workers. */
+    private static final int BACKLOG = 64;
+    /** Milliseconds between checks on waiting threads and workers. */
+    private static final long POLL = 1000;
+    /** Milliseconds allowed for workers to exit at the end. */
+    private static final long GRACE = 5000;
+    /** Largest configuration sent to workers, in bytes. */
+    private static final int MAX_CONFIG = 1 << 24;
+
+    /** The search handed to workers. */
+    private final Job _job;
+    /** The keys searched. */
+    private final KeySpace _space;
+    /** Number of local workers to start. */
+    private final int _workers;
+    /** Address and port on which to accept workers. */
+    private final InetAddress _bind;
+    /** Port on which to accept workers, or 0 for any. */
+    private int _port;
+    /** Keys per lease. */
+    private int _leaseSize = DEFAULT_LEASE;
+    /** Milliseconds before a lease may be handed out again. */
+    private long _timeout = DEFAULT_TIMEOUT;
+    /** Leases per rotor order, and in all. */
+    private final long _leasesPerOrder, _leaseCount;
+    /** Number of the next fresh lease. */
+    private long _nextLease;
+    /** Number of leases completed. */
+    private long _completed;
+    /** Leases handed out and not completed, least recently handed out
+     *  first. */
+    private final LinkedHashMap<Long, Lease> _outstanding =
+        new LinkedHashMap<>();
+    /** Leases given up by disconnected workers. */
+    private final ArrayDeque<Lease> _abandoned = new ArrayDeque<>();
+    /** Settings lines of the keys found. */
+    private final TreeSet<String> _hits = new TreeSet<>();
+    /** Sockets of connected workers. */
+    private final HashSet<Socket> _sockets = new HashSet<>();
+    /** Numbers of workers connected in all and now. */
+    private int _connected, _active;
+    /** Numbers of leases handed out again because late, and lost with
+     *  their workers. */
+    private long _reissued, _lost;
+    /** True once the search is over. */
+    private boolean _finished;
+}
@@ -0,0 +1,127 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import static enigma.TestUtils.*;
+
+/** Tests of the key search coordinator and its workers, connected over
+ *  the loopback interface.
+ *  @author Neha Kompella
+ */
+public class KeySearchTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /** A small configuration: 6 rotor orders of 216 positions. */
+    private static final String SMALL_CONFIG =
+        "ABCDEF 4 2 I MA (ABC)(DEF) II MB (AD)(BCEF) III MC (AFCB)(DE)"
+        + " N N (ABCDEF) R R (AB)(CD)(EF)";
+
+    /** Keys per lease. */
+    private static final int LEASE = 36;
+
+    /** Return a port on the loopback interface that was free just
+     *  now. */
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /** Connect to the coordinator on PORT, waiting for it to start
+     *  listening. */
+    private static Socket connect(int port) throws InterruptedException {
+        for (int tries = 0; ; tries++) {
+            try {
+                return new Socket("127.0.0.1", port);
+            } catch (IOException excp) {
+                if (tries == 500) {
+                    fail("coordinator not listening");
+                }
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    @Test
+    public void checkWorkerKilledMidLease() throws Exception {
+        MachineConfig config = Main.parseConfig(SMALL_CONFIG);
+        KeySpace space = new KeySpace(config, null);
+        int[] rotors = new int[4];
+        int[] positions = new int[3];
+        space.order(0, rotors);
+        space.positions(LEASE / 2, positions);
+        StringBuilder line = new StringBuilder("*");
+        for (int r : rotors) {
+            line.append(' ').append(space.name(r));
+        }
+        line.append(' ');
+        for (int p : positions) {
+            line.append(config.alphabet().toChar(p));
+        }
+        String crib = "DEADBEEFFACADEBAD";
+        Machine m = config.newMachine();
+        new Settings(line.toString(), m, config.alphabet()).apply(m);
+        File conf = tempFile(".conf", SMALL_CONFIG);
+        File cipher = tempFile(".txt", m.convert(crib));
+
+        int port = freePort();
+        KeySearch search = new KeySearch(new String[] {
+            "--workers=0", "--port=" + port, "--lease=" + LEASE,
+            "--lanes=8", conf.getPath(), cipher.getPath(), crib });
+        PrintStream stdout = System.out, stderr = System.err;
+        ByteArrayOutputStream found = new ByteArrayOutputStream();
+        ByteArrayOutputStream summary = new ByteArrayOutputStream();
+        Throwable[] failure = new Throwable[1];
+        Thread coordinator = new Thread(() -> {
+            try {
+                search.run();
+            } catch (Throwable excp) {
+                failure[0] = excp;
+            }
+        });
+        System.setOut(new PrintStream(found, true));
+        System.setErr(new PrintStream(summary, true));
+        try {
+            coordinator.start();
+            try (Socket doomed = connect(port)) {
+                DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(doomed.getInputStream()));
+                assertEquals(KeySearch.MAGIC, in.readInt());
+                KeySearch.Job.read(in).prepare();
+                assertEquals(KeySearch.LEASE, in.readByte());
+                assertEquals(0, in.readLong());
+                assertEquals(0, in.readLong());
+                assertEquals(0, in.readLong());
+                assertEquals(LEASE, in.readInt());
+            }
+            new SearchWorker(new String[] {
+                "127.0.0.1", Integer.toString(port) }).run();
+            coordinator.join();
+        } finally {
+            System.setOut(stdout);
+            System.setErr(stderr);
+        }
+        assertNull(failure[0]);
+        assertTrue(found.toString().contains(line + System.lineSeparator()));
+        assertTrue(summary.toString(),
+                   summary.toString().contains(
+                       "; 36 leases, 0 handed out again, 2 workers,"
+                       + " 1 lost"));
+    }
+
+}
@@ -0,0 +1,258 @@
+package enigma;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.TreeMap;
+
+import static enigma.EnigmaException.*;
+
+/** A compiled key sheet: the settings of a machine for each of a range
+ *  of keys, held in fixed-size records so that the settings for a key
+ *  are found at an offset computed from its ID.  Usage:
+ *      java enigma.KeySheet CONFIG SHEET OUTPUT
+ *  compiles SHEET, in which each line that is not blank and does not
+ *  start with '#' holds a key ID followed by a settings line for CONFIG,
+ *  to the file OUTPUT.  Key IDs are either dates, as YYYY-MM-DD, or
+ *  non-negative integers; dates are numbered by day from 1970-01-01.
+ *  Main, given OUTPUT with --keysheet, accepts settings lines of the
+ *  form "* @ID" for those keys.
+ *
+ *  A record holds the rotor indices, positions, ring settings and
+ *  plugboard table of a key, already resolved and validated, so that
+ *  nothing is parsed when a key is used.  The file is memory-mapped
+ *  read-only, so processes using the same sheet share its pages.
+ *  @author Neha Kompella
+ */
+public final class KeySheet {
+
+    /** Compile a key sheet as specified by ARGS (see above). */
+    public static void main(String... args) {
+        try {
+            if (args.length != 3) {
+                throw error("expected a configuration, a key sheet and an"
+                            + " output file");
+            }
+            MachineConfig config = Main.loadConfig(args[0]);
+            int keys;
+            try (BufferedReader in =
+                 new BufferedReader(new FileReader(args[1]))) {
+                keys = compile(config, in, new File(args[2]));
+            } catch (IOException excp) {
+                throw error("could not read %s", args[1]);
+            }
+            System.err.printf("%d keys%n", keys);
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Compile the key sheet read from IN, for configuration CONFIG,
+     *  into FILE, returning the number of keys. */
+    static int compile(MachineConfig config, BufferedReader in, File file)
+        throws IOException {
+        Machine m = config.newMachine();
+        Alphabet alpha = config.alphabet();
+        TreeMap<Long, Settings> keys = new TreeMap<>();
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("\\s+", 2);
+            long id = number(parts[0]);
+            if (parts.length < 2) {
+                throw error("no settings for key %s", parts[0]);
+            }
+            if (keys.put(id, new Settings(parts[1], m, alpha)) != null) {
+                throw error("duplicate key %s", parts[0]);
+            }
+        }
+        if (keys.isEmpty()) {
+            throw error("empty key sheet");
+        }
+        long first = keys.firstKey(), last = keys.lastKey();
+        if (last - first >= MAX_RECORDS) {
+            throw error("key IDs span too wide a range");
+        }
+        int slots = config.numRotors(), size = alpha.size();
+        int count = (int) (last - first + 1);
+        if (HEADER_SIZE + (long) count * recordSize(slots, size)
+            > Integer.MAX_VALUE) {
+            throw error("key sheet too large");
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeLong(config.fingerprint());
+            out.writeInt(slots);
+            out.writeInt(size);
+            out.writeLong(first);
+            out.writeInt(count);
+            for (long id = first; id <= last; id++) {
+                Settings key = keys.get(id);
+                out.writeChar(key == null ? 0 : 1);
+                for (int i = 0; i < slots; i++) {
+                    out.writeInt(key == null ? 0 : key.rotors()[i]);
+                }
+                for (int i = 0; i < slots - 1; i++) {
+                    out.writeChar(key == null ? 0 : key.positions()[i]);
+                }
+                for (int i = 0; i < slots - 1; i++) {
+                    out.writeChar(key == null ? 0 : key.rings()[i]);
+                }
+                for (int c = 0; c < size; c++) {
+                    out.writeChar(key == null ? c
+                                  : key.plugboard().table()[c]);
+                }
+            }
+        } catch (IOException excp) {
+            throw error("could not write key sheet %s", file);
+        }
+        return keys.size();
+    }
+
+    /** Return the compiled key sheet in FILE, which must have been
+     *  compiled for CONFIG. */
+    static KeySheet open(MachineConfig config, File file) {
+        ByteBuffer records;
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            records = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+                                          in.length());
+        } catch (IOException excp) {
+            throw error("could not read key sheet %s", file);
+        }
+        if (records.limit() < HEADER_SIZE || records.getInt(0) != MAGIC) {
+            throw error("%s is not a key sheet", file);
+        }
+        if (records.getLong(4) != config.fingerprint()) {
+            throw error("%s was compiled for a different configuration",
+                        file);
+        }
+        return new KeySheet(config.alphabet(), records, file);
+    }
+
+    /** A key sheet for alphabet ALPHA held in RECORDS, read from FILE. */
+    private KeySheet(Alphabet alpha, ByteBuffer records, File file) {
+        _alphabet = alpha;
+        _records = records;
+        _slots = records.getInt(12);
+        _size = records.getInt(16);
+        _first = records.getLong(20);
+        _count = records.getInt(28);
+        _recordSize = recordSize(_slots, _size);
+        if (_size != alpha.size() || _count < 0
+            || records.limit() != HEADER_SIZE + (long) _count * _recordSize) {
+            throw error("%s is not a key sheet", file);
+        }
+    }
+
+    /** Return the key ID referred to by the settings line LINE, if it
+     *  has the form "* @ID", or null otherwise. */
+    static String reference(String line) {
+        if (line.indexOf('@') < 0) {
+            return null;
+        }
+        String[] parts = line.trim().split("\\s+");
+        if (parts.length == 2 && parts[0].equals("*")
+            && parts[1].length() > 1 && parts[1].charAt(0) == '@') {
+            return parts[1].substring(1);
+        }
+        return null;
+    }
+
+    /** Return the settings of the key with ID KEYID. */
+    Settings settings(String keyID) {
+        long index = number(keyID) - _first;
+        if (index < 0 || index >= _count) {
+            throw error("no key %s in key sheet", keyID);
+        }
+        int at = HEADER_SIZE + (int) index * _recordSize;
+        if (_records.getChar(at) == 0) {
+            throw error("no key %s in key sheet", keyID);
+        }
+        at += 2;
+        int[] rotors = new int[_slots];
+        for (int i = 0; i < _slots; i++, at += 4) {
+            rotors[i] = _records.getInt(at);
+        }
+        int[] positions = new int[_slots - 1];
+        for (int i = 0; i < _slots - 1; i++, at += 2) {
+            positions[i] = _records.getChar(at);
+        }
+        int[] rings = new int[_slots - 1];
+        for (int i = 0; i < _slots - 1; i++, at += 2) {
+            rings[i] = _records.getChar(at);
+        }
+        int[] plugboard = new int[_size];
+        for (int c = 0; c < _size; c++, at += 2) {
+            plugboard[c] = _records.getChar(at);
+        }
+        return new Settings(rotors, positions, rings,
+                            new Permutation(plugboard, _alphabet));
+    }
+
+    /** Return the bytes in a record for SLOTS rotor slots and an
+     *  alphabet of SIZE characters: a flag marking keys that are
+     *  present, then the rotors, each a 32-bit index, since a
+     *  configuration may hold more than 65536 of them, then the
+     *  positions, ring settings and plugboard, each an unsigned 16-bit
+     *  value, which holds any index into an alphabet of chars. */
+    private static int recordSize(int slots, int size) {
+        return 4 * slots + 2 * (1 + 2 * (slots - 1) + size);
+    }
+
+    /** Return the number of key ID ID: its day number if it is a date,
+     *  and otherwise its value as a non-negative integer. */
+    static long number(String id) {
+        if (id.indexOf('-') > 0) {
+            try {
+                return LocalDate.parse(id).toEpochDay();
+            } catch (DateTimeParseException excp) {
+                throw error("bad key ID: %s", id);
+            }
+        }
+        long result;
+        try {
+            result = Long.parseLong(id);
+        } catch (NumberFormatException excp) {
+            throw error("bad key ID: %s", id);
+        }
+        if (result < 0) {
+            throw error("bad key ID: %s", id);
+        }
+        return result;
+    }
+
+    /** Identifies key sheet files. */
+    private static final int MAGIC = 0x456e4335;
+    /** Bytes in the header. */
+    private static final int HEADER_SIZE = 32;
+    /** Largest number of records in a key sheet. */
+    private static final long MAX_RECORDS = 1L << 24;
+
+    /** Alphabet of the keys. */
+    private final Alphabet _alphabet;
+    /** The mapped file. */
+    private final ByteBuffer _records;
+    /** Number of rotor slots, and alphabet size. */
+    private final int _slots, _size;
+    /** Number of the first key ID. */
+    private final long _first;
+    /** Number of records. */
+    private final int _count;
+    /** Bytes per record. */
+    private final int _recordSize;
+}
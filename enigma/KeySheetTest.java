@@ -0,0 +1,87 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static enigma.TestUtils.*;
+
+/** Tests of compiled key sheets.
+ *  @author Neha Kompella
+ */
+public class KeySheetTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /** Return the key sheet compiled from TEXT for CONFIG. */
+    private static KeySheet sheet(MachineConfig config, String text)
+        throws IOException {
+        File file = tempFile(".sheet", "");
+        KeySheet.compile(config, new BufferedReader(new StringReader(text)),
+                         file);
+        return KeySheet.open(config, file);
+    }
+
+    @Test
+    public void checkKeySheet() throws IOException {
+        MachineConfig config = Main.parseConfig(NAVAL_CONFIG);
+        String[] settings = {
+            "* B BETA III IV I AXLE (HQ) (EX)",
+            "* C GAMMA VI VII VIII AZMY BCDE",
+        };
+        KeySheet sheet =
+            sheet(config, "# daily keys\n2026-10-19 " + settings[0]
+                  + "\n2026-10-21 " + settings[1] + "\n");
+        assertEquals("2026-10-21", KeySheet.reference(" *  @2026-10-21"));
+        assertEquals(null, KeySheet.reference(settings[0]));
+        Machine m = config.newMachine();
+        EncryptionEngine engine =
+            EncryptionEngine.create("reference", config);
+        String[] ids = { "2026-10-19", "2026-10-21" };
+        for (int k = 0; k < ids.length; k++) {
+            new Settings(settings[k], m, config.alphabet()).apply(m);
+            engine.setUp(sheet.settings(ids[k]), "* @" + ids[k]);
+            assertEquals(m.convert("THEQUICKBROWNFOXJUMPSOVERTHELAZYDOG"),
+                         engine.convert("THEQUICKBROWNFOXJUMPSOVERTHELAZYDOG"));
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkMissingKey() throws IOException {
+        sheet(Main.parseConfig(NAVAL_CONFIG),
+              "7 * B BETA III IV I AXLE\n9 * C GAMMA VI VII VIII AZMY\n")
+            .settings("8");
+    }
+
+    @Test
+    public void checkManyRotors() throws IOException {
+        StringBuilder text =
+            new StringBuilder("ABCDEF 4 2 R R (AB)(CD)(EF) N N (ABCDEF)");
+        for (int k = 0; k < 70000; k++) {
+            text.append(k % 2 == 0 ? " M" + k + " MA (ABC)(DEF)"
+                        : " M" + k + " MB (AD)(BCEF)");
+        }
+        MachineConfig config = Main.parseConfig(text.toString());
+        String line = "* R N M4463 M69998 BCD AFE";
+        KeySheet sheet = sheet(config, "1 " + line + "\n");
+        Machine m = config.newMachine();
+        Settings expected = new Settings(line, m, config.alphabet());
+        Settings compiled = sheet.settings("1");
+        assertArrayEquals(expected.rotors(), compiled.rotors());
+        assertTrue(compiled.rotors()[3] > Character.MAX_VALUE);
+        expected.apply(m);
+        EncryptionEngine engine =
+            EncryptionEngine.create("reference", config);
+        engine.setUp(compiled, "* @1");
+        assertEquals(m.convert("ABCDEFFEDCBA"), engine.convert("ABCDEFFEDCBA"));
+    }
+
+}
@@ -0,0 +1,151 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** The rotor choices of a machine configuration searched for a key:
+ *  every valid order of rotors drawn from a set of allowed rotors, each
+ *  at every choice of positions.  Orders and positions are numbered, so
+ *  that a range of keys can be described by a few numbers and
+ *  enumerated in the same way by any process holding the same
+ *  configuration.
+ *  @author Neha Kompella
+ */
+final class KeySpace {
+
+    /** The key space of CONFIG, using only the available rotors named in
+     *  ALLOWED (in any case), or all of them if ALLOWED is null. */
+    KeySpace(MachineConfig config, List<String> allowed) {
+        _size = config.alphabet().size();
+        _slots = config.numRotors();
+        Machine m = config.newMachine();
+        _pawls = m.numPawls();
+        HashSet<Integer> chosen = null;
+        if (allowed != null) {
+            chosen = new HashSet<>();
+            for (String name : allowed) {
+                int index = m.rotorIndex(name);
+                if (index < 0) {
+                    throw error("no rotor named %s", name);
+                }
+                chosen.add(index);
+            }
+        }
+        _names = new String[config.numAvailable()];
+        for (int i = 0; i < _names.length; i++) {
+            _names[i] = config.rotorName(i);
+            if (chosen == null || chosen.contains(i)) {
+                switch (config.rotorKind(i)) {
+                case RotorCatalogue.REFLECTOR:
+                    _reflectors.add(i);
+                    break;
+                case RotorCatalogue.MOVING:
+                    _moving.add(i);
+                    break;
+                default:
+                    _fixed.add(i);
+                    break;
+                }
+            }
+        }
+        try {
+            _orders = Math.multiplyExact(
+                _reflectors.size()
+                * arrangements(_fixed.size(), _slots - _pawls - 1),
+                arrangements(_moving.size(), _pawls));
+            long positions = 1;
+            for (int k = 1; k < _slots; k++) {
+                positions = Math.multiplyExact(positions, _size);
+            }
+            _positions = positions;
+            Math.multiplyExact(_orders, _positions);
+        } catch (ArithmeticException excp) {
+            throw error("too many keys to search");
+        }
+        if (_orders == 0) {
+            throw error("no valid order of the allowed rotors");
+        }
+    }
+
+    /** Return the number of rotor orders. */
+    long orders() {
+        return _orders;
+    }
+
+    /** Return the number of choices of positions for each order. */
+    long positions() {
+        return _positions;
+    }
+
+    /** Return the number of keys. */
+    long size() {
+        return _orders * _positions;
+    }
+
+    /** Fill ROTORS with the numbers of the available rotors, reflector
+     *  first, of order number ORDER, where 0 <= ORDER < orders(). */
+    void order(long order, int[] rotors) {
+        rotors[0] = _reflectors.get((int) (order % _reflectors.size()));
+        order /= _reflectors.size();
+        order = choose(order, _fixed, rotors, 1, _slots - _pawls);
+        choose(order, _moving, rotors, _slots - _pawls, _slots);
+    }
+
+    /** Fill POSITIONS with the positions, leftmost first, of the rotors
+     *  other than the reflector in choice number INDEX, where
+     *  0 <= INDEX < positions(). */
+    void positions(long index, int[] positions) {
+        for (int k = _slots - 2; k >= 0; k--) {
+            positions[k] = (int) (index % _size);
+            index /= _size;
+        }
+    }
+
+    /** Return the name of available rotor number INDEX. */
+    String name(int index) {
+        return _names[index];
+    }
+
+    /** Fill ROTORS[FROM .. TO-1] with distinct members of CANDIDATES,
+     *  chosen according to the low-order digits of INDEX in a mixed
+     *  radix, and return the remaining high-order part of INDEX. */
+    private static long choose(long index, List<Integer> candidates,
+                               int[] rotors, int from, int to) {
+        ArrayList<Integer> left = new ArrayList<>(candidates);
+        for (int k = from; k < to; k++) {
+            int n = left.size();
+            rotors[k] = left.remove((int) (index % n));
+            index /= n;
+        }
+        return index;
+    }
+
+    /** Return the number of ordered choices of K of N things. */
+    private static long arrangements(int n, int k) {
+        long result = 1;
+        for (int i = 0; i < k; i++) {
+            result = Math.multiplyExact(result, n - i);
+        }
+        return result;
+    }
+
+    /** Alphabet size. */
+    private final int _size;
+    /** Number of slots. */
+    private final int _slots;
+    /** Number of pawls. */
+    private final int _pawls;
+    /** Names of the available rotors, by number. */
+    private final String[] _names;
+    /** Numbers of the allowed reflectors, fixed rotors and moving
+     *  rotors. */
+    private final ArrayList<Integer> _reflectors = new ArrayList<>(),
+        _fixed = new ArrayList<>(), _moving = new ArrayList<>();
+    /** Number of rotor orders. */
+    private final long _orders;
+    /** Number of choices of positions. */
+    private final long _positions;
+}
@@ -0,0 +1,71 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static enigma.TestUtils.*;
+
+/** Tests of the numbering of keys searched.
+ *  @author Neha Kompella
+ */
+public class KeySpaceTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    @Test
+    public void checkKeySpace() {
+        MachineConfig config = Main.parseConfig(NAVAL_CONFIG);
+        Machine m = config.newMachine();
+        KeySpace space = new KeySpace(config, null);
+        assertEquals(2 * 2 * 8 * 7 * 6, space.orders());
+        assertEquals(26 * 26 * 26 * 26, space.positions());
+        HashSet<String> seen = new HashSet<>();
+        int[] rotors = new int[5];
+        for (long order = 0; order < space.orders(); order++) {
+            space.order(order, rotors);
+            m.checkRotors(rotors);
+            seen.add(Arrays.toString(rotors));
+        }
+        assertEquals(space.orders(), seen.size());
+        int[] positions = new int[4];
+        space.positions(27, positions);
+        assertEquals("[0, 0, 1, 1]", Arrays.toString(positions));
+    }
+
+    @Test
+    public void checkAllowed() {
+        MachineConfig config = Main.parseConfig(NAVAL_CONFIG);
+        KeySpace space = new KeySpace(config, Arrays.asList(
+            "b", "Beta", "GAMMA", "I", "II", "V", "VIII"));
+        assertEquals(1 * 2 * 4 * 3 * 2, space.orders());
+        assertEquals(space.orders() * space.positions(), space.size());
+        HashSet<String> allowed = new HashSet<>(Arrays.asList(
+            "B", "Beta", "Gamma", "I", "II", "V", "VIII"));
+        int[] rotors = new int[5];
+        for (long order = 0; order < space.orders(); order++) {
+            space.order(order, rotors);
+            for (int r : rotors) {
+                assertTrue(allowed.contains(space.name(r)));
+            }
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkUnknownRotor() {
+        new KeySpace(Main.parseConfig(NAVAL_CONFIG), Arrays.asList("IX"));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkNoOrder() {
+        new KeySpace(Main.parseConfig(NAVAL_CONFIG),
+                     Arrays.asList("B", "Beta", "I", "II"));
+    }
+
+}
@@ -0,0 +1,174 @@
+package enigma;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** A memory-bounded, least-recently-used cache of keystream tables,
+ *  keyed by the full settings line (rotors, positions and plugboard)
+ *  that produced them.  A table holds the complete substitution for
+ *  each of the first few keystrokes of a message, so that messages
+ *  sent under a repeated key become one table lookup per character.
+ *  A table is only built the second time a key is seen, so that keys
+ *  used once cost nothing.
+ *  @author Neha Kompella
+ */
+class KeystreamCache {
+
+    /** Largest alphabet whose substitutions fit in a byte. */
+    static final int MAX_ALPHABET = 256;
+
+    /** A cache holding at most MAXBYTES bytes of tables, each covering
+     *  the first POSITIONS keystrokes of a message. */
+    KeystreamCache(long maxBytes, int positions) {
+        _maxBytes = maxBytes;
+        _positions = positions;
+        _entries = new LinkedHashMap<>(16, 0.75f, true);
+        _seen = new HashSet<>();
+    }
+
+    /** Return the number of keystrokes covered by my tables. */
+    int positions() {
+        return _positions;
+    }
+
+    /** Return the table for settings line KEY, or null if there is
+     *  none.  If there is none and KEY has been seen before, build one
+     *  from M, whose rotors and plugboard must have just been set from
+     *  KEY, and retain it. */
+    synchronized Entry get(String key, Machine m) {
+        Entry result = _entries.get(key);
+        if (result != null) {
+            _hits += 1;
+            return result;
+        }
+        _misses += 1;
+        if (!_seen.add(key)) {
+            result = m.keystream(_positions);
+            if (result != null) {
+                put(key, result);
+            }
+        } else if (_seen.size() > MAX_SEEN) {
+            _seen.clear();
+            _seen.add(key);
+        }
+        return result;
+    }
+
+    /** Add ENTRY under KEY, evicting least-recently used entries as
+     *  needed to stay within my memory bound. */
+    private void put(String key, Entry entry) {
+        if (entry.bytes() > _maxBytes) {
+            return;
+        }
+        _entries.put(key, entry);
+        _bytes += entry.bytes();
+        Iterator<Map.Entry<String, Entry>> iter =
+            _entries.entrySet().iterator();
+        while (_bytes > _maxBytes && iter.hasNext()) {
+            _bytes -= iter.next().getValue().bytes();
+            iter.remove();
+            _evictions += 1;
+        }
+    }
+
+    /** Return the number of lookups that found a table. */
+    synchronized long hits() {
+        return _hits;
+    }
+
+    /** Return the number of lookups that did not find a table. */
+    synchronized long misses() {
+        return _misses;
+    }
+
+    /** Return the number of tables discarded to make room. */
+    synchronized long evictions() {
+        return _evictions;
+    }
+
+    /** Return the number of bytes held in tables. */
+    synchronized long bytes() {
+        return _bytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("keystream cache: %d hits, %d misses, "
+                             + "%d evictions, %d tables, %d bytes",
+                             _hits, _misses, _evictions, _entries.size(),
+                             _bytes);
+    }
+
+    /** The substitutions of a machine for its first few keystrokes. */
+    static final class Entry {
+
+        /** An entry whose substitution for keystroke S of character C
+         *  is TABLE[S * SIZE + C] for 0 <= S < LENGTH, after which the
+         *  rotors are at END. */
+        Entry(byte[] table, int length, int size, int[] end) {
+            _table = table;
+            _length = length;
+            _size = size;
+            _end = end;
+        }
+
+        /** Return the number of keystrokes I cover. */
+        int length() {
+            return _length;
+        }
+
+        /** Return the rotor positions after my last keystroke. */
+        int[] endPositions() {
+            return _end;
+        }
+
+        /** Return the number of bytes in my table. */
+        long bytes() {
+            return _table.length;
+        }
+
+        /** Return the substitution for character C at keystroke STEP,
+         *  where 0 <= STEP < length(). */
+        int substitute(int step, int c) {
+            return _table[step * _size + c] & 0xff;
+        }
+
+        /** Convert the first N indices in MSG in place, as keystrokes
+         *  STEP, STEP + 1, ..., stopping when my table runs out.  Return
+         *  the number of indices converted. */
+        int convert(int[] msg, int n, int step) {
+            int count = Math.min(n, _length - step);
+            for (int i = 0, k = step * _size; i < count; i++, k += _size) {
+                msg[i] = _table[k + msg[i]] & 0xff;
+            }
+            return count;
+        }
+
+        /** Substitution tables, one row per keystroke. */
+        private final byte[] _table;
+        /** Number of keystrokes in _table. */
+        private final int _length;
+        /** Alphabet size. */
+        private final int _size;
+        /** Rotor positions after the last keystroke in _table. */
+        private final int[] _end;
+    }
+
+    /** Largest number of once-seen keys remembered. */
+    private static final int MAX_SEEN = 1 << 16;
+
+    /** Memory bound on _entries, in bytes. */
+    private final long _maxBytes;
+    /** Keystrokes per table. */
+    private final int _positions;
+    /** Tables by settings line, in access order. */
+    private final LinkedHashMap<String, Entry> _entries;
+    /** Settings lines seen without a table. */
+    private final HashSet<String> _seen;
+    /** Bytes currently in _entries. */
+    private long _bytes;
+    /** Lookup statistics. */
+    private long _hits, _misses, _evictions;
+}
@@ -0,0 +1,123 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** A reader of lines from a byte stream that keeps track of the byte
+ *  offset of the next unread line, so that processing can later be
+ *  resumed from that point.  Lines end at "\n", "\r\n" or "\r".
+ *  @author Neha Kompella
+ */
+class LineReader {
+
+    /** A reader of lines from IN, which is positioned at byte OFFSET of
+     *  its underlying file. */
+    LineReader(InputStream in, long offset) {
+        _in = in;
+        _offset = offset;
+        _buffer = new byte[BUFFER_SIZE];
+        _line = new byte[LINE_SIZE];
+    }
+
+    /** Return the next line, without its terminator, or null if there
+     *  are no more lines. */
+    String readLine() {
+        int len = 0;
+        boolean any = false;
+        while (true) {
+            if (_pos == _limit && !fill()) {
+                if (!any) {
+                    return null;
+                }
+                break;
+            }
+            any = true;
+            int start = _pos;
+            int end = _limit;
+            int i = start;
+            while (i < end && _buffer[i] != '\n' && _buffer[i] != '\r') {
+                i += 1;
+            }
+            len = append(len, start, i);
+            _offset += i - start;
+            _pos = i;
+            if (i < end) {
+                byte term = _buffer[i];
+                _pos += 1;
+                _offset += 1;
+                if (term == '\r' && (_pos < _limit || fill())
+                    && _buffer[_pos] == '\n') {
+                    _pos += 1;
+                    _offset += 1;
+                }
+                break;
+            }
+        }
+        return new String(_line, 0, len, CHARSET);
+    }
+
+    /** Return the byte offset of the start of the next unread line. */
+    long offset() {
+        return _offset;
+    }
+
+    /** Close my underlying stream. */
+    void close() {
+        try {
+            _in.close();
+        } catch (IOException excp) {
+            throw error("could not close input");
+        }
+    }
+
+    /** Append _buffer[START .. END-1] to the first LEN bytes of _line,
+     *  returning the new length. */
+    private int append(int len, int start, int end) {
+        int n = end - start;
+        if (len + n > _line.length) {
+            _line = Arrays.copyOf(_line, Math.max(2 * _line.length, len + n));
+        }
+        System.arraycopy(_buffer, start, _line, len, n);
+        return len + n;
+    }
+
+    /** Refill _buffer from _in, returning false at end of input. */
+    private boolean fill() {
+        try {
+            int n;
+            do {
+                n = _in.read(_buffer, 0, _buffer.length);
+            } while (n == 0);
+            if (n < 0) {
+                return false;
+            }
+            _pos = 0;
+            _limit = n;
+            return true;
+        } catch (IOException excp) {
+            throw error("could not read input");
+        }
+    }
+
+    /** Size of the read buffer. */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /** Initial size of the line buffer. */
+    private static final int LINE_SIZE = 1 << 10;
+    /** Encoding of input lines. */
+    static final Charset CHARSET = Charset.defaultCharset();
+
+    /** Source of bytes. */
+    private final InputStream _in;
+    /** Bytes read from _in; _buffer[_pos .. _limit-1] are unread. */
+    private final byte[] _buffer;
+    /** Bounds of unread bytes in _buffer. */
+    private int _pos, _limit;
+    /** Bytes of the line being read. */
+    private byte[] _line;
+    /** Offset of _buffer[_pos] in the underlying file. */
+    private long _offset;
+}
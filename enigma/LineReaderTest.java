@@ -0,0 +1,84 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Random;
+
+/** Tests of the line reader.
+ *  @author Neha Kompella
+ */
+public class LineReaderTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Return a stream of BYTES that delivers at most a few bytes per
+     *  read, chosen using RANDOM. */
+    private static InputStream trickle(byte[] bytes, Random random) {
+        return new ByteArrayInputStream(bytes) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off,
+                                  Math.min(len, 1 + random.nextInt(3)));
+            }
+        };
+    }
+
+    /** Check that reading from IN, which starts at byte START, gives
+     *  LINES, each followed by the offset of the line after it, and
+     *  then the end of input. */
+    private static void checkLines(InputStream in, long start,
+                                   Object... lines) {
+        LineReader reader = new LineReader(in, start);
+        assertEquals(start, reader.offset());
+        for (int i = 0; i < lines.length; i += 2) {
+            assertEquals(lines[i], reader.readLine());
+            assertEquals(((Number) lines[i + 1]).longValue(),
+                         reader.offset());
+        }
+        assertNull(reader.readLine());
+        reader.close();
+    }
+
+    @Test
+    public void checkTerminators() {
+        String text = "one\ntwo\r\nthree\rfour\r\rfive";
+        Object[] lines = {
+            "one", 4, "two", 9, "three", 15, "four", 20, "", 21, "five", 25,
+        };
+        checkLines(new ByteArrayInputStream(text.getBytes()), 0, lines);
+        for (int seed = 0; seed < 20; seed++) {
+            checkLines(trickle(text.getBytes(), new Random(seed)), 0,
+                       lines);
+        }
+        checkLines(new ByteArrayInputStream("a\n\nb\n".getBytes()), 100,
+                   "a", 102, "", 103, "b", 105);
+        checkLines(new ByteArrayInputStream(new byte[0]), 0);
+    }
+
+    @Test
+    public void checkLongLines() {
+        Random random = new Random(29);
+        StringBuilder text = new StringBuilder();
+        ArrayList<Object> lines = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            StringBuilder line = new StringBuilder();
+            for (int k = random.nextInt(100000); k > 0; k--) {
+                line.append((char) ('A' + random.nextInt(26)));
+            }
+            text.append(line).append(i % 2 == 0 ? "\n" : "\r\n");
+            lines.add(line.toString());
+            lines.add((long) text.length());
+        }
+        checkLines(new ByteArrayInputStream(text.toString().getBytes()), 0,
+                   lines.toArray());
+    }
+
+}
@@ -1,10 +1,6 @@
 package enigma;
 
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.ArrayList;
-import java.util.List;
 
 
 import static enigma.EnigmaException.*;
@@ -23,21 +19,29 @@ class Machine {
      */
     Machine(Alphabet alpha, int numRotors, int pawls,
             Collection<Rotor> allRotors) {
+        this(alpha, numRotors, pawls, new RotorCatalogue(allRotors));
+    }
+
+    /**
+     * A new Enigma machine with alphabet ALPHA, 1 < NUMROTORS rotor slots,
+     * and 0 <= PAWLS < NUMROTORS pawls, whose available rotors are in
+     * ROTORS.  Rotors are compiled only when inserted.
+     */
+    Machine(Alphabet alpha, int numRotors, int pawls,
+            RotorCatalogue rotors) {
         _alphabet = alpha;
         _numRotors = numRotors;
         _pawls = pawls;
-        _allRotors = allRotors;
+        _rotors = rotors;
         usedRotors = new Rotor[numRotors];
-        rotorMap = new HashMap<>();
-        for (Rotor element : allRotors) {
-            rotorMap.put(element.name().toUpperCase(), element);
-        }
+        _usedSlots = new int[numRotors];
         if (_pawls >= _numRotors) {
             throw new EnigmaException("More pawls than rotors");
         }
         if (_pawls <= 0) {
             throw new EnigmaException("0 or less pawls");
         }
+        _bank = new RotorBank(alpha.size(), numRotors, pawls);
 
     }
 
@@ -61,28 +65,73 @@ class Machine {
      * Initially, all rotors are set at their 0 setting.
      */
     void insertRotors(String[] rotors) {
+        int[] slots = new int[_numRotors];
         int i = 0;
         for (String name : rotors) {
-            usedRotors[i] = rotorMap.get(name.toUpperCase());
+            slots[i] = rotorIndex(name);
             i++;
         }
-        if (usedRotors.length != _numRotors) {
+        checkRotors(slots);
+        insertRotors(slots);
+    }
+
+    /**
+     * Set my rotor slots to the rotors numbered SLOTS, as returned by
+     * rotorIndex, which have been validated by checkRotors.
+     */
+    void insertRotors(int[] slots) {
+        for (int i = 0; i < _numRotors; i++) {
+            if (usedRotors[i] == null || _usedSlots[i] != slots[i]) {
+                usedRotors[i] = _rotors.rotor(slots[i]);
+                _usedSlots[i] = slots[i];
+            }
+        }
+        if (_bank.holds(usedRotors)) {
+            for (int i = 1; i < _numRotors; i++) {
+                _bank.setPosition(i, 0);
+            }
+        } else {
+            _bank.load(usedRotors);
+        }
+    }
+
+    /**
+     * Return the number of my available rotor named NAME (in any case),
+     * or -1 if there is none.
+     */
+    int rotorIndex(String name) {
+        return _rotors.index(name);
+    }
+
+    /**
+     * Check that SLOTS numbers a reflector, then fixed rotors, then
+     * moving rotors for each of my slots.
+     */
+    void checkRotors(int[] slots) {
+        if (slots.length != _numRotors) {
             throw new EnigmaException("Incorrect number of rotors");
         }
-        if (!(usedRotors[0] instanceof Reflector)) {
+        if (_rotors.kind(slots[0]) != RotorCatalogue.REFLECTOR) {
             throw new EnigmaException("Invalid sequence of rotors");
         }
         for (int j = 1; j < _numRotors - _pawls; j++) {
-            if (!(usedRotors[j] instanceof FixedRotor)) {
+            int kind = _rotors.kind(slots[j]);
+            if (kind < 0 || kind == RotorCatalogue.MOVING) {
                 throw new EnigmaException("Invalid sequence of rotors");
             }
         }
-        for (int k = _numRotors - _pawls; k < usedRotors.length; k++) {
-            if (!(usedRotors[k] instanceof MovingRotor)) {
+        for (int k = _numRotors - _pawls; k < _numRotors; k++) {
+            if (_rotors.kind(slots[k]) != RotorCatalogue.MOVING) {
                 throw new EnigmaException("Invalid sequence of Rotors");
             }
         }
-
+        for (int i = 0; i < _numRotors; i++) {
+            for (int j = i + 1; j < _numRotors; j++) {
+                if (slots[i] == slots[j]) {
+                    throw new EnigmaException("Rotor used more than once");
+                }
+            }
+        }
     }
 
     /**
@@ -98,9 +147,67 @@ class Machine {
         }
         for (int i = 1; i < usedRotors.length; i++) {
             int h = _alphabet.toInt(setting.charAt(i - 1));
-            usedRotors[i].set(h);
+            _bank.setPosition(i, h);
 
         }
+        _step = 0;
+        _keystream = null;
+    }
+
+    /**
+     * Set my rotors (not counting the reflector) to POSITIONS, a
+     * validated array of indices into my alphabet.
+     */
+    void setRotors(int[] positions) {
+        for (int i = 1; i < usedRotors.length; i++) {
+            _bank.setPosition(i, positions[i - 1]);
+        }
+        _step = 0;
+        _keystream = null;
+    }
+
+    /**
+     * Set the ring settings of my rotors (not counting the reflector) to
+     * RINGS, a validated array of indices into my alphabet.  A rotor at
+     * setting P with ring setting R converts as if its wiring were at
+     * P - R, while its notches stay with P.  The ring settings are
+     * folded into my tables here, and do not change when other rotors
+     * are inserted.
+     */
+    void setRings(int[] rings) {
+        for (int i = 1; i < usedRotors.length; i++) {
+            _bank.setRing(i, rings[i - 1]);
+        }
+        _keystream = null;
+    }
+
+    /**
+     * Return the current settings of my rotors, one per slot (the
+     * reflector included), as indices into my alphabet.
+     */
+    int[] positions() {
+        int[] result = new int[usedRotors.length];
+        for (int i = 0; i < usedRotors.length; i++) {
+            result[i] = _bank.position(i);
+        }
+        return result;
+    }
+
+    /**
+     * Set my rotors to POSITIONS, as returned by positions().
+     */
+    void setPositions(int[] positions) {
+        for (int i = 1; i < usedRotors.length; i++) {
+            _bank.setPosition(i, positions[i]);
+        }
+    }
+
+    /**
+     * Return the number of characters converted since my rotors were
+     * last set.
+     */
+    long step() {
+        return _step;
     }
 
     /**
@@ -108,6 +215,9 @@ class Machine {
      */
     void setPlugboard(Permutation plugboard) {
         _plugboard = plugboard;
+        if (!_bank.plugged(plugboard.table())) {
+            _bank.plug(plugboard.table());
+        }
     }
 
     /**
@@ -116,49 +226,121 @@ class Machine {
      * the machine.
      */
     int convert(int c) {
-        List<Integer> atTheNotch = new LinkedList<>();
-
-        int fix = numRotors() - numPawls();
-        int next = fix + 1;
-        int len = usedRotors.length - 1;
-        for (int i = fix; i < usedRotors.length; i++) {
-            if (i != (fix) && usedRotors[i].atNotch()) {
-                atTheNotch.add(i);
-            } else if (i == (fix) && fix < len && usedRotors[next].atNotch()) {
-                atTheNotch.add(i);
-            }
+        if (_keystream != null) {
+            int[] one = { c };
+            convert(one, 1);
+            return one[0];
         }
-        List<Rotor> pushed = new ArrayList<>();
-        for (int j : atTheNotch) {
-            if (!pushed.contains(usedRotors[j])) {
-                usedRotors[j].advance();
-                pushed.add(usedRotors[j]);
+        advanceRotors();
+        _step += 1;
+        return translate(c);
+    }
+
+    /**
+     * Advance my rotors as for a single keystroke.
+     */
+    private void advanceRotors() {
+        _bank.step();
+    }
+
+    /**
+     * Returns the result of passing C through the plugboard and rotors
+     * in their current settings, without advancing anything.
+     */
+    private int translate(int c) {
+        return _bank.translate(c);
+    }
+
+    /**
+     * Convert the N indices in MSG in place, advancing the rotors
+     * accordingly.  Runs of keystrokes that step only the rightmost
+     * rotor are handled without consulting any notches.
+     */
+    void convert(int[] msg, int n) {
+        RotorBank bank = _bank;
+        int i = 0;
+        if (_keystream != null) {
+            i = _keystream.convert(msg, n, (int) _step);
+            _step += i;
+            if (_step == _keystream.length()) {
+                setPositions(_keystream.endPositions());
+                _keystream = null;
             }
-            if (!pushed.contains(usedRotors[j - 1])) {
-                usedRotors[j - 1].advance();
-                pushed.add(usedRotors[j - 1]);
+        }
+        _step += n - i;
+        while (i < n) {
+            int run = Math.min(bank.simpleRun(), n - i);
+            if (run == 0) {
+                bank.step();
+                msg[i] = bank.translate(msg[i]);
+                i += 1;
+            } else {
+                for (int end = i + run; i < end; i++) {
+                    bank.advanceFast(1);
+                    msg[i] = bank.translate(msg[i]);
+                }
             }
         }
+    }
 
-        if (!pushed.contains(usedRotors[usedRotors.length - 1])) {
-            usedRotors[usedRotors.length - 1].advance();
+    /**
+     * Advance me as if N characters had been converted.
+     */
+    void skip(long n) {
+        if (_keystream != null) {
+            long k = Math.min(n, _keystream.length() - _step);
+            _step += k;
+            n -= k;
+            if (_step == _keystream.length()) {
+                setPositions(_keystream.endPositions());
+                _keystream = null;
+            }
         }
-
-        c = _plugboard.permute(c);
-
-        for (int i = usedRotors.length - 1; i >= 0; i--) {
-            c = usedRotors[i].convertForward(c);
+        _step += n;
+        while (n > 0) {
+            int run = (int) Math.min(_bank.simpleRun(), n);
+            if (run == 0) {
+                _bank.step();
+                n -= 1;
+            } else {
+                _bank.advanceFast(run);
+                n -= run;
+            }
         }
+    }
 
-        for (int i = 1; i < usedRotors.length; i++) {
-            c = usedRotors[i].convertBackward(c);
+    /**
+     * Return a keystream table for my first N keystrokes from my
+     * current settings, leaving those settings unchanged.  Returns
+     * null if my alphabet is too large to tabulate in bytes.
+     */
+    KeystreamCache.Entry keystream(int n) {
+        int size = _alphabet.size();
+        if (size > KeystreamCache.MAX_ALPHABET) {
+            return null;
         }
-
-        c = _plugboard.permute(c);
-
-        return c;
+        int[] start = positions();
+        byte[] table = new byte[n * size];
+        for (int s = 0, k = 0; s < n; s++) {
+            advanceRotors();
+            for (int c = 0; c < size; c++, k++) {
+                table[k] = (byte) translate(c);
+            }
+        }
+        int[] end = positions();
+        setPositions(start);
+        return new KeystreamCache.Entry(table, n, size, end);
     }
 
+    /**
+     * Use KEYSTREAM, which must have been computed by keystream() from
+     * my current settings and plugboard, for my next keystrokes.
+     */
+    void useKeystream(KeystreamCache.Entry keystream) {
+        if (keystream != null && _step == 0) {
+            _keystream = keystream;
+        }
+    }
 
     /**
      * Returns the encoding/decoding of MSG, updating the state of
@@ -172,25 +354,18 @@ class Machine {
         msg = msg.toUpperCase();
         char[] msgArray = msg.toCharArray();
         int[] intArray = new int[msgArray.length];
-        int[] convertedIntArray = new int[msgArray.length];
         char[] convertedMsgArray = new char[msgArray.length];
         for (int i = 0; i < msgArray.length; i++) {
             intArray[i] = _alphabet.toInt(msgArray[i]);
         }
 
-        for (int i = 0; i < msgArray.length; i++) {
-            convertedIntArray[i] = convert(intArray[i]);
-        }
+        convert(intArray, intArray.length);
 
         for (int i = 0; i < msgArray.length; i++) {
-            convertedMsgArray[i] = _alphabet.toChar(convertedIntArray[i]);
+            convertedMsgArray[i] = _alphabet.toChar(intArray[i]);
         }
 
-        String morocco = "";
-        for (int i = 0; i < convertedMsgArray.length; i++) {
-            morocco += convertedMsgArray[i];
-        }
-        return morocco;
+        return new String(convertedMsgArray);
 
     }
 
@@ -210,17 +385,30 @@ class Machine {
      * Plugboard permutation.
      */
     private Permutation _plugboard;
-    /**
-     * Collection of all available rotor permutations.
-     */
-    private Collection<Rotor> _allRotors;
     /**
      * List of rotors used for this particular machine.
      */
     private Rotor[] usedRotors;
     /**
-     * Dictionary where name of Rotor is associated to
-     * the information of the rotor.
+     * Numbers of the rotors in usedRotors, where those are not null.
+     */
+    private int[] _usedSlots;
+    /**
+     * Available rotors, by name and number.
+     */
+    private RotorCatalogue _rotors;
+    /**
+     * The used rotors, their positions and the plugboard, in the form
+     * used for conversion.
+     */
+    private RotorBank _bank;
+    /**
+     * Number of characters converted since the rotors were set.
+     */
+    private long _step;
+    /**
+     * Precomputed substitutions for the first keystrokes after the
+     * rotors were set, or null.
      */
-    private HashMap<String, Rotor> rotorMap;
+    private KeystreamCache.Entry _keystream;
 }
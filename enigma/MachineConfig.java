@@ -0,0 +1,131 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/** A machine configuration as read from a configuration file: an
+ *  alphabet, the numbers of rotor slots and pawls, and the available
+ *  rotors.  Machines do not change the rotors they are given, so one
+ *  configuration may be used by any number of machines at once.  The
+ *  rotors are held in a RotorCatalogue, so that those read from a file
+ *  are compiled only when used.
+ *  @author Neha Kompella
+ */
+final class MachineConfig {
+
+    /** A configuration with alphabet ALPHA, NUMROTORS rotor slots, PAWLS
+     *  pawls and available rotors ALLROTORS. */
+    MachineConfig(Alphabet alpha, int numRotors, int pawls,
+                  Collection<Rotor> allRotors) {
+        this(alpha, numRotors, pawls, new RotorCatalogue(allRotors));
+    }
+
+    /** A configuration with alphabet ALPHA, NUMROTORS rotor slots, PAWLS
+     *  pawls and available rotors ROTORS. */
+    MachineConfig(Alphabet alpha, int numRotors, int pawls,
+                  RotorCatalogue rotors) {
+        _alphabet = alpha;
+        _numRotors = numRotors;
+        _pawls = pawls;
+        _rotors = rotors;
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the number of rotor slots of my machines. */
+    int numRotors() {
+        return _numRotors;
+    }
+
+    /** Return the number of available rotors. */
+    int numAvailable() {
+        return _rotors.size();
+    }
+
+    /** Return the available rotors, compiling any that are not
+     *  compiled.  They must not be changed.  Where only some rotors are
+     *  needed, rotor is cheaper. */
+    List<Rotor> rotors() {
+        List<Rotor> result = new ArrayList<>(_rotors.size());
+        for (int i = 0; i < _rotors.size(); i++) {
+            result.add(_rotors.rotor(i));
+        }
+        return result;
+    }
+
+    /** Return available rotor number INDEX, compiling it if need be. */
+    Rotor rotor(int index) {
+        return _rotors.rotor(index);
+    }
+
+    /** Return the name of available rotor number INDEX. */
+    String rotorName(int index) {
+        return _rotors.name(index);
+    }
+
+    /** Return the kind of available rotor number INDEX, one of
+     *  RotorCatalogue.FIXED, MOVING and REFLECTOR. */
+    int rotorKind(int index) {
+        return _rotors.kind(index);
+    }
+
+    /** Return the permutation of available rotor number INDEX, which is
+     *  cheaper than compiling the rotor. */
+    Permutation permutation(int index) {
+        return _rotors.permutation(index);
+    }
+
+    /** Return the characters naming the notch positions of available
+     *  rotor number INDEX, or null if it is not a moving rotor. */
+    String notches(int index) {
+        return _rotors.notches(index);
+    }
+
+    /** Return my available rotors. */
+    RotorCatalogue catalogue() {
+        return _rotors;
+    }
+
+    /** Return a new machine with my configuration. */
+    Machine newMachine() {
+        return new Machine(_alphabet, _numRotors, _pawls, _rotors);
+    }
+
+    /** Return a 64-bit digest of my alphabet, numbers of slots and
+     *  pawls, and rotors (their names, kinds, wirings and notches),
+     *  identifying files computed from me.  Computing it compiles no
+     *  rotors (see RotorCatalogue.fingerprint). */
+    long fingerprint() {
+        long h = FNV_BASIS;
+        int size = _alphabet.size();
+        h = mix(h, size);
+        for (int i = 0; i < size; i++) {
+            h = mix(h, _alphabet.toChar(i));
+        }
+        h = mix(mix(h, _numRotors), _pawls);
+        return _rotors.fingerprint(h);
+    }
+
+    /** Return digest H updated with the value V (FNV-1a, one int at a
+     *  time). */
+    static long mix(long h, int v) {
+        return (h ^ v) * FNV_PRIME;
+    }
+
+    /** FNV-1a parameters. */
+    private static final long FNV_BASIS = 0xcbf29ce484222325L,
+        FNV_PRIME = 0x100000001b3L;
+
+    /** Alphabet of my machines. */
+    private final Alphabet _alphabet;
+    /** Number of rotor slots. */
+    private final int _numRotors;
+    /** Number of pawls. */
+    private final int _pawls;
+    /** All available rotors. */
+    private final RotorCatalogue _rotors;
+}
@@ -0,0 +1,118 @@
+package enigma;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import static enigma.EnigmaException.*;
+
+/** A snapshot of a job in progress: the settings line of the current
+ *  message, the number of characters of that message converted so far,
+ *  and the offsets in the input and output files at which processing
+ *  continues.  Restoring the settings line and skipping the converted
+ *  characters puts a machine back in exactly the state it had.
+ *  @author Neha Kompella
+ */
+class MachineState {
+
+    /** A snapshot at byte INPUTOFFSET of the input and OUTPUTOFFSET of
+     *  the output, MESSAGEOFFSET characters into the message begun by
+     *  SETTINGS (null if there has been no settings line yet). */
+    MachineState(String settings, long messageOffset, long inputOffset,
+                 long outputOffset) {
+        _settings = settings;
+        _messageOffset = messageOffset;
+        _inputOffset = inputOffset;
+        _outputOffset = outputOffset;
+    }
+
+    /** Return the settings line of the current message, or null. */
+    String settings() {
+        return _settings;
+    }
+
+    /** Return the number of characters of the current message that
+     *  have been converted. */
+    long messageOffset() {
+        return _messageOffset;
+    }
+
+    /** Return the byte offset in the input at which to continue. */
+    long inputOffset() {
+        return _inputOffset;
+    }
+
+    /** Return the byte offset in the output at which to continue. */
+    long outputOffset() {
+        return _outputOffset;
+    }
+
+    /** Write me durably to FILE, replacing its previous contents
+     *  atomically: a crash leaves either the old or the new snapshot. */
+    void save(File file) {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeInt(MAGIC);
+            data.writeBoolean(_settings != null);
+            if (_settings != null) {
+                data.writeUTF(_settings);
+            }
+            data.writeLong(_messageOffset);
+            data.writeLong(_inputOffset);
+            data.writeLong(_outputOffset);
+            data.flush();
+            out.getFD().sync();
+        } catch (IOException excp) {
+            throw error("could not write checkpoint %s", temp);
+        }
+        try {
+            Files.move(temp.toPath(), file.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw error("could not write checkpoint %s", file);
+        }
+    }
+
+    /** Return the snapshot stored in FILE by save. */
+    static MachineState load(File file) {
+        try (DataInputStream data =
+             new DataInputStream(new FileInputStream(file))) {
+            if (data.readInt() != MAGIC) {
+                throw error("%s is not a checkpoint file", file);
+            }
+            String settings = data.readBoolean() ? data.readUTF() : null;
+            long messageOffset = data.readLong();
+            long inputOffset = data.readLong();
+            long outputOffset = data.readLong();
+            return new MachineState(settings, messageOffset, inputOffset,
+                                    outputOffset);
+        } catch (IOException excp) {
+            throw error("could not read checkpoint %s", file);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s @%d (input %d, output %d)", _settings,
+                             _messageOffset, _inputOffset, _outputOffset);
+    }
+
+    /** Identifies checkpoint files. */
+    private static final int MAGIC = 0x456e4331;
+
+    /** Settings line of the current message, or null. */
+    private final String _settings;
+    /** Characters of the current message converted. */
+    private final long _messageOffset;
+    /** Byte offset of the next input line. */
+    private final long _inputOffset;
+    /** Byte offset of the next output byte. */
+    private final long _outputOffset;
+}
@@ -0,0 +1,108 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** Tests of checkpoints and of resuming jobs from them.
+ *  @author Neha Kompella
+ */
+public class MachineStateTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    @Test
+    public void checkSaveAndLoad() throws IOException {
+        File file = tempFile(".ckpt", "");
+        new MachineState("* B BETA I II III AAAA", 17, 1L << 33, 42)
+            .save(file);
+        MachineState state = MachineState.load(file);
+        assertEquals("* B BETA I II III AAAA", state.settings());
+        assertEquals(17, state.messageOffset());
+        assertEquals(1L << 33, state.inputOffset());
+        assertEquals(42, state.outputOffset());
+        new MachineState(null, 0, 0, 0).save(file);
+        assertNull(MachineState.load(file).settings());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkNotACheckpoint() throws IOException {
+        MachineState.load(tempFile(".ckpt", "not a checkpoint"));
+    }
+
+    /** Check that resuming the job of converting INPUT from a checkpoint
+     *  taken before input line LINE gives the output of an uninterrupted
+     *  run. */
+    private void checkResume(String input, int line) throws IOException {
+        File conf = tempFile(".conf", NAVAL_CONFIG);
+        File in = tempFile(".inp", input);
+        File out = tempFile(".out", "");
+        runMain(conf.getPath(), in.getPath(), out.getPath());
+        String full = contents(out);
+
+        String[] lines = input.split("\n", -1);
+        String[] outLines = full.split("(?<=\n)", -1);
+        String settings = null;
+        long inputOffset = 0, messageOffset = 0, outputOffset = 0;
+        int written = 0;
+        for (int i = 0; i < line; i++) {
+            inputOffset += lines[i].length() + 1;
+            if (lines[i].startsWith("*")) {
+                settings = lines[i];
+                messageOffset = 0;
+            } else {
+                messageOffset += lines[i].replace(" ", "").length();
+                outputOffset += outLines[written].length();
+                written += 1;
+            }
+        }
+        File ckpt = new File(out.getPath() + ".ckpt");
+        ckpt.deleteOnExit();
+        new MachineState(settings, messageOffset, inputOffset, outputOffset)
+            .save(ckpt);
+        Files.write(out.toPath(),
+                    (full.substring(0, (int) outputOffset)
+                     + "PARTIAL LINE").getBytes());
+        runMain("--resume", conf.getPath(), in.getPath(), out.getPath());
+        assertEquals(full, contents(out));
+        assertFalse(ckpt.exists());
+    }
+
+    @Test
+    public void checkResume() throws IOException {
+        Random random = new Random(29);
+        String input = randomMessages(random, 20, 6);
+        int lines = input.split("\n").length;
+        for (int trial = 0; trial < 10; trial++) {
+            checkResume(input, 1 + random.nextInt(lines - 1));
+        }
+        checkResume(input, lines);
+    }
+
+    @Test
+    public void checkCheckpointedRun() throws IOException {
+        String input = randomMessages(new Random(2029), 600, 120);
+        assertTrue(input.length() > 1 << 20);
+        File conf = tempFile(".conf", NAVAL_CONFIG);
+        File in = tempFile(".inp", input);
+        File plain = tempFile(".out", "");
+        File checked = tempFile(".out", "");
+        runMain(conf.getPath(), in.getPath(), plain.getPath());
+        runMain("--checkpoint=1", conf.getPath(), in.getPath(),
+                checked.getPath());
+        assertEquals(contents(plain), contents(checked));
+        assertFalse(new File(checked.getPath() + ".ckpt").exists());
+    }
+
+}
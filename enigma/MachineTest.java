@@ -114,6 +114,48 @@ public class MachineTest {
         assertEquals("I", m.convert("H"));
     }
 
-}
+    @Test
+    public void checkKeystream() {
+        String[] names = {"B", "BETA", "VI", "VII", "VIII"};
+        m.insertRotors(names);
+        m.setRotors("AZMY");
+        m.setPlugboard(plugboard);
+        String plain = m.convert("HELLOWORLDTHISISAVERYLONGMESSAGE");
+        m.setRotors("AZMY");
+        m.useKeystream(m.keystream(10));
+        assertEquals(plain, m.convert("HELLOWORLDTHISISAVERYLONGMESSAGE"));
+    }
 
+    @Test
+    public void checkSkip() {
+        String[] names = {"B", "BETA", "III", "IV", "I"};
+        m.insertRotors(names);
+        m.setRotors("AXLE");
+        m.setPlugboard(plugboard);
+        m.convert("THEQUICKBROWNFOXJUMPSOVERTHELAZYDOG");
+        String rest = m.convert("ANDSOMEMORE");
+        m.setRotors("AXLE");
+        m.skip(35);
+        assertEquals(35, m.step());
+        assertEquals(rest, m.convert("ANDSOMEMORE"));
+    }
+
+    @Test
+    public void checkRings() {
+        Collection<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("UKWB", new Permutation(
+            "(AY) (BR) (CU) (DH) (EQ) (FS) (GL) (IP) (JX) (KN) (MO) (TZ) (VW)",
+            alphaTest)));
+        rotors.add(uno);
+        rotors.add(dos);
+        rotors.add(tres);
+        Machine m3 = new Machine(alphaTest, 4, 3, rotors);
+        new Settings("* UKWB I II III AAA", m3, alphaTest).apply(m3);
+        assertEquals("BDZGO", m3.convert("AAAAA"));
+        new Settings("* UKWB I II III AAA BBB", m3, alphaTest).apply(m3);
+        assertEquals("EWTYX", m3.convert("AAAAA"));
+        new Settings("* UKWB I II III AAA AAA", m3, alphaTest).apply(m3);
+        assertEquals("BDZGO", m3.convert("AAAAA"));
+    }
 
+}
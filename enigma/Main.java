@@ -1,13 +1,23 @@
 package enigma;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
-
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 import java.util.Scanner;
-import java.util.ArrayList;
-import java.util.NoSuchElementException;
-import java.util.Collection;
 
 import static enigma.EnigmaException.*;
 
@@ -20,7 +30,8 @@ public final class Main {
 
     /**
      * Process a sequence of encryptions and decryptions, as
-     * specified by ARGS, where 1 <= ARGS.length <= 3.
+     * specified by ARGS, where 1 <= ARGS.length <= 3 (not counting
+     * options).
      * ARGS[0] is the name of a configuration file.
      * ARGS[1] is optional; when present, it names an input file
      * containing messages.  Otherwise, input comes from the standard
@@ -28,6 +39,35 @@ public final class Main {
      * file for processed messages.  Otherwise, output goes to the
      * standard output. Exits normally if there are no errors in the input;
      * otherwise with code 1.
+     * Options, which precede the other arguments, are
+     *   --checkpoint=N  save a checkpoint to ARGS[2].ckpt after every
+     *                   N megabytes of input.
+     *   --resume        continue from the checkpoint for ARGS[2], if
+     *                   there is one.
+     *   --index=K       write an index of ARGS[1] to ARGS[1].idx, with
+     *                   an entry at least every K characters.
+     *   --extract=F:T   using ARGS[1].idx, convert only the characters
+     *                   in bytes F to T-1 of ARGS[1].
+     *   --pipeline[=N]  read, convert and write on separate threads,
+     *                   with N chunks of buffering between each, and
+     *                   report the depths of the queues on the
+     *                   standard error.
+     *   --deflate       read ARGS[1] and write ARGS[2] as raw deflate
+     *                   streams.
+     *   --engine=NAME   convert with the engine NAME (see
+     *                   EncryptionEngine), by default the reference
+     *                   engine.
+     *   --keysheet=F    resolve settings lines of the form "* @ID"
+     *                   from the compiled key sheet F (see KeySheet).
+     *   --stats         report statistics of the converted text of
+     *                   each message and of the whole run (see
+     *                   CipherStats) on the standard error, as JSON.
+     *                   Under BatchRunner, each message's report is
+     *                   tagged with the job's output file, and the
+     *                   runner reports the totals of all jobs.
+     * Files whose names end in ".gz" are read and written in gzip
+     * format.  Offsets in checkpoints and indices count uncompressed
+     * bytes.
      */
     public static void main(String... args) {
         try {
@@ -43,42 +83,276 @@ public final class Main {
      * Check ARGS and open the necessary files (see comment on main).
      */
     Main(String[] args) {
+        this(args, null);
+    }
+
+    /**
+     * Check ARGS and open the necessary files (see comment on main),
+     * taking the configuration from CONFIGS, unless it is null.
+     */
+    Main(String[] args, ConfigCache configs) {
+        _batch = configs != null;
+        int k = 0;
+        while (k < args.length && args[k].startsWith("--")) {
+            option(args[k]);
+            k += 1;
+        }
+        args = Arrays.copyOfRange(args, k, args.length);
         if (args.length < 1 || args.length > 3) {
             throw error("Only 1, 2, or 3 command-line arguments allowed");
         }
+        if ((_checkpointBytes > 0 || _resume) && args.length < 3) {
+            throw error("checkpoints need input and output files");
+        }
+        if ((_indexSpacing > 0 || _extractTo >= 0) && args.length < 2) {
+            throw error("indexing needs an input file");
+        }
+        if (_indexSpacing > 0 && (_resume || _extractTo >= 0)) {
+            throw error("cannot index while resuming or extracting");
+        }
+        if (_pipelineChunks > 0 && _extractTo >= 0) {
+            throw error("cannot pipeline while extracting");
+        }
+        if (_wantStats && _extractTo >= 0) {
+            throw error("cannot gather statistics while extracting");
+        }
+        if ((_checkpointBytes > 0 || _resume) && compressed(args[2])) {
+            throw error("cannot checkpoint compressed output");
+        }
 
-        _config = getInput(args[0]);
-
-        if (args.length > 1) {
-            _input = getInput(args[1]);
+        if (configs != null) {
+            _machineConfig = configs.get(args[0]);
         } else {
-            _input = new Scanner(System.in);
+            _config = getInput(args[0]);
         }
 
         if (args.length > 2) {
-            _output = getOutput(args[2]);
+            _checkpoint = new File(args[2] + ".ckpt");
+            if (_resume && _checkpoint.exists()) {
+                _restored = MachineState.load(_checkpoint);
+            }
+        }
+
+        long inputOffset =
+            _restored == null ? 0 : _restored.inputOffset();
+        InputStream in = System.in;
+        try {
+            if (args.length > 1) {
+                _inputName = args[1];
+                in = openInput(args[1], inputOffset);
+                if (_indexSpacing > 0) {
+                    _index = new PositionIndex.Writer(
+                        new File(args[1] + ".idx"), _indexSpacing);
+                }
+            }
+        } catch (RuntimeException excp) {
+            release(in);
+            throw excp;
+        }
+
+        long outputOffset =
+            _restored == null ? 0 : _restored.outputOffset();
+        OutputStream out;
+        try {
+            if (args.length > 2) {
+                _outputName = args[2];
+                out = openOutput(args[2], outputOffset);
+            } else {
+                out = new FileOutputStream(FileDescriptor.out);
+            }
+        } catch (RuntimeException excp) {
+            release(in);
+            if (_index != null) {
+                release(_index::close);
+            }
+            throw excp;
+        }
+
+        if (_pipelineChunks > 0) {
+            _pipeline = new Pipeline(in, out, _pipelineChunks);
+            in = _pipeline.input();
+            out = _pipeline.output();
+        }
+        _input = new LineReader(in, inputOffset);
+        _output = new GroupWriter(out, outputOffset);
+    }
+
+    /**
+     * A Main used only to read a configuration.
+     */
+    private Main() {
+        _batch = false;
+    }
+
+    /**
+     * Return the configuration in the file named NAME.
+     */
+    static MachineConfig loadConfig(String name) {
+        Main reader = new Main();
+        reader._config = reader.getInput(name);
+        return reader.readConfig();
+    }
+
+    /**
+     * Return the configuration whose description is TEXT, as it would
+     * appear in a configuration file.
+     */
+    static MachineConfig parseConfig(String text) {
+        Main reader = new Main();
+        reader._config = text.getBytes();
+        return reader.readConfig();
+    }
+
+    /**
+     * Record the command-line option OPT.
+     */
+    private void option(String opt) {
+        if (opt.equals("--resume")) {
+            _resume = true;
+        } else if (opt.startsWith("--keysheet=")) {
+            _keySheetName = opt.substring("--keysheet=".length());
+        } else if (opt.equals("--stats")) {
+            _wantStats = true;
+        } else if (opt.equals("--deflate")) {
+            _deflate = true;
+        } else if (opt.startsWith("--checkpoint=")) {
+            try {
+                _checkpointBytes =
+                    Long.parseLong(opt.substring("--checkpoint=".length()))
+                    << 20;
+            } catch (NumberFormatException excp) {
+                throw error("bad checkpoint interval: %s", opt);
+            }
+            if (_checkpointBytes <= 0) {
+                throw error("bad checkpoint interval: %s", opt);
+            }
+        } else if (opt.startsWith("--engine=")) {
+            _engine = opt.substring("--engine=".length());
+            if (!EncryptionEngine.NAMES.contains(_engine)) {
+                throw error("bad option: %s", opt);
+            }
+        } else if (opt.startsWith("--index=")) {
+            _indexSpacing = number(opt, "--index=".length(), opt.length());
+            if (_indexSpacing <= 0) {
+                throw error("bad option: %s", opt);
+            }
+        } else if (opt.equals("--pipeline")) {
+            _pipelineChunks = Pipeline.DEFAULT_CHUNKS;
+        } else if (opt.startsWith("--pipeline=")) {
+            long chunks = number(opt, "--pipeline=".length(), opt.length());
+            if (chunks <= 0 || chunks > MAX_PIPELINE_CHUNKS) {
+                throw error("bad option: %s", opt);
+            }
+            _pipelineChunks = (int) chunks;
+        } else if (opt.startsWith("--extract=") && opt.indexOf(':') > 0) {
+            int colon = opt.indexOf(':');
+            _extractFrom = number(opt, "--extract=".length(), colon);
+            _extractTo = number(opt, colon + 1, opt.length());
+            if (_extractFrom < 0 || _extractTo < _extractFrom) {
+                throw error("bad option: %s", opt);
+            }
         } else {
-            _output = System.out;
+            throw error("unknown option: %s", opt);
         }
     }
 
     /**
-     * Return a Scanner reading from the file named NAME.
+     * Return the number in OPT[START .. END-1].
      */
-    private Scanner getInput(String name) {
+    private static long number(String opt, int start, int end) {
         try {
-            return new Scanner(new File(name));
+            return Long.parseLong(opt.substring(start, end));
+        } catch (NumberFormatException excp) {
+            throw error("bad option: %s", opt);
+        }
+    }
+
+    /**
+     * Return the contents of the file named NAME, which is
+     * decompressed if its name ends in ".gz".
+     */
+    private byte[] getInput(String name) {
+        try (InputStream in = name.endsWith(GZIP_SUFFIX)
+             ? new GZIPInputStream(new FileInputStream(name), ZIP_BUFFER_SIZE)
+             : new FileInputStream(name)) {
+            return in.readAllBytes();
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
     }
 
     /**
-     * Return a PrintStream writing to the file named NAME.
+     * Return true iff the message file named NAME is to be read or
+     * written compressed.
      */
-    private PrintStream getOutput(String name) {
+    private boolean compressed(String name) {
+        return _deflate || name.endsWith(GZIP_SUFFIX);
+    }
+
+    /**
+     * Return a stream reading from the message file named NAME,
+     * decompressed if necessary, starting at (uncompressed) byte
+     * OFFSET.
+     */
+    private InputStream openInput(String name, long offset) {
         try {
-            return new PrintStream(new File(name));
+            FileInputStream file = new FileInputStream(name);
+            if (!compressed(name)) {
+                file.getChannel().position(offset);
+                return file;
+            }
+            InputStream in;
+            if (_deflate) {
+                Inflater inflater = new Inflater(true);
+                in = new InflaterInputStream(file, inflater,
+                                             ZIP_BUFFER_SIZE) {
+                    @Override
+                    public void close() throws IOException {
+                        super.close();
+                        inflater.end();
+                    }
+                };
+            } else {
+                in = new GZIPInputStream(file, ZIP_BUFFER_SIZE);
+            }
+            while (offset > 0) {
+                long skipped = in.skip(offset);
+                if (skipped <= 0) {
+                    throw error("%s is shorter than expected", name);
+                }
+                offset -= skipped;
+            }
+            return in;
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /**
+     * Return a stream writing to the message file named NAME,
+     * compressed if necessary, discarding any contents after its first
+     * OFFSET bytes.  Compressed files are always written from the
+     * start.
+     */
+    private OutputStream openOutput(String name, long offset) {
+        try {
+            FileOutputStream out = new FileOutputStream(name, offset > 0);
+            out.getChannel().truncate(offset);
+            if (_deflate) {
+                Deflater deflater =
+                    new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+                return new DeflaterOutputStream(out, deflater,
+                                                ZIP_BUFFER_SIZE) {
+                    @Override
+                    public void close() throws IOException {
+                        super.close();
+                        deflater.end();
+                    }
+                };
+            } else if (name.endsWith(GZIP_SUFFIX)) {
+                return new GZIPOutputStream(out, ZIP_BUFFER_SIZE);
+            }
+            return out;
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
@@ -89,188 +363,457 @@ public final class Main {
      * file _config and apply it to the messages in _input, sending the
      * results to _output.
      */
-    private void process() {
-        Machine m = readConfig();
-        while (_input.hasNextLine()) {
-            String a = _input.nextLine();
-            if (!a.isEmpty()) {
-                setUp(m, a);
-                while (_input.hasNextLine() && !_input.hasNext("\\*")) {
-                    String line = _input.nextLine();
-                    Scanner linesc = new Scanner(line);
-                    while (linesc.hasNext()) {
-                        String inputter = linesc.next();
-                        String outputter = m.convert(inputter);
-                        message = message + outputter;
-                    }
-                    message += "\n";
+    void process() {
+        try {
+            MachineConfig config =
+                _machineConfig != null ? _machineConfig : readConfig();
+            _alphabet = config.alphabet();
+            EncryptionEngine m = EncryptionEngine.create(_engine, config);
+            if (_keySheetName != null) {
+                _keySheet = KeySheet.open(config, new File(_keySheetName));
+            }
+            if (_wantStats) {
+                _stats = new CipherStats(_alphabet,
+                                         _batch ? _outputName : null);
+            }
+            if (_extractTo >= 0) {
+                extract(m);
+            } else {
+                convertAll(m);
+            }
+            _input.close();
+            if (_checkpoint != null || _pipeline != null) {
+                _output.close();
+                if (_checkpoint != null) {
+                    _checkpoint.delete();
                 }
             } else {
-                message += "\n";
+                _output.flush();
+            }
+            if (_pipeline != null) {
+                System.err.print(_pipeline.stats());
+            }
+            if (_stats != null) {
+                report(_stats.end());
+                if (!_batch) {
+                    report(_stats.report());
+                }
+                flushReports();
+            }
+        } catch (RuntimeException excp) {
+            abandon();
+            throw excp;
+        }
+    }
+
+    /**
+     * Release my input, output and index after a failure, without
+     * writing out buffered output, stopping the pipeline, if any.  The
+     * standard input and output are left open.
+     */
+    private void abandon() {
+        if (_pipeline != null) {
+            _pipeline.abort();
+        } else {
+            if (_input != null && _inputName != null) {
+                release(_input::close);
             }
+            if (_output != null && _outputName != null) {
+                release(_output::abandon);
+            }
+        }
+        if (_index != null) {
+            release(_index::close);
         }
-        if (_input.hasNext()) {
-            message += "\n";
+        if (_stats != null) {
+            release(Main::flushReports);
         }
-        printMessageLine(message);
     }
 
+    /**
+     * Return the statistics gathered by process, with the current
+     * message ended, or null if none were wanted.
+     */
+    CipherStats stats() {
+        return _stats;
+    }
 
     /**
-     * Return an Enigma machine configured from the contents of configuration
-     * file _config.
+     * Run CLOSE, which releases a resource after a failure, ignoring any
+     * error, since the first error is the one reported.
      */
-    private Machine readConfig() {
+    private static void release(Runnable close) {
         try {
-            _alphabet = new Alphabet(_config.next());
-            if (_alphabet.contains('*')) {
-                throw new EnigmaException("invalid characters in alphabet");
-            } else if (_alphabet.contains('(') || _alphabet.contains(')')) {
-                throw new EnigmaException("invalid characters in alphabet");
-            }
-
-            _numRotors = _config.nextInt();
-            _numPawls = _config.nextInt();
-            _allRotors = new ArrayList<>();
+            close.run();
+        } catch (RuntimeException excp) {
+            return;
+        }
+    }
 
-            while (_config.hasNext()) {
-                _allRotors.add(readRotor());
+    /**
+     * Close IN, after a failure, unless it is the standard input.
+     */
+    private static void release(InputStream in) {
+        if (in != System.in) {
+            try {
+                in.close();
+            } catch (IOException excp) {
+                return;
+            }
+        }
+    }
 
+    /**
+     * Write the statistics report REPORT, unless it is null, as one
+     * line.
+     */
+    private static void report(String report) {
+        if (report == null) {
+            return;
+        }
+        byte[] line = report.getBytes(StandardCharsets.UTF_8);
+        try {
+            synchronized (STATS_OUT) {
+                STATS_OUT.write(line);
+                STATS_OUT.write('\n');
             }
+        } catch (IOException excp) {
+            throw error("could not write statistics");
+        }
+    }
 
-            return new Machine(_alphabet, _numRotors, _numPawls, _allRotors);
+    /**
+     * Write out any buffered statistics reports.
+     */
+    private static void flushReports() {
+        try {
+            synchronized (STATS_OUT) {
+                STATS_OUT.flush();
+            }
+        } catch (IOException excp) {
+            throw error("could not write statistics");
+        }
+    }
 
-        } catch (NoSuchElementException excp) {
-            excp.printStackTrace();
-            throw error("configuration file truncated");
+    /**
+     * Convert all messages in _input with M, sending the results to
+     * _output.
+     */
+    private void convertAll(EncryptionEngine m) {
+        if (_restored != null && _restored.settings() != null) {
+            setUp(m, _restored.settings());
+            m.skip(_restored.messageOffset());
         }
+        long lastCheckpoint = _input.offset();
+        long settingsOffset = -1;
+        String line;
+        while (true) {
+            long lineOffset = _input.offset();
+            line = _input.readLine();
+            if (line == null) {
+                break;
+            }
+            if (_settingsLine == null ? !line.isEmpty() : isSettings(line)) {
+                setUp(m, line);
+                settingsOffset = lineOffset;
+            } else {
+                long converted = convertLine(m, line, _output, _stats);
+                _output.endLine();
+                if (_index != null) {
+                    _index.advance(converted, _input.offset(),
+                                   m.step(), settingsOffset);
+                }
+            }
+            if (_checkpointBytes > 0
+                && _input.offset() - lastCheckpoint >= _checkpointBytes) {
+                checkpoint(m);
+                lastCheckpoint = _input.offset();
+            }
+        }
+        if (_index != null) {
+            _index.close();
+        }
+    }
 
+    /**
+     * Convert with M only the characters in bytes _extractFrom to
+     * _extractTo - 1 of _input, starting from the nearest preceding
+     * entry in its index.
+     */
+    private void extract(EncryptionEngine m) {
+        _input.close();
+        PositionIndex entry =
+            PositionIndex.find(new File(_inputName + ".idx"), _extractFrom);
+        if (entry.settingsOffset() >= 0) {
+            LineReader settings =
+                new LineReader(openInput(_inputName, entry.settingsOffset()),
+                               entry.settingsOffset());
+            setUp(m, settings.readLine());
+            settings.close();
+            m.skip(entry.messageOffset());
+        }
+        _input = new LineReader(openInput(_inputName, entry.inputOffset()),
+                                entry.inputOffset());
+        String line;
+        while (_input.offset() < _extractTo) {
+            long offset = _input.offset();
+            line = _input.readLine();
+            if (line == null) {
+                break;
+            }
+            if (_settingsLine == null ? !line.isEmpty() : isSettings(line)) {
+                setUp(m, line);
+            } else if (offset + line.getBytes(LineReader.CHARSET).length
+                       >= _extractFrom) {
+                extractLine(m, line, offset);
+                _output.endLine();
+            } else {
+                convertLine(m, line, null, null);
+            }
+        }
     }
 
     /**
-     * Return a rotor, reading its description from _config.
+     * Write to _output the conversion by M of the message characters of
+     * LINE, which starts at byte OFFSET of the input, that lie in bytes
+     * _extractFrom to _extractTo - 1, advancing M past all the message
+     * characters of LINE.  Offsets count bytes as LineReader decodes
+     * them.
      */
-    private Rotor readRotor() {
-        try {
-            String name = _config.next();
-            if (name.contains("(") || name.contains(")")) {
-                throw new EnigmaException("invalid rotor name");
-            }
-            String saved = _config.next();
-            String notches = "";
-            String cycles = "";
-            if (saved.charAt(0) == 'M') {
-                for (int i = 1; i < saved.length(); i++) {
-                    if (!_alphabet.contains(saved.charAt(i))) {
-                        throw new EnigmaException("notch not in alphabet");
-                    }
-                    notches += saved.charAt(i);
-                }
-                if (notches.length() == 0) {
-                    throw new EnigmaException("no notches for moving rotor");
+    private void extractLine(EncryptionEngine m, String line, long offset) {
+        Alphabet alpha = m.alphabet();
+        int[] msg = new int[line.length()];
+        int n = 0, first = -1, last = -1;
+        for (int i = 0, next; i < line.length(); i = next) {
+            next = line.offsetByCodePoints(i, 1);
+            for (int j = i; j < next; j++) {
+                char c = line.charAt(j);
+                if (Character.isWhitespace(c) || c == '(' || c == ')') {
+                    continue;
                 }
-                while (_config.hasNext("\\(.*")) {
-                    cycles = cycles + _config.next();
-                }
-                Permutation permutation = new Permutation(cycles, _alphabet);
-                rotor = new MovingRotor(name, permutation, notches);
-            } else if (saved.charAt(0) == 'N') {
-                while (_config.hasNext("\\(.*")) {
-                    cycles = cycles + _config.next();
-                }
-                char[] cyclesArray = cycles.toCharArray();
-                int len = cyclesArray.length;
-                if (len > 0 && cyclesArray[len - 1] != ')') {
-                    throw new EnigmaException("wrong format for cycles");
-                }
-                Permutation permutation = new Permutation(cycles, _alphabet);
-                rotor = new FixedRotor(name, permutation);
-            } else if (saved.charAt(0) == 'R') {
-                while (_config.hasNext("\\(.*")) {
-                    cycles = cycles + _config.next();
+                if (offset >= _extractFrom && offset < _extractTo) {
+                    if (first < 0) {
+                        first = n;
+                    }
+                    last = n;
                 }
-                Permutation permutation = new Permutation(cycles, _alphabet);
-                rotor = new Reflector(name, permutation);
-            } else {
-                throw new EnigmaException("Rotor type is not valid");
+                msg[n] = alpha.toInt(Character.toUpperCase(c));
+                n += 1;
             }
-            char[] cyclesArray = cycles.toCharArray();
-            int len = cyclesArray.length;
-            if (len > 0 && cyclesArray[len - 1] != ')') {
-                throw new EnigmaException("wrong format for cycles");
+            if (next == i + 1 && line.charAt(i) < ASCII_LIMIT) {
+                offset += 1;
+            } else {
+                offset += line.substring(i, next)
+                    .getBytes(LineReader.CHARSET).length;
             }
-        } catch (NoSuchElementException excp) {
-            throw error("bad rotor description");
         }
-        return rotor;
+        if (first < 0) {
+            m.skip(n);
+            return;
+        }
+        int count = last - first + 1;
+        m.skip(first);
+        System.arraycopy(msg, first, msg, 0, count);
+        m.convert(msg, count);
+        for (int i = 0; i < count; i++) {
+            _output.write(alpha.toChar(msg[i]));
+        }
+        m.skip(n - first - count);
     }
 
+    /**
+     * Return true iff LINE begins a new message, that is, its first
+     * token is "*".
+     */
+    private static boolean isSettings(String line) {
+        int i = 0;
+        while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+            i += 1;
+        }
+        return i < line.length() && line.charAt(i) == '*'
+            && (i + 1 == line.length()
+                || Character.isWhitespace(line.charAt(i + 1)));
+    }
 
     /**
-     * Set M according to the specification given on SETTINGS,
-     * which must have the format specified in the assignment.
+     * Write to OUT (unless it is null) the conversion by M of the
+     * message characters in LINE, with whitespace removed, and count
+     * them in STATS (unless it is null).  Return the number of
+     * characters converted.
      */
-    private void setUp(Machine M, String settings) {
-        String[] arr = settings.split(" ");
-        if (!arr[0].equals("*")) {
-            throw new EnigmaException("No '*' as first character");
+    private static long convertLine(EncryptionEngine m, String line,
+                                    GroupWriter out, CipherStats stats) {
+        Scanner linesc = new Scanner(line);
+        long count = 0;
+        while (linesc.hasNext()) {
+            String converted = m.convert(linesc.next());
+            if (out != null) {
+                out.write(converted);
+            }
+            if (stats != null) {
+                stats.add(converted);
+            }
+            count += converted.length();
         }
-        String[] arrNoStar = new String[arr.length - 1];
+        return count;
+    }
 
-        for (int i = 0; i < arr.length - 1; i++) {
-            arrNoStar[i] = arr[i + 1];
+    /**
+     * Durably save the state of M and of my input and output to
+     * _checkpoint.  When pipelined, the writer stage saves it once the
+     * output up to this point is on disk.
+     */
+    private void checkpoint(EncryptionEngine m) {
+        MachineState state =
+            new MachineState(_settingsLine, m.step(), _input.offset(),
+                             _output.offset());
+        if (_pipeline != null) {
+            _output.flush();
+            _pipeline.checkpoint(() -> state.save(_checkpoint));
+        } else {
+            _output.sync();
+            state.save(_checkpoint);
         }
+    }
 
-        String[] rotorNames = new String[_numRotors];
 
-        for (int i = 0; i < _numRotors; i++) {
-            rotorNames[i] = arrNoStar[i];
+    /**
+     * Return the Enigma machine configuration in the contents of
+     * configuration file _config.  The rotors are only checked and
+     * indexed here; each is compiled when it is first used.
+     */
+    private MachineConfig readConfig() {
+        String alphabet = nextConfigToken();
+        if (alphabet == null) {
+            throw error("configuration file truncated");
+        }
+        _alphabet = new Alphabet(alphabet);
+        if (_alphabet.contains('*')) {
+            throw new EnigmaException("invalid characters in alphabet");
+        } else if (_alphabet.contains('(') || _alphabet.contains(')')) {
+            throw new EnigmaException("invalid characters in alphabet");
         }
 
-        M.insertRotors(rotorNames);
-
-        String setting = arrNoStar[_numRotors];
+        int numRotors = nextConfigInt();
+        int numPawls = nextConfigInt();
+        RotorCatalogue rotors = new RotorCatalogue(_alphabet, _config);
+        String name;
+        while ((name = nextConfigToken()) != null) {
+            readRotor(name, rotors);
+        }
+        _config = null;
+        return new MachineConfig(_alphabet, numRotors, numPawls, rotors);
+    }
 
-        M.setRotors(setting);
+    /**
+     * Read the description of the rotor named NAME from _config, adding
+     * it to ROTORS.
+     */
+    private void readRotor(String name, RotorCatalogue rotors) {
+        if (name.contains("(") || name.contains(")")) {
+            throw new EnigmaException("invalid rotor name");
+        }
+        String saved = nextConfigToken();
+        if (saved == null) {
+            throw error("bad rotor description");
+        }
+        String notches = "";
+        int kind;
+        if (saved.charAt(0) == 'M') {
+            for (int i = 1; i < saved.length(); i++) {
+                if (!_alphabet.contains(saved.charAt(i))) {
+                    throw new EnigmaException("notch not in alphabet");
+                }
+                notches += saved.charAt(i);
+            }
+            if (notches.length() == 0) {
+                throw new EnigmaException("no notches for moving rotor");
+            }
+            kind = RotorCatalogue.MOVING;
+        } else if (saved.charAt(0) == 'N') {
+            kind = RotorCatalogue.FIXED;
+        } else if (saved.charAt(0) == 'R') {
+            kind = RotorCatalogue.REFLECTOR;
+        } else {
+            throw new EnigmaException("Rotor type is not valid");
+        }
+        int start = skipConfigSpace(), end = start;
+        while (_configPos < _config.length && _config[_configPos] == '(') {
+            nextConfigToken();
+            end = _configPos;
+            skipConfigSpace();
+        }
+        if (end > start && _config[end - 1] != ')') {
+            throw new EnigmaException("wrong format for cycles");
+        }
+        rotors.add(name, kind, notches, start, end);
+    }
 
-        String plugboard = "";
+    /**
+     * Return the next whitespace-delimited token of _config, or null if
+     * there are no more.
+     */
+    private String nextConfigToken() {
+        int start = skipConfigSpace();
+        while (_configPos < _config.length && !space(_config[_configPos])) {
+            _configPos += 1;
+        }
+        if (start == _configPos) {
+            return null;
+        }
+        return new String(_config, start, _configPos - start);
+    }
 
-        for (int i = _numRotors + 1; i < arrNoStar.length; i++) {
-            plugboard = plugboard + " " + arrNoStar[i];
+    /**
+     * Return the next token of _config as an integer.
+     */
+    private int nextConfigInt() {
+        String token = nextConfigToken();
+        try {
+            return Integer.parseInt(token);
+        } catch (NumberFormatException excp) {
+            throw error("configuration file truncated");
         }
-        Permutation plugPerm = new Permutation(plugboard, _alphabet);
+    }
 
-        M.setPlugboard(plugPerm);
+    /**
+     * Advance past any whitespace in _config, returning the new
+     * position.
+     */
+    private int skipConfigSpace() {
+        while (_configPos < _config.length && space(_config[_configPos])) {
+            _configPos += 1;
+        }
+        return _configPos;
+    }
 
+    /**
+     * Return true iff B is an ASCII whitespace character.
+     */
+    static boolean space(byte b) {
+        return b == ' ' || (b >= '\t' && b <= '\r');
     }
 
+
     /**
-     * Print MSG in groups of five (except that the last group may
-     * have fewer letters).
+     * Set M according to the specification given on SETTINGS,
+     * which must have the format specified in the assignment.
      */
-    private void printMessageLine(String msg) {
-        int i = 0;
-        int antman = 0;
-        String massage = "";
-        for (char c : msg.toCharArray()) {
-            if (i == 5) {
-                massage += " ";
-                i = 0;
-            }
-            if (c != '\n') {
-                massage += c;
-                i++;
-            } else {
-                _output.print(massage);
-                _output.println();
-                massage = "";
-                i = 0;
-                antman += 1;
-            }
+    private void setUp(EncryptionEngine M, String settings) {
+        String keyID = KeySheet.reference(settings);
+        if (keyID == null) {
+            M.setUp(settings);
+        } else if (_keySheet == null) {
+            throw error("no key sheet for %s", settings);
+        } else {
+            M.setUp(_keySheet.settings(keyID), settings);
+        }
+        _settingsLine = settings;
+        if (_stats != null) {
+            report(_stats.begin(settings));
         }
     }
 
-
     /**
      * Alphabet used in this machine.
      */
@@ -279,41 +822,155 @@ public final class Main {
     /**
      * Source of input messages.
      */
-    private Scanner _input;
+    private LineReader _input;
 
     /**
-     * Source of machine configuration.
+     * Contents of the machine configuration file.
      */
-    private Scanner _config;
+    private byte[] _config;
+
+    /**
+     * Position of the next unread byte of _config.
+     */
+    private int _configPos;
+
+    /**
+     * Configuration taken from a ConfigCache, or null if it is to be
+     * read from _config.
+     */
+    private MachineConfig _machineConfig;
 
     /**
      * File for encoded/decoded messages.
      */
-    private PrintStream _output;
+    private GroupWriter _output;
+
+    /**
+     * The settings line of the current message, or null.
+     */
+    private String _settingsLine;
+
+    /**
+     * Minimum number of input bytes between checkpoints, or 0 if
+     * checkpoints are not wanted.
+     */
+    private long _checkpointBytes;
+
+    /**
+     * True iff processing is to resume from a checkpoint.
+     */
+    private boolean _resume;
+
+    /**
+     * File in which to save checkpoints.
+     */
+    private File _checkpoint;
+
+    /**
+     * Name of the input file, or null for the standard input.
+     */
+    private String _inputName;
+
+    /**
+     * Name of the output file, or null for the standard output.
+     */
+    private String _outputName;
+
+    /**
+     * Number of characters between index entries, or 0 if no index is
+     * wanted.
+     */
+    private long _indexSpacing;
+
+    /**
+     * Writer of the index of _input, or null.
+     */
+    private PositionIndex.Writer _index;
+
+    /**
+     * Bounds of the byte range of _input to extract, or -1.
+     */
+    private long _extractFrom = -1, _extractTo = -1;
+
+    /**
+     * True iff message files are raw deflate streams.
+     */
+    private boolean _deflate;
+
+    /**
+     * Suffix of the names of gzip files.
+     */
+    private static final String GZIP_SUFFIX = ".gz";
+
+    /**
+     * Characters below this encode as themselves in one byte.
+     */
+    private static final int ASCII_LIMIT = 0x80;
+
+    /**
+     * Size of the buffers of compressed streams.
+     */
+    private static final int ZIP_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Number of chunks buffered between pipeline stages, or 0 if input
+     * is read and output written on the converting thread.
+     */
+    private int _pipelineChunks;
+
+    /**
+     * The pipeline carrying _input and _output, or null.
+     */
+    private Pipeline _pipeline;
+
+    /**
+     * Largest number of chunks allowed between pipeline stages.
+     */
+    private static final int MAX_PIPELINE_CHUNKS = 1024;
+
+    /**
+     * The checkpoint from which processing resumes, or null.
+     */
+    private MachineState _restored;
+
+    /**
+     * Name of the compiled key sheet, or null.
+     */
+    private String _keySheetName;
+
+    /**
+     * Key sheet resolving settings lines "* @ID", or null.
+     */
+    private KeySheet _keySheet;
 
     /**
-     * Stores the final message to be printed.
+     * True iff statistics of the converted text are wanted.
      */
-    private String message = "";
+    private boolean _wantStats;
 
     /**
-     * Number of rotors.
+     * Statistics of the converted text, or null.
      */
-    private int _numRotors;
+    private CipherStats _stats;
 
     /**
-     * Number of pawls.
+     * Destination of statistics reports, shared by every Main in the
+     * JVM so that the reports of concurrent jobs are written out whole
+     * lines at a time.
      */
-    private int _numPawls;
+    private static final OutputStream STATS_OUT =
+        new BufferedOutputStream(new FileOutputStream(FileDescriptor.err),
+                                 1 << 16);
 
     /**
-     * Collection of all rotors possible from config file.
+     * True iff I am a job of a BatchRunner, which reports the totals of
+     * the statistics of all its jobs.
      */
-    private Collection<Rotor> _allRotors;
+    private final boolean _batch;
 
     /**
-     * The individual rotor to be returned by readRotor.
+     * Name of the engine that converts messages.
      */
-    private Rotor rotor;
+    private String _engine = EncryptionEngine.NAMES.get(0);
 
 }
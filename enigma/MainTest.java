@@ -0,0 +1,148 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import static enigma.TestUtils.*;
+
+/** Tests of Main's handling of compressed message and configuration
+ *  files.
+ *  @author Neha Kompella
+ */
+public class MainTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** Return TEXT compressed with gzip, or as a raw deflate stream if
+     *  RAW. */
+    private static byte[] compress(String text, boolean raw)
+        throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = raw
+             ? new DeflaterOutputStream(bytes,
+                                        new Deflater(Deflater.BEST_SPEED,
+                                                     true))
+             : new GZIPOutputStream(bytes)) {
+            out.write(text.getBytes());
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Return the decompressed contents of FILE, which is in gzip format,
+     *  or a raw deflate stream if RAW. */
+    private static String decompress(File file, boolean raw)
+        throws IOException {
+        try (InputStream in = raw
+             ? new InflaterInputStream(new FileInputStream(file),
+                                       new Inflater(true))
+             : new GZIPInputStream(new FileInputStream(file))) {
+            return new String(in.readAllBytes());
+        }
+    }
+
+    /** Random input messages. */
+    private String input = randomMessages(new Random(37), 100, 20);
+
+    /** Configuration file. */
+    private File conf;
+
+    /** Output of converting INPUT with no compression. */
+    private String expected;
+
+    /** Set up CONF and EXPECTED, converting INPUT uncompressed. */
+    public MainTest() throws IOException {
+        conf = tempFile(".conf", NAVAL_CONFIG);
+        File in = tempFile(".inp", input);
+        File out = tempFile(".out", "");
+        runMain(conf.getPath(), in.getPath(), out.getPath());
+        expected = contents(out);
+    }
+
+    @Test
+    public void checkGzip() throws IOException {
+        File in = tempFile(".inp.gz", compress(input, false));
+        File out = tempFile(".out", "");
+        runMain(conf.getPath(), in.getPath(), out.getPath());
+        assertEquals(expected, contents(out));
+        File gzOut = tempFile(".out.gz", "");
+        runMain(conf.getPath(), in.getPath(), gzOut.getPath());
+        assertEquals(expected, decompress(gzOut, false));
+        runMain("--pipeline", conf.getPath(), in.getPath(),
+                gzOut.getPath());
+        assertEquals(expected, decompress(gzOut, false));
+    }
+
+    @Test
+    public void checkDeflate() throws IOException {
+        File in = tempFile(".inp", compress(input, true));
+        File out = tempFile(".out", "");
+        runMain("--deflate", conf.getPath(), in.getPath(), out.getPath());
+        assertEquals(expected, decompress(out, true));
+    }
+
+    @Test
+    public void checkGzipConfig() throws IOException {
+        File gzConf = tempFile(".conf.gz", compress(NAVAL_CONFIG, false));
+        File in = tempFile(".inp", input);
+        File out = tempFile(".out", "");
+        runMain(gzConf.getPath(), in.getPath(), out.getPath());
+        assertEquals(expected, contents(out));
+    }
+
+    @Test
+    public void checkCompressedOffsets() throws IOException {
+        File in = tempFile(".inp.gz", compress(input, false));
+        new File(in.getPath() + ".idx").deleteOnExit();
+        File out = tempFile(".out", "");
+        runMain("--index=40", conf.getPath(), in.getPath(), out.getPath());
+        assertEquals(expected, contents(out));
+        runMain("--extract=0:" + input.length(), conf.getPath(),
+                in.getPath(), out.getPath());
+        assertEquals(expected, contents(out));
+
+        int line = input.indexOf("\n*", input.length() / 2) + 1;
+        String[] done = input.substring(0, line - 1).split("\n", -1);
+        String nl = System.lineSeparator();
+        int outputOffset = 0;
+        for (String message : done) {
+            if (!message.startsWith("*")) {
+                outputOffset =
+                    expected.indexOf(nl, outputOffset) + nl.length();
+            }
+        }
+        File ckpt = new File(out.getPath() + ".ckpt");
+        ckpt.deleteOnExit();
+        new MachineState(null, 0, line, outputOffset).save(ckpt);
+        String kept = "#".repeat(outputOffset);
+        Files.write(out.toPath(), (kept + "PARTIAL LINE").getBytes());
+        runMain("--resume", conf.getPath(), in.getPath(), out.getPath());
+        assertEquals(kept + expected.substring(outputOffset), contents(out));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkNoCompressedCheckpoints() throws IOException {
+        runMain("--checkpoint=1", conf.getPath(),
+                tempFile(".inp", input).getPath(),
+                tempFile(".out.gz", "").getPath());
+    }
+
+}
@@ -15,6 +15,24 @@ class MovingRotor extends Rotor {
     MovingRotor(String name, Permutation perm, String notches) {
         super(name, perm);
         _notches = notches;
+        int size = size();
+        _atNotch = new boolean[size];
+        for (int i = 0; i < notches.length(); i++) {
+            if (alphabet().contains(notches.charAt(i))) {
+                _atNotch[alphabet().toInt(notches.charAt(i))] = true;
+            }
+        }
+        _toNotch = new int[size];
+        int next = Integer.MAX_VALUE;
+        for (int k = 2 * size - 1; k >= 0; k--) {
+            int p = k % size;
+            if (_atNotch[p]) {
+                next = k;
+            }
+            if (k < size) {
+                _toNotch[p] = next == Integer.MAX_VALUE ? next : next - k;
+            }
+        }
         set(0);
     }
 
@@ -30,21 +48,48 @@ class MovingRotor extends Rotor {
 
     @Override
     void advance() {
-        set(setting() + 1);
+        int next = setting() + 1;
+        set(next == size() ? 0 : next);
     }
 
+    /** My notches are on my alphabet ring, so they depend on my
+     *  setting but not my ring setting. */
     @Override
     boolean atNotch() {
-        for (int i = 0; i < _notches.length(); i++) {
-            if (_notches.charAt(i) == alphabet().toChar(setting())) {
-                return true;
-            }
-        }
-        return false;
+        return _atNotch[setting()];
+    }
+
+    /** Return the characters naming my notch positions, as given. */
+    String notches() {
+        return _notches;
+    }
+
+    /** Return true iff POSN is one of my notch positions. */
+    boolean notchAt(int posn) {
+        return _atNotch[posn];
+    }
+
+    /** Return the number of advances needed from POSN before I am at a
+     *  notch (0 if POSN is itself a notch), or Integer.MAX_VALUE if I
+     *  have no notches. */
+    int distanceToNotch(int posn) {
+        return _toNotch[posn];
+    }
+
+    /** Return the number of keystrokes that will advance me before I
+     *  reach a notch from my current setting. */
+    int distanceToNotch() {
+        return _toNotch[setting()];
     }
 
     /**
      * Notches corresponding to given rotor.
      */
     private String _notches;
+
+    /** _atNotch[p] is true iff position P is a notch. */
+    private final boolean[] _atNotch;
+
+    /** _toNotch[p] is the number of advances from P to the next notch. */
+    private final int[] _toNotch;
 }
@@ -73,4 +73,21 @@ public class MovingRotorTest {
         checkRotor("Rotor I set", UPPER_STRING, NAVALZ_MAP.get("I"));
     }
 
+    @Test
+    public void checkNotchDistance() {
+        setRotor("VI", NAVALA, "ZM");
+        MovingRotor vi = (MovingRotor) rotor;
+        assertFalse(vi.atNotch());
+        assertEquals(12, vi.distanceToNotch());
+        vi.set(12);
+        assertTrue(vi.atNotch());
+        assertEquals(0, vi.distanceToNotch());
+        vi.advance();
+        assertEquals(12, vi.distanceToNotch());
+        assertEquals(Integer.MAX_VALUE,
+                     new MovingRotor("I", new Permutation(NAVALA.get("I"),
+                                                          UPPER), "")
+                     .distanceToNotch());
+    }
+
 }
@@ -0,0 +1,143 @@
+package enigma;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/** Compares the rate at which a short text is converted under many
+ *  random keys by a MultiKeyEngine with that of one Machine per key.
+ *  Usage:
+ *      java enigma.MultiKeyBenchmark CONFIG [KEYS [LENGTH [ROUNDS]]]
+ *  Each round sets every key afresh and converts a random text of
+ *  LENGTH characters under all KEYS keys.  The two methods' results are
+ *  checked to be the same.
+ *  @author Neha Kompella
+ */
+class MultiKeyBenchmark {
+
+    /** Run the benchmark as specified by ARGS (see above). */
+    public static void main(String... args) {
+        MachineConfig config = Main.loadConfig(args[0]);
+        int keys = args.length > 1 ? Integer.parseInt(args[1])
+            : DEFAULT_KEYS;
+        int length = args.length > 2 ? Integer.parseInt(args[2])
+            : DEFAULT_LENGTH;
+        int rounds = args.length > 3 ? Integer.parseInt(args[3])
+            : DEFAULT_ROUNDS;
+        Random random = new Random(0);
+        int size = config.alphabet().size();
+        int slots = config.numRotors();
+        Machine[] machines = new Machine[keys];
+        int[][] rotors = new int[keys][slots];
+        int[][] positions = new int[keys][slots - 1];
+        int[][] rings = new int[keys][slots - 1];
+        Permutation[] plugboards = new Permutation[keys];
+        for (int k = 0; k < keys; k++) {
+            machines[k] = config.newMachine();
+            do {
+                for (int i = 0; i < slots; i++) {
+                    rotors[k][i] = random.nextInt(config.numAvailable());
+                }
+            } while (!valid(machines[k], rotors[k]));
+            for (int i = 0; i < slots - 1; i++) {
+                positions[k][i] = random.nextInt(size);
+                rings[k][i] = random.nextInt(size);
+            }
+            plugboards[k] = plugboard(size, config.alphabet(), random);
+        }
+        MultiKeyEngine engine = new MultiKeyEngine(config, keys);
+        int[] text = new int[length];
+        int[] msg = new int[length];
+        int[] expected = new int[keys * length];
+        int[] result = new int[keys * length];
+
+        System.out.printf("%d keys, %d characters, %d rounds%n", keys,
+                          length, rounds);
+        for (int pass = 0; pass < 2; pass++) {
+            long machineTime = 0, engineTime = 0;
+            for (int r = 0; r < rounds; r++) {
+                for (int i = 0; i < length; i++) {
+                    text[i] = random.nextInt(size);
+                }
+                long start = System.nanoTime();
+                for (int k = 0; k < keys; k++) {
+                    Machine m = machines[k];
+                    m.insertRotors(rotors[k]);
+                    m.setRings(rings[k]);
+                    m.setRotors(positions[k]);
+                    m.setPlugboard(plugboards[k]);
+                    System.arraycopy(text, 0, msg, 0, length);
+                    m.convert(msg, length);
+                    System.arraycopy(msg, 0, expected, k * length, length);
+                }
+                machineTime += System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int k = 0; k < keys; k++) {
+                    engine.set(k, rotors[k], positions[k], rings[k],
+                               plugboards[k]);
+                }
+                engine.convert(text, length, result);
+                engineTime += System.nanoTime() - start;
+                if (!Arrays.equals(expected, result)) {
+                    throw new AssertionError("results differ");
+                }
+            }
+            if (pass == 1) {
+                double work = (double) keys * length * rounds;
+                System.out.printf("machines: %8.2f ns/key-char"
+                                  + " (%.1f M key-chars/s)%n",
+                                  machineTime / work,
+                                  work * 1e3 / machineTime);
+                System.out.printf("engine:   %8.2f ns/key-char"
+                                  + " (%.1f M key-chars/s)%n",
+                                  engineTime / work,
+                                  work * 1e3 / engineTime);
+                System.out.printf("speed-up: %.1fx%n",
+                                  (double) machineTime / engineTime);
+            }
+        }
+    }
+
+    /** Return true iff ROTORS is a valid choice of rotors for M. */
+    private static boolean valid(Machine m, int[] rotors) {
+        try {
+            m.checkRotors(rotors);
+            return true;
+        } catch (EnigmaException excp) {
+            return false;
+        }
+    }
+
+    /** Return a random plugboard of ten pairs over the first SIZE
+     *  characters of ALPHA, using RANDOM. */
+    private static Permutation plugboard(int size, Alphabet alpha,
+                                         Random random) {
+        int[] table = new int[size];
+        for (int i = 0; i < size; i++) {
+            table[i] = i;
+        }
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = table[i];
+            table[i] = table[j];
+            table[j] = t;
+        }
+        int[] result = new int[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = i;
+        }
+        for (int i = 0; i + 1 < Math.min(size, 2 * PAIRS); i += 2) {
+            result[table[i]] = table[i + 1];
+            result[table[i + 1]] = table[i];
+        }
+        return new Permutation(result, alpha);
+    }
+
+    /** Default number of keys. */
+    private static final int DEFAULT_KEYS = 1024;
+    /** Default length of the text. */
+    private static final int DEFAULT_LENGTH = 64;
+    /** Default number of rounds per pass. */
+    private static final int DEFAULT_ROUNDS = 2000;
+    /** Pairs of letters swapped by each plugboard. */
+    private static final int PAIRS = 10;
+}
@@ -0,0 +1,370 @@
+package enigma;
+
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** Converts one text under many keys at once.  The states of LANES
+ *  machines of one configuration are held in parallel primitive arrays,
+ *  one entry per lane for each slot, and all lanes are advanced and
+ *  translated for each character in turn.  The shifted tables of each
+ *  rotor are made when a lane first uses it and held once, in bytes,
+ *  for all lanes; a lane's slot refers to its rotor's tables by the
+ *  offset of the row for its current wiring offset, and each lane has
+ *  its own plugboard.
+ *
+ *  Most keystrokes advance only the rightmost rotor, so a lane's state
+ *  is rewritten only at the keystrokes that may move another slot; in
+ *  between, the row of its rightmost slot is computed from the index of
+ *  the character, the rotor tables holding each row twice so that it
+ *  need not wrap around.  The slots other than the rightmost, with the
+ *  reflector, are composed into one substitution per lane, renewed only
+ *  when one of them moves (from a composition of all but the two
+ *  rightmost, which is renewed more rarely still), so that converting a
+ *  character takes five table lookups.  Requires an alphabet of at most
+ *  256 characters.
+ *  @author Neha Kompella
+ */
+final class MultiKeyEngine {
+
+    /** An engine of LANES machines with configuration CONFIG, all
+     *  initially unset. */
+    MultiKeyEngine(MachineConfig config, int lanes) {
+        int n = config.alphabet().size();
+        if (n > KeystreamCache.MAX_ALPHABET) {
+            throw error("alphabet too large for multi-key conversion");
+        }
+        if (lanes <= 0) {
+            throw error("no lanes");
+        }
+        _size = n;
+        _alphabet = config.alphabet();
+        _lanes = lanes;
+        _slots = config.numRotors();
+        _template = config.newMachine();
+        _fix = _slots - _template.numPawls();
+        _config = config;
+        _tableOf = new int[config.numAvailable()];
+        Arrays.fill(_tableOf, -1);
+        _maxTables = (int) Math.min(config.numAvailable(),
+                                    Integer.MAX_VALUE / (2L * n * n));
+        _forward = _backward = new byte[0];
+        _notches = new boolean[0];
+        _toNotch = new int[0];
+        _positions = new int[_slots * lanes];
+        _rows = new int[_slots * lanes];
+        _bases = new int[_slots * lanes];
+        _notchRows = new int[_slots * lanes];
+        _runs = new int[lanes];
+        _inner = new byte[lanes * n];
+        _cores = new byte[lanes * n];
+        _plugboards = new byte[lanes * n];
+        _next = new int[lanes];
+        _bias = new int[lanes];
+        _synced = new int[lanes];
+        _set = new boolean[lanes];
+    }
+
+    /** Return the number of my lanes. */
+    int lanes() {
+        return _lanes;
+    }
+
+    /** Set lane LANE as specified by the settings line SETTINGS. */
+    void set(int lane, String settings) {
+        Settings parsed = new Settings(settings, _template, _alphabet);
+        set(lane, parsed.rotors(), parsed.positions(), parsed.rings(),
+            parsed.plugboard());
+    }
+
+    /** Set lane LANE to the rotors numbered ROTORS (reflector first),
+     *  which must have been validated by Machine.checkRotors, the rotors
+     *  other than the reflector at POSITIONS with ring settings RINGS,
+     *  and plugboard PLUGBOARD. */
+    void set(int lane, int[] rotors, int[] positions, int[] rings,
+             Permutation plugboard) {
+        int n = _size;
+        for (int i = 0; i < _slots; i++) {
+            tabulate(rotors[i]);
+        }
+        for (int i = 0; i < _slots; i++) {
+            int k = i * _lanes + lane;
+            int t = _tableOf[rotors[i]];
+            int posn = i == 0 ? 0 : positions[i - 1];
+            int ring = i == 0 ? 0 : rings[i - 1];
+            int wiring = posn - ring;
+            if (wiring < 0) {
+                wiring += n;
+            }
+            _positions[k] = posn;
+            _bases[k] = t * 2 * n * n;
+            _rows[k] = _bases[k] + wiring * n;
+            _notchRows[k] = t * n;
+        }
+        int[] table = plugboard.table();
+        for (int c = 0; c < n; c++) {
+            _plugboards[lane * n + c] = (byte) table[c];
+        }
+        _runs[lane] = simpleRun(lane);
+        compose(lane, true);
+        _set[lane] = true;
+    }
+
+    /** Return the number of the tables of available rotor number R,
+     *  filling them in if R has not been used before. */
+    private int tabulate(int r) {
+        int t = _tableOf[r];
+        if (t >= 0) {
+            return t;
+        }
+        int n = _size;
+        t = _numTables;
+        if (t == _maxTables) {
+            throw error("too many rotors for multi-key conversion");
+        }
+        if ((long) (t + 1) * 2 * n * n > _forward.length) {
+            int tables = (int) Math.min(Math.max(2L * t, 4), _maxTables);
+            _forward = Arrays.copyOf(_forward, tables * 2 * n * n);
+            _backward = Arrays.copyOf(_backward, tables * 2 * n * n);
+            _notches = Arrays.copyOf(_notches, tables * n);
+            _toNotch = Arrays.copyOf(_toNotch, tables * n);
+        }
+        Rotor rotor = _config.rotor(r);
+        RotorTables tables = rotor.tables();
+        for (int s = 0, k = t * 2 * n * n; s < 2 * n; s++) {
+            for (int p = 0; p < n; p++, k++) {
+                _forward[k] = (byte) tables.forward(s % n, p);
+                _backward[k] = (byte) tables.backward(s % n, p);
+            }
+        }
+        for (int p = 0; p < n; p++) {
+            if (rotor instanceof MovingRotor) {
+                MovingRotor moving = (MovingRotor) rotor;
+                _notches[t * n + p] = moving.notchAt(p);
+                _toNotch[t * n + p] = moving.distanceToNotch(p);
+            } else {
+                _toNotch[t * n + p] = Integer.MAX_VALUE;
+            }
+        }
+        _tableOf[r] = t;
+        _numTables = t + 1;
+        return t;
+    }
+
+    /** Return the current positions of the rotors of lane LANE, other
+     *  than the reflector. */
+    int[] positions(int lane) {
+        int[] result = new int[_slots - 1];
+        for (int i = 1; i < _slots; i++) {
+            result[i - 1] = _positions[i * _lanes + lane];
+        }
+        return result;
+    }
+
+    /** Convert the N indices in MSG under the keys of all lanes,
+     *  advancing each lane's rotors accordingly, leaving the result of
+     *  lane L in OUT[L * N .. L * N + N - 1].  All lanes must have been
+     *  set. */
+    void convert(int[] msg, int n, int[] out) {
+        int size = _size, lanes = _lanes, right = (_slots - 1) * lanes;
+        for (int lane = 0; lane < lanes; lane++) {
+            if (!_set[lane]) {
+                throw error("lane %d not set", lane);
+            }
+            _next[lane] = _runs[lane];
+            _bias[lane] = _rows[right + lane] + size;
+            _synced[lane] = 0;
+        }
+        byte[] forward = _forward, backward = _backward;
+        byte[] inner = _inner, plugboards = _plugboards;
+        int[] next = _next, bias = _bias;
+        for (int i = 0; i < n; i++) {
+            int c0 = msg[i];
+            int offset = i * size;
+            for (int lane = 0, plug = 0; lane < lanes;
+                 lane++, plug += size) {
+                int row;
+                if (i == next[lane]) {
+                    row = step(lane, i);
+                } else {
+                    row = bias[lane] + offset;
+                }
+                int c = plugboards[plug + c0] & 0xff;
+                c = forward[row + c] & 0xff;
+                c = inner[plug + c] & 0xff;
+                c = backward[row + c] & 0xff;
+                out[lane * n + i] = plugboards[plug + c] & 0xff;
+            }
+        }
+        for (int lane = 0; lane < lanes; lane++) {
+            sync(lane, n);
+            _runs[lane] = _next[lane] - n;
+        }
+    }
+
+    /** Perform keystroke I of the current conversion on lane LANE,
+     *  which may advance slots other than the rightmost, and return the
+     *  row of its rightmost slot for the keystroke. */
+    private int step(int lane, int i) {
+        int lanes = _lanes, last = _slots - 1;
+        sync(lane, i);
+        boolean rightAt = false, moved = false, core = false;
+        for (int s = last, k = last * lanes + lane; s >= _fix;
+             s--, k -= lanes) {
+            boolean at = s > _fix && _notches[_notchRows[k] + _positions[k]];
+            if (s == last || at || rightAt) {
+                advance(k);
+                moved |= s < last;
+                core |= s < last - 1;
+            }
+            rightAt = at;
+        }
+        if (moved) {
+            compose(lane, core);
+        }
+        int row = _rows[last * lanes + lane];
+        _next[lane] = i + 1 + simpleRun(lane);
+        _bias[lane] = row - i * _size;
+        _synced[lane] = i + 1;
+        return row;
+    }
+
+    /** Bring the position and row of the rightmost slot of lane LANE up
+     *  to date with the keystrokes before keystroke I of the current
+     *  conversion. */
+    private void sync(int lane, int i) {
+        int n = _size, k = (_slots - 1) * _lanes + lane;
+        int d = i - _synced[lane];
+        int p = _positions[k] + d;
+        _positions[k] = p >= n ? p - n : p;
+        int row = _rows[k] + d * n;
+        _rows[k] = row >= _bases[k] + n * n ? row - n * n : row;
+        _synced[lane] = i;
+    }
+
+    /** Return the number of upcoming keystrokes of lane LANE that will
+     *  advance only its rightmost slot, up to one less than the alphabet
+     *  size, so that its row stays within the doubled tables. */
+    private int simpleRun(int lane) {
+        int last = _slots - 1, k = last * _lanes + lane;
+        if (last == _fix) {
+            return _size - 1;
+        }
+        for (int s = _fix + 1, j = s * _lanes + lane; s < last;
+             s++, j += _lanes) {
+            if (_notches[_notchRows[j] + _positions[j]]) {
+                return 0;
+            }
+        }
+        return Math.min(_toNotch[_notchRows[k] + _positions[k]], _size - 1);
+    }
+
+    /** Advance the slot and lane whose entries are at K in my arrays
+     *  by one position. */
+    private void advance(int k) {
+        int p = _positions[k] + 1;
+        _positions[k] = p == _size ? 0 : p;
+        int row = _rows[k] + _size;
+        _rows[k] = row == _bases[k] + _size * _size ? _bases[k] : row;
+    }
+
+    /** Recompute the inner substitution of lane LANE from the current
+     *  positions of its slots, first recomputing its core substitution
+     *  if CORE. */
+    private void compose(int lane, boolean core) {
+        int n = _size, lanes = _lanes, last = _slots - 1;
+        int start = lane * n;
+        byte[] inner = _inner;
+        int row = _rows[(last - 1) * lanes + lane];
+        if (last == 1) {
+            System.arraycopy(_forward, row, inner, start, n);
+            return;
+        }
+        byte[] cores = _cores;
+        if (core) {
+            System.arraycopy(_forward, _rows[(last - 2) * lanes + lane],
+                             cores, start, n);
+            for (int s = last - 3; s >= 0; s--) {
+                permute(cores, start, _forward, _rows[s * lanes + lane]);
+            }
+            for (int s = 1; s < last - 1; s++) {
+                permute(cores, start, _backward, _rows[s * lanes + lane]);
+            }
+        }
+        for (int c = 0; c < n; c++) {
+            int x = _forward[row + c] & 0xff;
+            x = cores[start + x] & 0xff;
+            inner[start + c] = _backward[row + x];
+        }
+    }
+
+    /** Replace each of the size entries C of A starting at START by
+     *  TABLE[ROW + C]. */
+    private void permute(byte[] a, int start, byte[] table, int row) {
+        for (int c = start, end = start + _size; c < end; c++) {
+            a[c] = table[row + (a[c] & 0xff)];
+        }
+    }
+
+    /** Alphabet size. */
+    private final int _size;
+    /** Alphabet of my machines. */
+    private final Alphabet _alphabet;
+    /** Number of lanes. */
+    private final int _lanes;
+    /** Number of slots. */
+    private final int _slots;
+    /** Index of the leftmost moving slot. */
+    private final int _fix;
+    /** Machine used to validate settings lines. */
+    private final Machine _template;
+    /** The configuration, from which rotors are tabulated. */
+    private final MachineConfig _config;
+    /** For each available rotor, the number of its tables, or -1 if it
+     *  has not been tabulated. */
+    private final int[] _tableOf;
+    /** Number of rotors tabulated. */
+    private int _numTables;
+    /** Largest number of rotors whose tables fit in an array. */
+    private final int _maxTables;
+    /** Forward and backward shifted tables of each tabulated rotor, in
+     *  order: entry T * 2 * size * size + S * size + P is the conversion
+     *  of P by the rotor with tables T at wiring offset S modulo size,
+     *  where 0 <= S < 2 * size.  Grown as rotors are first used. */
+    private byte[] _forward, _backward;
+    /** Entry T * size + P is true iff the rotor with tables T has a
+     *  notch at P. */
+    private boolean[] _notches;
+    /** Entry T * size + P is the number of advances of the rotor with
+     *  tables T from P to a notch, or Integer.MAX_VALUE if it has
+     *  none. */
+    private int[] _toNotch;
+    /** Entry I * lanes + L is, for slot I of lane L, its position, the
+     *  start in _forward and _backward of its row for its position and
+     *  ring setting, the start of its rotor's tables, and the start of
+     *  its rotor's entries in _notches.  During a conversion, the
+     *  position and row of a rightmost slot are kept up to date only by
+     *  sync. */
+    private final int[] _positions, _rows, _bases, _notchRows;
+    /** Number of upcoming keystrokes of each lane that will advance
+     *  only its rightmost slot. */
+    private final int[] _runs;
+    /** Entry L * size + C is the conversion of C by all slots of lane L
+     *  but the rightmost, through the reflector and back: a permutation
+     *  that changes only when one of those slots moves. */
+    private final byte[] _inner;
+    /** Entry L * size + C is the conversion of C by the slots of lane
+     *  L left of the two rightmost, through the reflector and back, from
+     *  which its inner substitution is composed. */
+    private final byte[] _cores;
+    /** Entry L * size + C is the plugboard of lane L applied to C. */
+    private final byte[] _plugboards;
+    /** For each lane during a conversion: the index of its next
+     *  keystroke that may move a slot other than the rightmost; the row
+     *  of its rightmost slot at keystroke I, less I * size, until then;
+     *  and the number of keystrokes counted in the position and row of
+     *  its rightmost slot. */
+    private final int[] _next, _bias, _synced;
+    /** True for each lane that has been set. */
+    private final boolean[] _set;
+}
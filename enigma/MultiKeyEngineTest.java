@@ -0,0 +1,102 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** Tests of conversion under many keys at once.
+ *  @author Neha Kompella
+ */
+public class MultiKeyEngineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** Return the conversion of the N indices in MSG by a machine with
+     *  configuration CONFIG set up with the settings line SETTINGS. */
+    private static int[] convert(MachineConfig config, String settings,
+                                 int[] msg, int n) {
+        Machine m = config.newMachine();
+        new Settings(settings, m, config.alphabet()).apply(m);
+        int[] result = Arrays.copyOf(msg, n);
+        m.convert(result, n);
+        return result;
+    }
+
+    @Test
+    public void checkMultiKey() {
+        MachineConfig config = Main.parseConfig(NAVAL_CONFIG);
+        String[] settings = {
+            "* B BETA III IV I AXLE (HQ) (EX)",
+            "* C GAMMA VI VII VIII AZMY",
+            "* B BETA I II III AADU BCDE (AQ) (EP)",
+        };
+        MultiKeyEngine engine = new MultiKeyEngine(config, settings.length);
+        for (int k = 0; k < settings.length; k++) {
+            engine.set(k, settings[k]);
+        }
+        String text = "THEQUICKBROWNFOXJUMPSOVERTHELAZYDOG".repeat(20);
+        int n = text.length();
+        int[] msg = new int[n];
+        for (int i = 0; i < n; i++) {
+            msg[i] = config.alphabet().toInt(text.charAt(i));
+        }
+        int[] out = new int[settings.length * n];
+        engine.convert(msg, n, out);
+        for (int k = 0; k < settings.length; k++) {
+            int[] expected = convert(config, settings[k], msg, n);
+            for (int i = 0; i < n; i++) {
+                assertEquals(expected[i], out[k * n + i]);
+            }
+        }
+    }
+
+    @Test
+    public void checkRandomKeys() {
+        MachineConfig config = Main.parseConfig(NAVAL_CONFIG);
+        Random random = new Random(42);
+        int lanes = 7, n = 3000;
+        MultiKeyEngine engine = new MultiKeyEngine(config, lanes);
+        String[] settings = new String[lanes];
+        int[] msg = new int[n];
+        int[] out = new int[lanes * n];
+        for (int round = 0; round < 5; round++) {
+            for (int k = 0; k < lanes; k++) {
+                String text = randomMessages(random, 1, 1);
+                settings[k] = text.substring(0, text.indexOf('\n'));
+                engine.set(k, settings[k]);
+            }
+            for (int i = 0; i < n; i++) {
+                msg[i] = random.nextInt(26);
+            }
+            engine.convert(msg, n, out);
+            for (int k = 0; k < lanes; k++) {
+                int[] expected = convert(config, settings[k], msg, n);
+                for (int i = 0; i < n; i++) {
+                    assertEquals(expected[i], out[k * n + i]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void checkLazyTables() {
+        MachineConfig config = Main.parseConfig(NAVAL_CONFIG);
+        MultiKeyEngine engine = new MultiKeyEngine(config, 2);
+        assertEquals(0, config.catalogue().numCompiled());
+        engine.set(0, "* B BETA III IV I AXLE");
+        assertEquals(5, config.catalogue().numCompiled());
+        engine.set(1, "* B BETA III IV II AXLE");
+        assertEquals(6, config.catalogue().numCompiled());
+        new ComposedEngine(config).setUp("* C GAMMA III IV I AXLE");
+        assertEquals(8, config.catalogue().numCompiled());
+    }
+
+}
@@ -0,0 +1,375 @@
+package enigma;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static enigma.EnigmaException.*;
+
+/** Scores pairs of ciphertexts for repeated characters when one is set
+ *  against the other at various offsets, as in Banburismus: two messages
+ *  enciphered from nearby positions of the same key repeat characters
+ *  at the offset between those positions about twice as often as they
+ *  do at random.  Usage:
+ *      java enigma.OverlapScorer [--threads=N] [--top=K]
+ *                                [--max-offset=D] [--min-overlap=L]
+ *                                CONFIG [MESSAGES]
+ *  CONFIG supplies the alphabet.  Each line of MESSAGES (by default, the
+ *  standard input) is a message; characters outside the alphabet are
+ *  ignored, and lines with none inside it are skipped.  Messages are
+ *  numbered from 0 in order.  Prints the K (by default 100) best pairs
+ *  and offsets, most repeats first, one per line as
+ *      FIRST SECOND OFFSET REPEATS OVERLAP
+ *  where OFFSET (at most D in magnitude, by default one less than the
+ *  alphabet size) is the position in message FIRST that faces the start
+ *  of message SECOND, and OVERLAP, at least L (by default 20), is the
+ *  number of characters facing each other.
+ *
+ *  Each message is packed into a bitmap for each character of the
+ *  alphabet, and the repeats at an offset are counted 64 positions at a
+ *  time as the bit counts of the ANDs of the bitmaps of the two
+ *  messages, one shifted by the offset.  The pairs are divided into
+ *  tiles of nearby messages, which threads take in turn, each keeping
+ *  its own best pairs.
+ *  @author Neha Kompella
+ */
+public final class OverlapScorer {
+
+    /** Score messages as specified by ARGS (see above). */
+    public static void main(String... args) {
+        try {
+            new OverlapScorer(args).run();
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** A scorer as specified by ARGS. */
+    OverlapScorer(String[] args) {
+        int k;
+        _threads = Runtime.getRuntime().availableProcessors();
+        _top = DEFAULT_TOP;
+        _maxOffset = -1;
+        _minOverlap = DEFAULT_MIN_OVERLAP;
+        for (k = 0; k < args.length && args[k].startsWith("--"); k++) {
+            String opt = args[k];
+            if (opt.startsWith("--threads=")) {
+                _threads = number(opt, 1);
+            } else if (opt.startsWith("--top=")) {
+                _top = number(opt, 1);
+            } else if (opt.startsWith("--max-offset=")) {
+                _maxOffset = number(opt, 0);
+            } else if (opt.startsWith("--min-overlap=")) {
+                _minOverlap = number(opt, 1);
+            } else {
+                throw error("unknown option: %s", opt);
+            }
+        }
+        if (args.length - k < 1 || args.length - k > 2) {
+            throw error("expected a configuration and at most one"
+                        + " message file");
+        }
+        _alphabet = Main.loadConfig(args[k]).alphabet();
+        if (_alphabet.size() > MAX_ALPHABET) {
+            throw error("alphabet too large");
+        }
+        if (_maxOffset < 0) {
+            _maxOffset = _alphabet.size() - 1;
+        }
+        _index = new int[Character.MAX_VALUE + 1];
+        Arrays.fill(_index, -1);
+        for (int i = 0; i < _alphabet.size(); i++) {
+            _index[_alphabet.toChar(i)] = i;
+        }
+        _input = args.length - k == 2 ? args[k + 1] : null;
+    }
+
+    /** Return the value, at least LOW, of the numeric option OPT. */
+    private static int number(String opt, int low) {
+        int result;
+        try {
+            result = Integer.parseInt(opt.substring(opt.indexOf('=') + 1));
+        } catch (NumberFormatException excp) {
+            throw error("bad option: %s", opt);
+        }
+        if (result < low) {
+            throw error("bad option: %s", opt);
+        }
+        return result;
+    }
+
+    /** Read the messages and print the best pairs. */
+    void run() {
+        ArrayList<byte[]> texts = new ArrayList<>();
+        try (BufferedReader in = open()) {
+            byte[] text = new byte[0];
+            for (String line = in.readLine(); line != null;
+                 line = in.readLine()) {
+                if (text.length < line.length()) {
+                    text = new byte[line.length()];
+                }
+                int n = 0;
+                for (int i = 0; i < line.length(); i++) {
+                    int c = _index[line.charAt(i)];
+                    if (c >= 0) {
+                        text[n++] = (byte) c;
+                    }
+                }
+                if (n > 0) {
+                    texts.add(Arrays.copyOf(text, n));
+                }
+            }
+        } catch (IOException excp) {
+            throw error("could not read messages");
+        }
+        Hit[] best = score(texts.toArray(new byte[0][]), _alphabet.size(),
+                           _maxOffset, _minOverlap, _top, _threads);
+        PrintStream out =
+            new PrintStream(new BufferedOutputStream(System.out, 1 << 16),
+                            false);
+        for (Hit hit : best) {
+            out.println(hit);
+        }
+        out.flush();
+        long m = texts.size();
+        System.err.printf("%d pairs of %d messages scored%n",
+                          m * (m - 1) / 2, m);
+    }
+
+    /** Return a reader of the messages. */
+    private BufferedReader open() throws IOException {
+        InputStream in =
+            _input == null ? System.in : new FileInputStream(_input);
+        return new BufferedReader(
+            new InputStreamReader(in, Charset.defaultCharset()));
+    }
+
+    /** A pair of messages set against each other at an offset. */
+    static final class Hit {
+        /** The pair of messages FIRST < SECOND, with the start of SECOND
+         *  facing position OFFSET of FIRST, where REPEATS of the OVERLAP
+         *  characters facing each other are equal. */
+        Hit(int first, int second, int offset, int repeats, int overlap) {
+            _first = first;
+            _second = second;
+            _offset = offset;
+            _repeats = repeats;
+            _overlap = overlap;
+        }
+
+        /** Return the first message number. */
+        int first() {
+            return _first;
+        }
+
+        /** Return the second message number. */
+        int second() {
+            return _second;
+        }
+
+        /** Return the offset. */
+        int offset() {
+            return _offset;
+        }
+
+        /** Return the number of repeated characters. */
+        int repeats() {
+            return _repeats;
+        }
+
+        /** Return the number of characters facing each other. */
+        int overlap() {
+            return _overlap;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d %d %d %d %d", _first, _second,
+                                 _offset, _repeats, _overlap);
+        }
+
+        /** Message numbers. */
+        private final int _first, _second;
+        /** The offset. */
+        private final int _offset;
+        /** Repeats and characters facing each other. */
+        private final int _repeats, _overlap;
+    }
+
+    /** Orders hits from best to worst: most repeats first, then by
+     *  message numbers and offset. */
+    static final Comparator<Hit> BEST_FIRST =
+        Comparator.comparingInt(Hit::repeats).reversed()
+        .thenComparingInt(Hit::first).thenComparingInt(Hit::second)
+        .thenComparingInt(Hit::offset);
+
+    /** Return the TOP best pairs and offsets of TEXTS, whose characters
+     *  are indices into an alphabet of SIZE <= 256 characters, best
+     *  first, considering offsets of magnitude at most MAXOFFSET with
+     *  at least MINOVERLAP characters overlapping, and using THREADS
+     *  threads. */
+    static Hit[] score(byte[][] texts, int size, int maxOffset,
+                       int minOverlap, int top, int threads) {
+        long[][] bits = new long[texts.length][];
+        for (int i = 0; i < texts.length; i++) {
+            bits[i] = pack(texts[i], size);
+        }
+        int tiles = (texts.length + TILE - 1) / TILE;
+        AtomicLong next = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ArrayList<Hit> found = new ArrayList<>();
+        try {
+            ArrayList<Future<PriorityQueue<Hit>>> tasks = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                tasks.add(pool.submit(() -> {
+                    PriorityQueue<Hit> best =
+                        new PriorityQueue<>(BEST_FIRST.reversed());
+                    for (long tile = next.getAndIncrement();
+                         tile < (long) tiles * tiles;
+                         tile = next.getAndIncrement()) {
+                        int a = (int) (tile / tiles), b = (int) (tile % tiles);
+                        if (a <= b) {
+                            scoreTile(texts, bits, size, a * TILE, b * TILE,
+                                      maxOffset, minOverlap, top, best);
+                        }
+                    }
+                    return best;
+                }));
+            }
+            for (Future<PriorityQueue<Hit>> task : tasks) {
+                found.addAll(task.get());
+            }
+        } catch (ExecutionException | InterruptedException excp) {
+            throw error("scoring failed: %s", excp);
+        } finally {
+            pool.shutdownNow();
+        }
+        found.sort(BEST_FIRST);
+        return found.subList(0, Math.min(top, found.size()))
+            .toArray(new Hit[0]);
+    }
+
+    /** Add to BEST, which holds at most TOP hits, worst first, the pairs
+     *  of a message from TEXTS[FROM1 .. FROM1+TILE-1] with a later one
+     *  from TEXTS[FROM2 .. FROM2+TILE-1], whose bitmaps are in BITS,
+     *  at offsets of magnitude at most MAXOFFSET with at least
+     *  MINOVERLAP characters overlapping, that are among the TOP best.
+     *  SIZE is the alphabet size. */
+    private static void scoreTile(byte[][] texts, long[][] bits, int size,
+                                  int from1, int from2, int maxOffset,
+                                  int minOverlap, int top,
+                                  PriorityQueue<Hit> best) {
+        int to1 = Math.min(from1 + TILE, texts.length),
+            to2 = Math.min(from2 + TILE, texts.length);
+        for (int i = from1; i < to1; i++) {
+            int len1 = texts[i].length;
+            for (int j = Math.max(from2, i + 1); j < to2; j++) {
+                int len2 = texts[j].length;
+                for (int d = -maxOffset; d <= maxOffset; d++) {
+                    int overlap = Math.min(len1, len2 + d) - Math.max(0, d);
+                    if (overlap < minOverlap) {
+                        continue;
+                    }
+                    int r = d >= 0
+                        ? repeats(bits[i], len1, bits[j], len2, size, d)
+                        : repeats(bits[j], len2, bits[i], len1, size, -d);
+                    if (best.size() < top) {
+                        best.add(new Hit(i, j, d, r, overlap));
+                    } else if (r >= best.peek().repeats()) {
+                        Hit hit = new Hit(i, j, d, r, overlap);
+                        if (BEST_FIRST.compare(hit, best.peek()) < 0) {
+                            best.poll();
+                            best.add(hit);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /** Return the bitmaps of TEXT, of characters in an alphabet of
+     *  SIZE characters: bit P of words [C * S .. C * S + S - 1] is set
+     *  iff TEXT[P] is character C, where S is one more word than TEXT
+     *  needs, so that shifted reads may run one word past its end. */
+    static long[] pack(byte[] text, int size) {
+        int stride = stride(text.length);
+        long[] result = new long[size * stride];
+        for (int p = 0; p < text.length; p++) {
+            result[(text[p] & 0xff) * stride + (p >>> 6)] |= 1L << p;
+        }
+        return result;
+    }
+
+    /** Return the number of positions P such that character P + D of
+     *  the text of length LEN1 with bitmaps BITS1 is the same as
+     *  character P of the text of length LEN2 with bitmaps BITS2, both
+     *  from pack() with alphabet size SIZE, where D >= 0. */
+    static int repeats(long[] bits1, int len1, long[] bits2, int len2,
+                       int size, int d) {
+        int stride1 = stride(len1), stride2 = stride(len2);
+        int q = d >>> 6, s = d & (Long.SIZE - 1);
+        int words = Math.min(stride2 - 1, stride1 - 1 - q);
+        int count = 0;
+        for (int c = 0, k1 = q, k2 = 0; c < size;
+             c++, k1 += stride1, k2 += stride2) {
+            if (s == 0) {
+                for (int w = 0; w < words; w++) {
+                    count += Long.bitCount(bits1[k1 + w] & bits2[k2 + w]);
+                }
+            } else {
+                for (int w = 0; w < words; w++) {
+                    long shifted = (bits1[k1 + w] >>> s)
+                        | (bits1[k1 + w + 1] << (Long.SIZE - s));
+                    count += Long.bitCount(shifted & bits2[k2 + w]);
+                }
+            }
+        }
+        return count;
+    }
+
+    /** Return the words per character in the bitmaps of a text of
+     *  LENGTH characters. */
+    private static int stride(int length) {
+        return (length + Long.SIZE - 1) / Long.SIZE + 1;
+    }
+
+    /** Largest alphabet handled. */
+    private static final int MAX_ALPHABET = 256;
+    /** Number of messages on each side of a tile of pairs. */
+    private static final int TILE = 64;
+    /** Default number of pairs printed. */
+    private static final int DEFAULT_TOP = 100;
+    /** Default least overlap considered. */
+    private static final int DEFAULT_MIN_OVERLAP = 20;
+
+    /** Number of threads. */
+    private int _threads;
+    /** Number of pairs printed. */
+    private int _top;
+    /** Largest magnitude of offset considered. */
+    private int _maxOffset;
+    /** Least overlap considered. */
+    private int _minOverlap;
+    /** Alphabet of the messages. */
+    private final Alphabet _alphabet;
+    /** Index in _alphabet of each character, or -1. */
+    private final int[] _index;
+    /** Name of the message file, or null for the standard input. */
+    private final String _input;
+}
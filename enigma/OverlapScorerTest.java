@@ -0,0 +1,86 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/** Tests of the overlap scorer.
+ *  @author Neha Kompella
+ */
+public class OverlapScorerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Return all pairs and offsets of TEXTS of magnitude at most
+     *  MAXOFFSET overlapping by at least MINOVERLAP, best first, scored
+     *  one character at a time. */
+    private static ArrayList<String> slowly(byte[][] texts, int maxOffset,
+                                            int minOverlap) {
+        ArrayList<OverlapScorer.Hit> hits = new ArrayList<>();
+        for (int i = 0; i < texts.length; i++) {
+            for (int j = i + 1; j < texts.length; j++) {
+                for (int d = -maxOffset; d <= maxOffset; d++) {
+                    int repeats = 0, overlap = 0;
+                    for (int p = Math.max(0, d);
+                         p < texts[i].length && p - d < texts[j].length;
+                         p++) {
+                        overlap += 1;
+                        if (texts[i][p] == texts[j][p - d]) {
+                            repeats += 1;
+                        }
+                    }
+                    if (overlap >= minOverlap) {
+                        hits.add(new OverlapScorer.Hit(i, j, d, repeats,
+                                                       overlap));
+                    }
+                }
+            }
+        }
+        hits.sort(OverlapScorer.BEST_FIRST);
+        ArrayList<String> result = new ArrayList<>();
+        for (OverlapScorer.Hit hit : hits) {
+            result.add(hit.toString());
+        }
+        return result;
+    }
+
+    @Test
+    public void checkExample() {
+        byte[][] texts = { { 0, 1, 2, 0, 1 }, { 2, 0, 1, 1 } };
+        OverlapScorer.Hit[] best =
+            OverlapScorer.score(texts, 3, 4, 1, 1, 1);
+        assertEquals("0 1 2 3 3", best[0].toString());
+    }
+
+    @Test
+    public void checkAgainstSlowScoring() {
+        Random random = new Random(42);
+        for (int trial = 0; trial < 10; trial++) {
+            byte[][] texts = new byte[1 + random.nextInt(80)][];
+            for (int i = 0; i < texts.length; i++) {
+                texts[i] = new byte[1 + random.nextInt(80)];
+                for (int p = 0; p < texts[i].length; p++) {
+                    texts[i][p] = (byte) random.nextInt(4);
+                }
+            }
+            int maxOffset = random.nextInt(40);
+            int minOverlap = 1 + random.nextInt(30);
+            ArrayList<String> expected = slowly(texts, maxOffset, minOverlap);
+            int top = 1 + random.nextInt(50);
+            OverlapScorer.Hit[] best =
+                OverlapScorer.score(texts, 4, maxOffset, minOverlap, top,
+                                    1 + random.nextInt(4));
+            assertEquals(Math.min(top, expected.size()), best.length);
+            for (int k = 0; k < best.length; k++) {
+                assertEquals(expected.get(k), best[k].toString());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,548 @@
+package enigma;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** Computes exactly after how many keystrokes the rotor positions of a
+ *  machine set from a given settings line begin to repeat, and how
+ *  often they repeat thereafter.  Usage:
+ *      java enigma.PeriodCalculator CONFIG SETTINGS
+ *  where SETTINGS is a settings line such as "* B Beta III IV I AXLE".
+ *  <p>
+ *  The moving slots are treated one at a time from the right.  The
+ *  slots to the right of any slot form a machine of their own, whose
+ *  only effect on that slot is the sequence of keystrokes at which its
+ *  right neighbour is at a notch.  Once that machine has settled into
+ *  its period, the slot's position at the start of each period is a
+ *  function of its position at the start of the one before, which is
+ *  followed until it repeats; the period of the slots from this one
+ *  rightwards is then a multiple of that of the slots to its right.
+ *  Carry sequences are kept as shared trees of runs, in which a run
+ *  without carries longer than any slot could take to move off its
+ *  notches is not distinguished from a longer one; keystroke counts
+ *  come instead from the periods themselves.
+ *  @author Neha Kompella
+ */
+public final class PeriodCalculator {
+
+    /** Print the period of the machine described by ARGS (see above). */
+    public static void main(String... args) {
+        try {
+            if (args.length != 2) {
+                throw error("usage: java enigma.PeriodCalculator CONFIG"
+                            + " SETTINGS");
+            }
+            MachineConfig config = Main.loadConfig(args[0]);
+            PeriodCalculator calc = new PeriodCalculator(config, args[1]);
+            Alphabet alpha = config.alphabet();
+            StringBuilder posns = new StringBuilder();
+            for (int p : calc.recurrence()) {
+                posns.append(alpha.toChar(p));
+            }
+            System.out.printf("period: %s%n", calc.period());
+            System.out.printf("first repeated positions: %s, after %s"
+                              + " keystrokes%n", posns, calc.tail());
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** The stepping of the machine of CONFIG set according to the
+     *  settings line SETTINGS.  Ring settings and the plugboard do not
+     *  affect stepping and are ignored. */
+    PeriodCalculator(MachineConfig config, String settings) {
+        Machine m = config.newMachine();
+        Settings parsed = new Settings(settings, m, config.alphabet());
+        int slots = m.numRotors();
+        int fix = slots - m.numPawls();
+        _size = config.alphabet().size();
+        _start = parsed.positions();
+        _fixed = fix - 1;
+        boolean[][] notches = new boolean[slots - fix][_size];
+        for (int i = 0; i < notches.length; i++) {
+            MovingRotor rotor =
+                (MovingRotor) config.rotor(parsed.rotors()[fix + i]);
+            for (int p = 0; p < _size; p++) {
+                notches[i][p] = rotor.notchAt(p);
+            }
+        }
+        solve(notches);
+    }
+
+    /** The stepping of moving rotors with SIZE positions whose notch
+     *  positions, leftmost rotor first, are given by NOTCHES, starting
+     *  at positions START.  There are pawls to the left of all of the
+     *  rotors, as in a machine without fixed rotors. */
+    PeriodCalculator(int size, boolean[][] notches, int[] start) {
+        _size = size;
+        _start = start.clone();
+        _fixed = 0;
+        solve(notches);
+    }
+
+    /** Return the number of keystrokes after which the rotor positions
+     *  repeat, once they have begun to. */
+    BigInteger period() {
+        return _period;
+    }
+
+    /** Return the number of keystrokes before the rotor positions first
+     *  reach a setting that they return to. */
+    BigInteger tail() {
+        return _tail;
+    }
+
+    /** Return the positions of the rotors other than the reflector,
+     *  leftmost first, after tail() keystrokes: the first setting
+     *  that recurs. */
+    int[] recurrence() {
+        return positions(_tail);
+    }
+
+    /** Return the positions of the rotors other than the reflector,
+     *  leftmost first, after T keystrokes. */
+    int[] positions(BigInteger t) {
+        int[] result = _start.clone();
+        for (Chain chain : _chains) {
+            int[] posns = chain.positions(t);
+            System.arraycopy(posns, 0, result, _fixed + chain._from,
+                             posns.length);
+        }
+        return result;
+    }
+
+    /** Analyze rotors with notch positions NOTCHES, leftmost first.
+     *  A rotor with a pawl that is at a notch in every position
+     *  advances at every keystroke whatever the slots to its right do,
+     *  and so drives the slots to its left as the rightmost slot does.
+     *  The moving slots are divided into chains at such rotors, and the
+     *  chains analyzed separately. */
+    private void solve(boolean[][] notches) {
+        _cap = (long) _size * (notches.length + 2);
+        _period = BigInteger.ONE;
+        _tail = BigInteger.ZERO;
+        int from = 0;
+        for (int i = 0; i < notches.length; i++) {
+            boolean everywhere = i > 0;
+            for (boolean notch : notches[i]) {
+                everywhere &= notch;
+            }
+            if (everywhere || i == notches.length - 1) {
+                Chain chain = new Chain(notches, from, i + 1);
+                _chains.add(chain);
+                BigInteger p = chain._period;
+                _period = _period.multiply(p).divide(_period.gcd(p));
+                _tail = _tail.max(chain._tail);
+                from = i + 1;
+            }
+        }
+    }
+
+    /** Consecutive moving slots whose rightmost slot advances at every
+     *  keystroke. */
+    private final class Chain {
+
+        /** The chain of moving slots FROM .. TO-1, whose rotors are at
+         *  a notch at positions NOTCHES[FROM .. TO-1]. */
+        Chain(boolean[][] notches, int from, int to) {
+            _from = from;
+            _slots = new Slot[to - from];
+            Node input = leaf(true, 1);
+            Node head = leaf(false, 0);
+            BigInteger headLength = BigInteger.ZERO;
+            BigInteger period = BigInteger.ONE;
+            for (int i = to - 1; i >= from; i--) {
+                Slot slot = new Slot(notches[i], i > 0,
+                                     _start[_fixed + i], head, headLength,
+                                     input, period);
+                _slots[i - from] = slot;
+                head = slot._head;
+                input = slot._cycle;
+                headLength = slot._headLength;
+                period = slot._period;
+            }
+            _period = period;
+            BigInteger lo = BigInteger.ZERO, hi = headLength;
+            while (lo.compareTo(hi) < 0) {
+                BigInteger mid = lo.add(hi).shiftRight(1);
+                if (Arrays.equals(positions(mid),
+                                  positions(mid.add(period)))) {
+                    hi = mid;
+                } else {
+                    lo = mid.add(BigInteger.ONE);
+                }
+            }
+            _tail = lo;
+        }
+
+        /** Return the positions of my slots after T keystrokes.  T is
+         *  resolved into input cycles of each of my slots in turn from
+         *  the left; the slots to the left of each are driven through
+         *  the carries it gives in the whole cycles it completes. */
+        int[] positions(BigInteger t) {
+            int[] result = new int[_slots.length];
+            boolean initial = true;
+            int index = 0;
+            for (int k = 0; k < _slots.length; k++) {
+                Slot slot = _slots[k];
+                if (initial) {
+                    if (t.compareTo(slot._inputHeadLength) < 0) {
+                        result[k] = slot._begin;
+                        continue;
+                    }
+                    feed(k, slot._first._out, result);
+                    t = t.subtract(slot._inputHeadLength);
+                    initial = false;
+                }
+                BigInteger[] qr = t.divideAndRemainder(slot._inputPeriod);
+                if (k == 0) {
+                    index = slot.after(index, qr[0]);
+                } else {
+                    for (int n = qr[0].intValue(); n > 0; n -= 1) {
+                        feed(k, slot._outputs.get(index)._out, result);
+                        index = slot.after(index, BigInteger.ONE);
+                    }
+                }
+                result[k] = slot._orbit[index];
+                t = qr[1];
+                if (k + 1 < _slots.length) {
+                    index = _slots[k + 1]._lead;
+                }
+            }
+            return result;
+        }
+
+        /** Advance the slots to the left of my slot K, whose positions
+         *  are in POSITIONS, by the carries OUT given by slot K. */
+        private void feed(int k, Node out, int[] positions) {
+            for (int j = k - 1; j >= 0; j--) {
+                Result r = _slots[j].apply(out, positions[j]);
+                positions[j] = r._end;
+                out = r._out;
+            }
+        }
+
+        /** Index of my leftmost slot among the moving slots. */
+        private final int _from;
+        /** My slots, leftmost first. */
+        private final Slot[] _slots;
+        /** The period of my positions. */
+        private final BigInteger _period;
+        /** The number of keystrokes before they begin to recur. */
+        private final BigInteger _tail;
+    }
+
+    /** One moving slot, driven by the carries from the slots to its
+     *  right.  Those carries are given as a head, covering the
+     *  keystrokes before the slots to the right reach a setting that
+     *  recurs, followed by a cycle repeated forever.  The slot's
+     *  positions at the start of each cycle form its orbit. */
+    private final class Slot {
+
+        /** A slot whose rotor is at a notch at positions NOTCHES, and
+         *  that, if PAWL, advances itself and its left neighbour when at
+         *  one.  It starts at position START and is driven by the
+         *  carries HEAD, of length HEADLENGTH, followed by repetitions of
+         *  CYCLE, of length PERIOD. */
+        Slot(boolean[] notches, boolean pawl, int start, Node head,
+             BigInteger headLength, Node cycle, BigInteger period) {
+            _notches = notches;
+            _pawl = pawl;
+            _begin = start;
+            _inputHeadLength = headLength;
+            _inputPeriod = period;
+            _runoff = new int[_size];
+            for (int k = 2 * _size - 1, run = 0; k >= 0; k--) {
+                int p = k % _size;
+                run = notches[p] ? Math.min(run + 1, _size) : 0;
+                if (k < _size) {
+                    _runoff[p] = run;
+                }
+            }
+
+            _first = apply(head, start);
+            int[] seen = new int[_size];
+            Arrays.fill(seen, -1);
+            int[] orbit = new int[_size];
+            int x = _first._end;
+            int n = 0;
+            while (seen[x] < 0) {
+                seen[x] = n;
+                orbit[n] = x;
+                Result r = apply(cycle, x);
+                _outputs.add(r);
+                x = r._end;
+                n += 1;
+            }
+            _orbit = Arrays.copyOf(orbit, n);
+            _lead = seen[x];
+            _loop = n - _lead;
+            _headLength = headLength.add(period.multiply(
+                BigInteger.valueOf(_lead)));
+            _period = period.multiply(BigInteger.valueOf(_loop));
+            if (pawl) {
+                List<Node> outputs = new ArrayList<>();
+                for (Result r : _outputs) {
+                    outputs.add(r._out);
+                }
+                _head = concat(_first._out,
+                               concat(outputs.subList(0, _lead)));
+                _cycle = concat(outputs.subList(_lead, n));
+            } else {
+                _head = _cycle = null;
+            }
+        }
+
+        /** Return the index in my orbit of my position COUNT input
+         *  cycles after I was at index INDEX. */
+        int after(int index, BigInteger count) {
+            BigInteger k = count.add(BigInteger.valueOf(index));
+            if (k.compareTo(BigInteger.valueOf(_orbit.length)) < 0) {
+                return k.intValue();
+            }
+            return _lead + k.subtract(BigInteger.valueOf(_lead))
+                .mod(BigInteger.valueOf(_loop)).intValue();
+        }
+
+        /** Return the result of driving me from position P by the
+         *  carries in NODE.  Its output is null if I have no pawl. */
+        Result apply(Node node, int p) {
+            long key = node._id * _size + p;
+            Result result = _memo.get(key);
+            if (result != null) {
+                return result;
+            }
+            if (node._left != null) {
+                Result left = apply(node._left, p);
+                Result right = apply(node._right, left._end);
+                result = new Result(_pawl ? concat(left._out, right._out)
+                                    : null, right._end);
+            } else if (node._carry || (_pawl && _runoff[p] == _size)) {
+                long rem = node._length % _size;
+                Node out = null;
+                if (_pawl) {
+                    out = concat(repeat(notchRun(p, _size),
+                                        node._length / _size),
+                                 notchRun(p, (int) rem));
+                }
+                result = new Result(out, (int) ((p + rem) % _size));
+            } else if (_pawl) {
+                int run = (int) Math.min(node._length, _runoff[p]);
+                result = new Result(concat(leaf(true, run),
+                                           leaf(false, node._length - run)),
+                                    (p + run) % _size);
+            } else {
+                result = new Result(null, p);
+            }
+            _memo.put(key, result);
+            return result;
+        }
+
+        /** Return my notch indications at the N positions starting at
+         *  P, as carries. */
+        private Node notchRun(int p, int n) {
+            Node result = leaf(false, 0);
+            int i = 0;
+            while (i < n) {
+                boolean notch = _notches[(p + i) % _size];
+                int j = i + 1;
+                while (j < n && _notches[(p + j) % _size] == notch) {
+                    j += 1;
+                }
+                result = concat(result, leaf(notch, j - i));
+                i = j;
+            }
+            return result;
+        }
+
+        /** Positions at which my rotor is at a notch. */
+        private final boolean[] _notches;
+        /** True iff there is a pawl to my left. */
+        private final boolean _pawl;
+        /** My initial position. */
+        private final int _begin;
+        /** The number of keystrokes before my input carries recur. */
+        private final BigInteger _inputHeadLength;
+        /** The number of keystrokes in each cycle of my input. */
+        private final BigInteger _inputPeriod;
+        /** _runoff[p] is the number of consecutive notches from P, or
+         *  _size if every position is a notch. */
+        private final int[] _runoff;
+        /** The result of driving me through the head of my input. */
+        private final Result _first;
+        /** My positions at the start of successive input cycles, until
+         *  just before one repeats. */
+        private final int[] _orbit;
+        /** The results of driving me from each position in _orbit
+         *  through one input cycle. */
+        private final ArrayList<Result> _outputs = new ArrayList<>();
+        /** The index in _orbit of the position that repeats, and the
+         *  number of input cycles between repetitions. */
+        private final int _lead, _loop;
+        /** The carries I give to my left neighbour before the slots
+         *  from me rightwards first reach a setting that recurs, and in
+         *  each period thereafter.  Null if I have no pawl. */
+        private final Node _head, _cycle;
+        /** The number of keystrokes in my head and in my period. */
+        private final BigInteger _headLength, _period;
+        /** Results of apply, by node and starting position. */
+        private final HashMap<Long, Result> _memo = new HashMap<>();
+    }
+
+    /** The effect of driving a slot by a sequence of carries: the
+     *  carries it gives its left neighbour, and its final position. */
+    private static final class Result {
+        /** A result giving OUT and ending at END. */
+        Result(Node out, int end) {
+            _out = out;
+            _end = end;
+        }
+
+        /** Carries given. */
+        private final Node _out;
+        /** Final position. */
+        private final int _end;
+    }
+
+    /** A sequence of keystrokes, each with or without a carry: either a
+     *  run of one or the other, or the concatenation of two sequences.
+     *  Equal runs and concatenations of the same sequences are
+     *  shared, so that results computed for one serve for all. */
+    private static final class Node {
+        /** A run of LENGTH keystrokes, with carries iff CARRY. */
+        Node(long id, boolean carry, long length) {
+            _id = id;
+            _carry = carry;
+            _length = length;
+            _left = _right = null;
+        }
+
+        /** The sequence LEFT followed by RIGHT. */
+        Node(long id, Node left, Node right) {
+            _id = id;
+            _carry = false;
+            _length = -1;
+            _left = left;
+            _right = right;
+        }
+
+        /** Return true iff I am a run of keystrokes with carries iff
+         *  CARRY. */
+        boolean run(boolean carry) {
+            return _left == null && _carry == carry;
+        }
+
+        /** Unique number. */
+        private final long _id;
+        /** True for a run of carries. */
+        private final boolean _carry;
+        /** Number of keystrokes in a run, or -1 for a concatenation. */
+        private final long _length;
+        /** The parts of a concatenation, or null for a run. */
+        private final Node _left, _right;
+    }
+
+    /** Return the run of LENGTH keystrokes with carries iff CARRY.  Runs
+     *  without carries are no longer than _cap. */
+    private Node leaf(boolean carry, long length) {
+        if (!carry) {
+            length = Math.min(length, _cap);
+        }
+        HashMap<Long, Node> runs = carry ? _carries : _gaps;
+        Node result = runs.get(length);
+        if (result == null) {
+            result = new Node(_count, carry, length);
+            _count += 1;
+            runs.put(length, result);
+        }
+        return result;
+    }
+
+    /** Return the sequence A followed by B. */
+    private Node concat(Node a, Node b) {
+        if (a._length == 0) {
+            return b;
+        } else if (b._length == 0) {
+            return a;
+        } else if (a._left == null && b.run(a._carry)) {
+            return leaf(a._carry, a._length + b._length);
+        } else if (a._left != null && a._right._left == null
+                   && b.run(a._right._carry)) {
+            return concat(a._left, concat(a._right, b));
+        } else if (b._left != null && b._left._left == null
+                   && a.run(b._left._carry)) {
+            return concat(concat(a, b._left), b._right);
+        }
+        long key = a._id * (1L << 32) + b._id;
+        Node result = _pairs.get(key);
+        if (result == null) {
+            if (_count >= MAX_NODES) {
+                throw error("stepping is too irregular to analyze");
+            }
+            result = new Node(_count, a, b);
+            _count += 1;
+            _pairs.put(key, result);
+        }
+        return result;
+    }
+
+    /** Return the concatenation of PARTS, in order. */
+    private Node concat(List<Node> parts) {
+        int n = parts.size();
+        if (n == 0) {
+            return leaf(false, 0);
+        } else if (n == 1) {
+            return parts.get(0);
+        }
+        return concat(concat(parts.subList(0, n / 2)),
+                      concat(parts.subList(n / 2, n)));
+    }
+
+    /** Return COUNT repetitions of NODE. */
+    private Node repeat(Node node, long count) {
+        Node result = leaf(false, 0);
+        for (int b = 63 - Long.numberOfLeadingZeros(count); b >= 0; b--) {
+            result = concat(result, result);
+            if ((count & (1L << b)) != 0) {
+                result = concat(result, node);
+            }
+        }
+        return result;
+    }
+
+    /** Limit on the number of distinct sequences of carries. */
+    private static final int MAX_NODES = 1 << 20;
+
+    /** Alphabet size. */
+    private final int _size;
+    /** Initial positions of the rotors other than the reflector. */
+    private final int[] _start;
+    /** Number of rotors, other than the reflector, that do not move. */
+    private final int _fixed;
+    /** The length beyond which runs without carries are not
+     *  distinguished.  A slot takes fewer keystrokes than the alphabet
+     *  size to move off its notches, shortening a run by that much for
+     *  the slot to its left, so this leaves every such run longer than
+     *  any slot can take. */
+    private long _cap;
+    /** The chains of moving slots, leftmost first. */
+    private final ArrayList<Chain> _chains = new ArrayList<>();
+    /** The period of the rotor positions. */
+    private BigInteger _period;
+    /** The number of keystrokes before they begin to recur. */
+    private BigInteger _tail;
+    /** Number of sequences of carries created. */
+    private long _count;
+    /** Runs of carries and of keystrokes without carries, by length. */
+    private final HashMap<Long, Node> _carries = new HashMap<>(),
+        _gaps = new HashMap<>();
+    /** Concatenations, by the numbers of their parts. */
+    private final HashMap<Long, Node> _pairs = new HashMap<>();
+}
@@ -0,0 +1,111 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** Tests of the computation of rotor periods.
+ *  @author Neha Kompella
+ */
+public class PeriodCalculatorTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    @Test
+    public void checkPeriod() {
+        MachineConfig config = Main.parseConfig(NAVAL_CONFIG);
+        Machine m = config.newMachine();
+        String[] settings = {
+            "* B BETA III IV I AXLE", "* B BETA I II III AAEA",
+            "* C GAMMA VI VII VIII AZMY", "* B BETA VI II VII AAYL",
+        };
+        for (String line : settings) {
+            PeriodCalculator calc = new PeriodCalculator(config, line);
+            new Settings(line, m, config.alphabet()).apply(m);
+            HashMap<String, Integer> seen = new HashMap<>();
+            String posns = Arrays.toString(m.positions());
+            for (int t = 0; !seen.containsKey(posns); t++) {
+                int[] expected = Arrays.copyOfRange(m.positions(), 1, 5);
+                assertEquals(Arrays.toString(expected), Arrays.toString(
+                    calc.positions(BigInteger.valueOf(t))));
+                seen.put(posns, t);
+                m.convert(0);
+                posns = Arrays.toString(m.positions());
+            }
+            int tail = seen.get(posns);
+            assertEquals(BigInteger.valueOf(tail), calc.tail());
+            assertEquals(BigInteger.valueOf(seen.size() - tail),
+                         calc.period());
+            int[] recurring = Arrays.copyOfRange(m.positions(), 1, 5);
+            assertEquals(Arrays.toString(recurring),
+                         Arrays.toString(calc.recurrence()));
+        }
+    }
+
+    /** Advance POSITIONS, of rotors with SIZE positions and notches
+     *  NOTCHES, leftmost first, as for one keystroke. */
+    private static void step(int[] positions, boolean[][] notches,
+                             int size) {
+        int last = positions.length - 1;
+        boolean[] advance = new boolean[positions.length];
+        for (int i = 1; i <= last; i++) {
+            if (notches[i][positions[i]]) {
+                advance[i] = advance[i - 1] = true;
+            }
+        }
+        advance[last] = true;
+        for (int i = 0; i <= last; i++) {
+            if (advance[i]) {
+                positions[i] = (positions[i] + 1) % size;
+            }
+        }
+    }
+
+    @Test
+    public void checkRandomNotches() {
+        Random random = new Random(44);
+        for (int trial = 0; trial < 300; trial++) {
+            int size = 2 + random.nextInt(5);
+            int rotors = 1 + random.nextInt(4);
+            boolean[][] notches = new boolean[rotors][size];
+            int[] start = new int[rotors];
+            for (int i = 0; i < rotors; i++) {
+                int kind = random.nextInt(4);
+                for (int p = 0; p < size; p++) {
+                    notches[i][p] = kind == 3 || random.nextInt(3) < kind;
+                }
+                start[i] = random.nextInt(size);
+            }
+            PeriodCalculator calc =
+                new PeriodCalculator(size, notches, start);
+            HashMap<String, Integer> seen = new HashMap<>();
+            int[] positions = start.clone();
+            for (int t = 0; !seen.containsKey(Arrays.toString(positions));
+                 t++) {
+                assertArrayEquals(positions,
+                                  calc.positions(BigInteger.valueOf(t)));
+                seen.put(Arrays.toString(positions), t);
+                step(positions, notches, size);
+            }
+            int tail = seen.get(Arrays.toString(positions));
+            assertEquals(BigInteger.valueOf(tail), calc.tail());
+            assertEquals(BigInteger.valueOf(seen.size() - tail),
+                         calc.period());
+            assertArrayEquals(positions, calc.recurrence());
+            BigInteger far = BigInteger.valueOf(1000003);
+            int[] expected = calc.positions(far.subtract(calc.period()));
+            assertArrayEquals(expected, calc.positions(far));
+        }
+    }
+
+}
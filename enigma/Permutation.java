@@ -1,12 +1,16 @@
 package enigma;
 
+import java.util.Arrays;
 import java.util.HashMap;
 
 import static enigma.EnigmaException.*;
 
 /**
  * Represents a permutation of a range of integers starting at 0 corresponding
- * to the characters of an alphabet.
+ * to the characters of an alphabet.  Permutations are immutable and are
+ * compiled into tables on construction, so that they can be applied,
+ * composed, inverted, raised to powers and conjugated in time linear in
+ * the size of the alphabet.
  *
  * @author Neha Kompella
  */
@@ -20,23 +24,77 @@ class Permutation {
      */
     Permutation(String cycles, Alphabet alphabet) {
         _alphabet = alphabet;
-        _cycles = cycles;
-        dictCycles = new HashMap<>();
-        if (_cycles != null) {
-            cyclesArray = _cycles.toCharArray();
+        if (cycles == null) {
+            cycles = "";
+        }
+        char[] cyclesArray = cycles.toCharArray();
+        char saved = 0;
 
+        HashMap<Character, Character> dictCycles = identity(alphabet);
+        for (int i = 0; i < cyclesArray.length - 1; i++) {
+            if (cyclesArray[i] == '(') {
+                saved = cyclesArray[i + 1];
+            } else if (cyclesArray[i + 1] == ')') {
+                dictCycles.put(cyclesArray[i], saved);
+            } else if (cyclesArray[i] != ')') {
+                dictCycles.put(cyclesArray[i], cyclesArray[i + 1]);
+            }
         }
-        for (int i = 0; i < _alphabet.size(); i++) {
-            char same = _alphabet.toChar(i);
-            dictCycles.put(same, same);
+        _forward = table(dictCycles, alphabet);
+
+        dictCycles = identity(alphabet);
+        for (int i = cyclesArray.length - 1; i > 0; i--) {
+            if (cyclesArray[i] == ')') {
+                saved = cyclesArray[i - 1];
+            } else if (cyclesArray[i - 1] == '(') {
+                dictCycles.put(cyclesArray[i], saved);
+            } else if (cyclesArray[i] != '(') {
+                dictCycles.put(cyclesArray[i], cyclesArray[i - 1]);
+            }
         }
+        _inverse = table(dictCycles, alphabet);
     }
 
     /**
-     * Add the cycle c0->c1->...->cm->c0 to the permutation, where CYCLE is
-     * c0c1...cm.
+     * A permutation of ALPHABET that maps each index I to FORWARD[I],
+     * which must be a permutation of 0 .. ALPHABET.size() - 1 and is
+     * not copied.
      */
-    private void addCycle(String cycle) {
+    Permutation(int[] forward, Alphabet alphabet) {
+        _alphabet = alphabet;
+        _forward = forward;
+        _inverse = new int[forward.length];
+        for (int i = 0; i < forward.length; i++) {
+            _inverse[forward[i]] = i;
+        }
+    }
+
+    /**
+     * Return the identity mapping of the characters of ALPHABET.
+     */
+    private static HashMap<Character, Character> identity(Alphabet alphabet) {
+        HashMap<Character, Character> result = new HashMap<>();
+        for (int i = 0; i < alphabet.size(); i++) {
+            char same = alphabet.toChar(i);
+            result.put(same, same);
+        }
+        return result;
+    }
+
+    /**
+     * Return the table of indices in ALPHABET of the images of its
+     * characters under DICT.  Characters mapped outside the alphabet
+     * map to index 0.
+     */
+    private static int[] table(HashMap<Character, Character> dict,
+                               Alphabet alphabet) {
+        int[] result = new int[alphabet.size()];
+        for (int i = 0; i < result.length; i++) {
+            char permuted = dict.get(alphabet.toChar(i));
+            result[i] = alphabet.contains(permuted)
+                ? alphabet.toInt(permuted) : 0;
+        }
+        return result;
     }
 
     /**
@@ -54,7 +112,7 @@ class Permutation {
      * Returns the size of the alphabet I permute.
      */
     int size() {
-        return _alphabet.size();
+        return _forward.length;
     }
 
     /**
@@ -62,31 +120,7 @@ class Permutation {
      * alphabet size.
      */
     int permute(int p) {
-        int k = wrap(p);
-        char saved = 0;
-        if (cyclesArray == null) {
-            return k;
-        } else {
-            for (int i = 0; i < cyclesArray.length - 1; i++) {
-                if (cyclesArray[i] == '(') {
-                    saved = cyclesArray[i + 1];
-                } else if (cyclesArray[i + 1] == ')') {
-                    dictCycles.put(cyclesArray[i], saved);
-                } else if (cyclesArray[i] != ')') {
-                    dictCycles.put(cyclesArray[i], cyclesArray[i + 1]);
-                }
-            }
-
-            char letter = _alphabet.toChar(k);
-            char permuted = dictCycles.get(letter);
-            int result = 0;
-            for (int i = 0; i < _alphabet.size(); i++) {
-                if (_alphabet.toChar(i) == permuted) {
-                    result = i;
-                }
-            }
-            return result;
-        }
+        return _forward[wrap(p)];
     }
 
     /**
@@ -94,31 +128,7 @@ class Permutation {
      * to  C modulo the alphabet size.
      */
     int invert(int c) {
-        int k = wrap(c);
-        char saved = 0;
-        if (_cycles == null) {
-            return k;
-        } else {
-            for (int i = cyclesArray.length - 1; i > 0; i--) {
-                if (cyclesArray[i] == ')') {
-                    saved = cyclesArray[i - 1];
-                } else if (cyclesArray[i - 1] == '(') {
-                    dictCycles.put(cyclesArray[i], saved);
-                } else if (cyclesArray[i] != '(') {
-                    dictCycles.put(cyclesArray[i], cyclesArray[i - 1]);
-                }
-            }
-
-            char letter = _alphabet.toChar(k);
-            char permuted = dictCycles.get(letter);
-            int result = 0;
-            for (int i = 0; i < _alphabet.size(); i++) {
-                if (_alphabet.toChar(i) == permuted) {
-                    result = i;
-                }
-            }
-            return result;
-        }
+        return _inverse[wrap(c)];
     }
 
 
@@ -127,35 +137,24 @@ class Permutation {
      * in ALPHABET, and converting the result to a character of ALPHABET.
      */
     char permute(char p) {
-
-        char saved = 0;
-        for (int i = 0; i < cyclesArray.length; i++) {
-            if (cyclesArray[i] == '(') {
-                saved = cyclesArray[i + 1];
-            } else if (cyclesArray[i + 1] == ')') {
-                dictCycles.put(cyclesArray[i], saved);
-            } else if (cyclesArray[i] != ')') {
-                dictCycles.put(cyclesArray[i], cyclesArray[i + 1]);
-            }
-        }
-        return dictCycles.get(p);
+        return _alphabet.toChar(_forward[index(p)]);
     }
 
     /**
      * Return the result of applying the inverse of this permutation to C.
      */
     int invert(char c) {
-        char saved = 0;
-        for (int i = cyclesArray.length - 1; i > -1; i--) {
-            if (cyclesArray[i] == ')') {
-                saved = cyclesArray[i - 1];
-            } else if (cyclesArray[i - 1] == '(') {
-                dictCycles.put(cyclesArray[i], saved);
-            } else if (cyclesArray[i] != '(') {
-                dictCycles.put(cyclesArray[i], cyclesArray[i - 1]);
-            }
+        return _alphabet.toChar(_inverse[index(c)]);
+    }
+
+    /**
+     * Return the index of C in my alphabet.
+     */
+    private int index(char c) {
+        if (!_alphabet.contains(c)) {
+            throw error("character not in alphabet");
         }
-        return (int) dictCycles.get(c);
+        return _alphabet.toInt(c);
     }
 
     /**
@@ -170,31 +169,194 @@ class Permutation {
      * permutation for which no value maps to itself).
      */
     boolean derangement() {
-        for (char key : dictCycles.keySet()) {
-            if (dictCycles.get(key).equals(key)) {
+        for (int i = 0; i < _forward.length; i++) {
+            if (_forward[i] == i) {
                 return false;
             }
         }
         return true;
     }
 
+    /**
+     * Return my table: entry I is the image of I.  The result must not
+     * be modified.
+     */
+    int[] table() {
+        return _forward;
+    }
+
+    /**
+     * Return the table of my inverse.  The result must not be modified.
+     */
+    int[] inverseTable() {
+        return _inverse;
+    }
+
+    /**
+     * Return the permutation that applies OTHER and then me, which
+     * must have the same size.
+     */
+    Permutation compose(Permutation other) {
+        int[] result = new int[size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = _forward[other._forward[i]];
+        }
+        return new Permutation(result, _alphabet);
+    }
+
+    /**
+     * Return my inverse.
+     */
+    Permutation inverse() {
+        return new Permutation(_inverse.clone(), _alphabet);
+    }
+
+    /**
+     * Return me applied K times (my inverse applied -K times if K is
+     * negative).
+     */
+    Permutation power(int k) {
+        int[] result = new int[size()];
+        for (int[] cycle : cycles()) {
+            int len = cycle.length;
+            int shift = ((k % len) + len) % len;
+            for (int j = 0; j < len; j++) {
+                result[cycle[j]] = cycle[(j + shift) % len];
+            }
+        }
+        return new Permutation(result, _alphabet);
+    }
+
+    /**
+     * Return my conjugate by the rotation of the alphabet by K: the
+     * permutation that maps P to my image of P + K, less K (modulo the
+     * alphabet size).  This is what a rotor at setting K applies.
+     */
+    Permutation shift(int k) {
+        int n = size();
+        k = wrap(k);
+        int[] result = new int[n];
+        for (int p = 0, q = k; p < n; p++, q++) {
+            if (q == n) {
+                q = 0;
+            }
+            int r = _forward[q] - k;
+            result[p] = r < 0 ? r + n : r;
+        }
+        return new Permutation(result, _alphabet);
+    }
+
+    /**
+     * Return my conjugate by G, the permutation that maps G(P) to
+     * G(Q) whenever I map P to Q.  It has the same cycle type as I.
+     */
+    Permutation conjugate(Permutation g) {
+        int[] result = new int[size()];
+        for (int p = 0; p < result.length; p++) {
+            result[g._forward[p]] = g._forward[_forward[p]];
+        }
+        return new Permutation(result, _alphabet);
+    }
+
+    /**
+     * Return my decomposition into disjoint cycles, including cycles of
+     * length 1, each starting with its smallest element, in order of
+     * their first elements.  The result must not be modified.
+     */
+    int[][] cycles() {
+        if (_cycles == null) {
+            int n = size();
+            boolean[] seen = new boolean[n];
+            int[] scratch = new int[n];
+            int[][] found = new int[n][];
+            int count = 0;
+            for (int start = 0; start < n; start++) {
+                if (!seen[start]) {
+                    int len = 0;
+                    for (int p = start; !seen[p]; p = _forward[p]) {
+                        seen[p] = true;
+                        scratch[len++] = p;
+                    }
+                    found[count++] = Arrays.copyOf(scratch, len);
+                }
+            }
+            _cycles = Arrays.copyOf(found, count);
+        }
+        return _cycles;
+    }
+
+    /**
+     * Return my cycle type: the lengths of my cycles in decreasing
+     * order.  The result must not be modified.
+     */
+    int[] cycleType() {
+        if (_cycleType == null) {
+            int[][] cycles = cycles();
+            int[] lengths = new int[cycles.length];
+            for (int i = 0; i < cycles.length; i++) {
+                lengths[i] = -cycles[i].length;
+            }
+            Arrays.sort(lengths);
+            for (int i = 0; i < lengths.length; i++) {
+                lengths[i] = -lengths[i];
+            }
+            _cycleType = lengths;
+        }
+        return _cycleType;
+    }
+
+    /**
+     * Return my cycle type as a string, such as "13,13".  Two
+     * permutations are conjugate iff they have the same signature.
+     */
+    String signature() {
+        if (_signature == null) {
+            StringBuilder result = new StringBuilder();
+            for (int len : cycleType()) {
+                if (result.length() > 0) {
+                    result.append(',');
+                }
+                result.append(len);
+            }
+            _signature = result.toString();
+        }
+        return _signature;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Permutation
+            && Arrays.equals(_forward, ((Permutation) obj)._forward);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(_forward);
+    }
+
     /**
      * Alphabet of this permutation.
      */
     private Alphabet _alphabet;
     /**
-     * Cycles of permutations.
+     * _forward[i] is the image of index i.
+     */
+    private final int[] _forward;
+    /**
+     * _inverse[i] is the preimage of index i.
+     */
+    private final int[] _inverse;
+    /**
+     * Cached cycle decomposition, or null.
      */
-    private String _cycles;
+    private int[][] _cycles;
     /**
-     * Array of characters comprised of letters in _cycles.
+     * Cached cycle type, or null.
      */
-    private char[] cyclesArray;
+    private int[] _cycleType;
     /**
-     * Dictionary that maps each character to its permuted
-     * character.
+     * Cached signature, or null.
      */
-    private HashMap<Character, Character> dictCycles;
+    private String _signature;
 
 }
-
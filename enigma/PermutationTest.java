@@ -51,4 +51,28 @@ public class PermutationTest {
         checkPerm("identity", UPPER_STRING, UPPER_STRING);
     }
 
+    @Test
+    public void checkAlgebra() {
+        Permutation p = new Permutation(NAVALA.get("I"), UPPER);
+        Permutation id = new Permutation("", UPPER);
+        assertEquals(id, p.compose(p.inverse()));
+        assertEquals(p.compose(p).compose(p), p.power(3));
+        assertEquals(p.inverse(), p.power(-1));
+        assertEquals(id, p.power(0));
+        assertEquals("10,4,4,3,2,2,1", p.signature());
+        assertEquals(p.signature(), p.conjugate(
+            new Permutation(NAVALA.get("II"), UPPER)).signature());
+        for (int k = 0; k < 26; k += 1) {
+            Permutation shifted = p.shift(k);
+            for (int c = 0; c < 26; c += 1) {
+                assertEquals(p.wrap(p.permute(c + k) - k),
+                             shifted.permute(c));
+            }
+        }
+        Permutation b = new Permutation(NAVALA.get("B"), UPPER);
+        assertTrue(b.derangement());
+        assertFalse(p.derangement());
+        assertEquals("2,2,2,2,2,2,2,2,2,2,2,2,2", b.signature());
+    }
+
 }
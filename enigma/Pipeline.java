@@ -0,0 +1,475 @@
+package enigma;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.locks.LockSupport;
+
+import static enigma.EnigmaException.*;
+
+/** A three-stage pipeline that overlaps reading input, converting it and
+ *  writing the results.  A reader thread copies the input into chunks and
+ *  a writer thread copies chunks to the output, while the converting
+ *  thread sees ordinary streams, input() and output().  Neighboring
+ *  stages are joined by links: fixed pools of reusable byte chunks passed
+ *  through lock-free single-producer, single-consumer rings.  A stage
+ *  that gets ahead of its neighbor waits for a free (or a full) chunk, so
+ *  memory use is bounded and throughput is that of the slowest stage.
+ *  @author Neha Kompella
+ */
+final class Pipeline {
+
+    /** A pipeline from IN to OUT, with CHUNKS chunks in each link.  Its
+     *  reader and writer stages start at once. */
+    Pipeline(InputStream in, OutputStream out, int chunks) {
+        _in = in;
+        _out = out;
+        _inLink = new Link("input", chunks);
+        _outLink = new Link("output", chunks);
+        _reader = new Thread(this::read, "enigma-reader");
+        _writer = new Thread(this::write, "enigma-writer");
+        _reader.setDaemon(true);
+        _writer.setDaemon(true);
+        _reader.start();
+        _writer.start();
+    }
+
+    /** Return the stream of bytes read by the reader stage.  Closing it
+     *  stops that stage. */
+    InputStream input() {
+        return _source;
+    }
+
+    /** Return the stream of bytes for the writer stage.  Flushing it
+     *  passes on any partly filled chunk; closing it waits until the
+     *  writer stage has written everything and closed the output. */
+    OutputStream output() {
+        return _sink;
+    }
+
+    /** Have the writer stage run ACTION once everything written to
+     *  output() so far has been written out and, if the output is a file,
+     *  forced to disk.  Returns without waiting. */
+    void checkpoint(Runnable action) {
+        try {
+            _sink.flush();
+            Chunk chunk = _outLink.acquire();
+            chunk.length = 0;
+            chunk.action = action;
+            _outLink.publish(chunk);
+        } catch (IOException excp) {
+            throw error("could not write output");
+        }
+    }
+
+    /** Stop both stages after a failure of the converting stage,
+     *  without passing on anything not yet written.  The reader stage
+     *  stops at its next chunk and closes the input.  The writer stage
+     *  closes the output, and is waited for. */
+    void abort() {
+        _inLink.close();
+        _outLink.fail(new IOException("pipeline aborted"));
+        try {
+            _writer.join();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Return a report of the queue depths and waits of my links. */
+    String stats() {
+        return _inLink.stats() + _outLink.stats();
+    }
+
+    /** Body of the reader stage. */
+    private void read() {
+        try {
+            while (true) {
+                Chunk chunk = _inLink.acquire();
+                if (chunk == null) {
+                    break;
+                }
+                chunk.length = _in.read(chunk.data, 0, chunk.data.length);
+                _inLink.publish(chunk);
+                if (chunk.length < 0) {
+                    break;
+                }
+            }
+        } catch (IOException | RuntimeException excp) {
+            _inLink.fail(excp);
+        }
+        try {
+            _in.close();
+        } catch (IOException excp) {
+            _inLink.fail(excp);
+        }
+    }
+
+    /** Body of the writer stage. */
+    private void write() {
+        try {
+            while (true) {
+                _outLink.check();
+                Chunk chunk = _outLink.poll();
+                if (chunk == null) {
+                    _out.flush();
+                    chunk = _outLink.take();
+                }
+                if (chunk.length < 0) {
+                    break;
+                } else if (chunk.action != null) {
+                    Runnable action = chunk.action;
+                    chunk.action = null;
+                    _out.flush();
+                    if (_out instanceof FileOutputStream) {
+                        ((FileOutputStream) _out).getFD().sync();
+                    }
+                    action.run();
+                } else {
+                    _out.write(chunk.data, 0, chunk.length);
+                }
+                _outLink.release(chunk);
+            }
+        } catch (IOException | RuntimeException excp) {
+            _outLink.fail(excp);
+        } finally {
+            try {
+                _out.close();
+            } catch (IOException excp) {
+                _outLink.fail(excp);
+            }
+        }
+    }
+
+    /** The converting stage's view of the input link. */
+    private final class Source extends InputStream {
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (_current == null || _pos == _current.length) {
+                if (_current != null) {
+                    _inLink.release(_current);
+                    _current = null;
+                }
+                if (_eof) {
+                    return -1;
+                }
+                Chunk chunk = _inLink.take();
+                if (chunk.length < 0) {
+                    _inLink.release(chunk);
+                    _eof = true;
+                } else {
+                    _current = chunk;
+                    _pos = 0;
+                }
+            }
+            int n = Math.min(len, _current.length - _pos);
+            System.arraycopy(_current.data, _pos, b, off, n);
+            _pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+            _inLink.close();
+        }
+
+        /** The chunk being read, or null. */
+        private Chunk _current;
+        /** Index of the next unread byte of _current. */
+        private int _pos;
+        /** True once the end of the input has been reached. */
+        private boolean _eof;
+    }
+
+    /** The converting stage's view of the output link. */
+    private final class Sink extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (_current == null) {
+                    _current = _outLink.acquire();
+                    _current.length = 0;
+                }
+                int n = Math.min(len, _current.data.length - _current.length);
+                System.arraycopy(b, off, _current.data, _current.length, n);
+                _current.length += n;
+                off += n;
+                len -= n;
+                if (_current.length == _current.data.length) {
+                    flush();
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (_current != null) {
+                _outLink.publish(_current);
+                _current = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (_closed) {
+                return;
+            }
+            _closed = true;
+            flush();
+            Chunk end = _outLink.acquire();
+            end.length = -1;
+            _outLink.publish(end);
+            try {
+                _writer.join();
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+            }
+            _outLink.check();
+        }
+
+        /** The chunk being filled, or null. */
+        private Chunk _current;
+        /** True once I have been closed. */
+        private boolean _closed;
+    }
+
+    /** A reusable block of bytes passed between stages. */
+    private static final class Chunk {
+
+        /** A chunk of SIZE bytes. */
+        Chunk(int size) {
+            data = new byte[size];
+        }
+
+        /** Contents. */
+        private final byte[] data;
+        /** Number of bytes of data in use, or -1 for the end of the
+         *  stream. */
+        private int length;
+        /** Action to run on reaching this chunk instead of writing it,
+         *  or null. */
+        private Runnable action;
+    }
+
+    /** A bounded pool of chunks passed from one producing stage to one
+     *  consuming stage and back. */
+    private static final class Link {
+
+        /** A link named NAME, with CHUNKS chunks. */
+        Link(String name, int chunks) {
+            _name = name;
+            _chunks = chunks;
+            _full = new Ring(chunks);
+            _free = new Ring(chunks);
+            for (int i = 0; i < chunks; i++) {
+                _free.put(new Chunk(CHUNK_SIZE));
+            }
+        }
+
+        /** Return a free chunk, waiting for the consumer to release one.
+         *  Return null if the consumer has gone away. */
+        Chunk acquire() throws IOException {
+            if (_closed) {
+                return null;
+            }
+            Chunk chunk = _free.poll();
+            for (int spins = 0; chunk == null; spins++) {
+                check();
+                if (_closed) {
+                    return null;
+                }
+                if (spins == 0) {
+                    _producerWaits += 1;
+                }
+                pause(spins);
+                chunk = _free.poll();
+            }
+            return chunk;
+        }
+
+        /** Pass CHUNK to the consumer. */
+        void publish(Chunk chunk) {
+            _full.put(chunk);
+            int depth = _full.size();
+            _depthSum += depth;
+            _maxDepth = Math.max(_maxDepth, depth);
+            _published += 1;
+        }
+
+        /** Return the next full chunk, or null if there is none yet. */
+        Chunk poll() {
+            return _full.poll();
+        }
+
+        /** Return the next full chunk, waiting for the producer to
+         *  publish one. */
+        Chunk take() throws IOException {
+            Chunk chunk = _full.poll();
+            for (int spins = 0; chunk == null; spins++) {
+                check();
+                if (spins == 0) {
+                    _consumerWaits += 1;
+                }
+                pause(spins);
+                chunk = _full.poll();
+            }
+            return chunk;
+        }
+
+        /** Return CHUNK, which the consumer has finished with, to the
+         *  pool. */
+        void release(Chunk chunk) {
+            _free.put(chunk);
+        }
+
+        /** Record that the consumer has gone away. */
+        void close() {
+            _closed = true;
+        }
+
+        /** Record that one of my stages failed with EXCP. */
+        void fail(Throwable excp) {
+            _failure = excp;
+        }
+
+        /** Rethrow the failure of either stage, if any. */
+        void check() throws IOException {
+            Throwable failure = _failure;
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure != null) {
+                throw new IOException(failure);
+            }
+        }
+
+        /** Return a one-line report of my queue depth and waits. */
+        String stats() {
+            return String.format("%s: %d chunks of %d KB, mean depth %.2f,"
+                                 + " max %d, producer waited %d times,"
+                                 + " consumer waited %d times%n",
+                                 _name, _chunks, CHUNK_SIZE >> 10,
+                                 _published == 0 ? 0.0
+                                 : (double) _depthSum / _published,
+                                 _maxDepth, _producerWaits, _consumerWaits);
+        }
+
+        /** Name used in reports. */
+        private final String _name;
+        /** Number of chunks. */
+        private final int _chunks;
+        /** Chunks published and not yet taken. */
+        private final Ring _full;
+        /** Chunks available to the producer. */
+        private final Ring _free;
+        /** True once the consumer has gone away. */
+        private volatile boolean _closed;
+        /** Failure of either stage, or null. */
+        private volatile Throwable _failure;
+        /** Number of chunks published. */
+        private long _published;
+        /** Sum over publications of the resulting queue depth. */
+        private long _depthSum;
+        /** Largest queue depth seen. */
+        private int _maxDepth;
+        /** Number of times each stage had to wait. */
+        private long _producerWaits, _consumerWaits;
+    }
+
+    /** A single-producer, single-consumer queue of chunks. */
+    private static final class Ring {
+
+        /** A ring with room for at least CAPACITY chunks. */
+        Ring(int capacity) {
+            int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+            _slots = new Chunk[size];
+            _mask = size - 1;
+        }
+
+        /** Add CHUNK.  There is always room, since a link's chunks never
+         *  outnumber the slots of its rings. */
+        void put(Chunk chunk) {
+            long tail = _tail;
+            _slots[(int) tail & _mask] = chunk;
+            _tail = tail + 1;
+        }
+
+        /** Remove and return the oldest chunk, or null if there is none. */
+        Chunk poll() {
+            long head = _head;
+            if (head == _tail) {
+                return null;
+            }
+            int k = (int) head & _mask;
+            Chunk chunk = _slots[k];
+            _slots[k] = null;
+            _head = head + 1;
+            return chunk;
+        }
+
+        /** Return the number of chunks queued. */
+        int size() {
+            return (int) (_tail - _head);
+        }
+
+        /** Queued chunks, in slots _head .. _tail-1 (modulo the size). */
+        private final Chunk[] _slots;
+        /** Size of _slots less 1. */
+        private final int _mask;
+        /** Number of chunks ever removed (written only by the consumer)
+         *  and added (written only by the producer). */
+        private volatile long _head, _tail;
+    }
+
+    /** Wait briefly, for the SPINS'th time in a row: busy-wait at first,
+     *  then park for longer and longer, up to about a millisecond, so that an
+     *  idle stage does not compete with the busy ones. */
+    private static void pause(int spins) {
+        if (spins < SPIN_LIMIT) {
+            Thread.onSpinWait();
+        } else {
+            int shift = Math.min(spins - SPIN_LIMIT, MAX_PARK_SHIFT);
+            LockSupport.parkNanos(MIN_PARK_NANOS << shift);
+        }
+    }
+
+    /** Size of a chunk in bytes. */
+    static final int CHUNK_SIZE = 1 << 18;
+    /** Default number of chunks in each link. */
+    static final int DEFAULT_CHUNKS = 16;
+    /** Number of busy waits before a waiting stage starts to park. */
+    private static final int SPIN_LIMIT = 1000;
+    /** Length of the first park of a waiting stage. */
+    private static final long MIN_PARK_NANOS = 10_000;
+    /** Log2 of the ratio of the longest park to the shortest. */
+    private static final int MAX_PARK_SHIFT = 7;
+
+    /** Source of input. */
+    private final InputStream _in;
+    /** Destination of output. */
+    private final OutputStream _out;
+    /** Links from the reader stage and to the writer stage. */
+    private final Link _inLink, _outLink;
+    /** Threads of the reader and writer stages. */
+    private final Thread _reader, _writer;
+    /** Input stream seen by the converting stage. */
+    private final Source _source = new Source();
+    /** Output stream seen by the converting stage. */
+    private final Sink _sink = new Sink();
+}
@@ -0,0 +1,174 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** Tests of the reader/converter/writer pipeline.
+ *  @author Neha Kompella
+ */
+public class PipelineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /** Return the number of live pipeline stage threads, waiting up to
+     *  a few seconds for it to drop to zero. */
+    private static int stages() throws InterruptedException {
+        int result = 0;
+        for (int tries = 0; tries < 300; tries++) {
+            result = 0;
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (thread.isAlive()
+                    && thread.getName().startsWith("enigma-")) {
+                    result += 1;
+                }
+            }
+            if (result == 0) {
+                break;
+            }
+            Thread.sleep(10);
+        }
+        return result;
+    }
+
+    /** Copy all of IN to OUT in random amounts chosen using RANDOM,
+     *  returning the number of bytes copied. */
+    private static long copy(InputStream in, OutputStream out,
+                             Random random) throws IOException {
+        byte[] buffer = new byte[100000];
+        long total = 0;
+        while (true) {
+            int n = in.read(buffer, 0, 1 + random.nextInt(buffer.length));
+            if (n < 0) {
+                return total;
+            }
+            out.write(buffer, 0, n);
+            total += n;
+        }
+    }
+
+    @Test
+    public void checkCopy() throws IOException, InterruptedException {
+        Random random = new Random(36);
+        byte[] data = new byte[5 << 20];
+        random.nextBytes(data);
+        for (int chunks : new int[] { 1, 2, Pipeline.DEFAULT_CHUNKS }) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            Pipeline pipeline =
+                new Pipeline(new ByteArrayInputStream(data), bytes, chunks);
+            assertEquals(data.length,
+                         copy(pipeline.input(), pipeline.output(), random));
+            pipeline.input().close();
+            pipeline.output().close();
+            assertArrayEquals(data, bytes.toByteArray());
+            assertEquals(0, stages());
+        }
+    }
+
+    @Test
+    public void checkCheckpoint() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Pipeline pipeline =
+            new Pipeline(new ByteArrayInputStream(new byte[0]), bytes, 2);
+        int[] seen = new int[2];
+        OutputStream out = pipeline.output();
+        out.write(new byte[300000]);
+        pipeline.checkpoint(() -> seen[0] = bytes.size());
+        out.write(new byte[1000]);
+        pipeline.checkpoint(() -> seen[1] = bytes.size());
+        out.close();
+        assertEquals(300000, seen[0]);
+        assertEquals(301000, seen[1]);
+    }
+
+    @Test
+    public void checkAbort() throws IOException, InterruptedException {
+        boolean[] closed = new boolean[2];
+        InputStream endless = new InputStream() {
+            @Override
+            public int read() {
+                return 'A';
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                return len;
+            }
+
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        OutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed[1] = true;
+            }
+        };
+        Pipeline pipeline = new Pipeline(endless, out, 4);
+        byte[] buffer = new byte[70000];
+        assertEquals(buffer.length,
+                     pipeline.input().read(buffer, 0, buffer.length));
+        pipeline.output().write(buffer);
+        pipeline.abort();
+        assertEquals(0, stages());
+        assertTrue(closed[0]);
+        assertTrue(closed[1]);
+    }
+
+    @Test
+    public void checkWriteFailure() throws InterruptedException {
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+        Pipeline pipeline =
+            new Pipeline(new ByteArrayInputStream(new byte[0]), broken, 2);
+        try {
+            OutputStream out = pipeline.output();
+            for (int i = 0; i < 100; i++) {
+                out.write(new byte[100000]);
+            }
+            out.close();
+            fail("write failure not reported");
+        } catch (IOException excp) {
+            pipeline.abort();
+        }
+        assertEquals(0, stages());
+    }
+
+    @Test
+    public void checkMain() throws IOException {
+        String input = randomMessages(new Random(1036), 300, 60);
+        File conf = tempFile(".conf", NAVAL_CONFIG);
+        File in = tempFile(".inp", input);
+        File out = tempFile(".out", "");
+        runMain(conf.getPath(), in.getPath(), out.getPath());
+        String expected = contents(out);
+        for (String option : new String[] { "--pipeline", "--pipeline=1",
+                                            "--pipeline=3" }) {
+            runMain(option, conf.getPath(), in.getPath(), out.getPath());
+            assertEquals(option, expected, contents(out));
+        }
+        runMain("--pipeline", "--checkpoint=1", conf.getPath(),
+                in.getPath(), out.getPath());
+        assertEquals(expected, contents(out));
+    }
+
+}
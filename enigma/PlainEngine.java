@@ -0,0 +1,161 @@
+package enigma;
+
+/** The plain engine: a model of the machine as it was first written,
+ *  against which EngineCheck compares every other engine, the
+ *  reference engine included.  It shares no stepping or conversion code
+ *  with them.  At each keystroke it advances the slots one at a time,
+ *  then converts through the plugboard, each slot's Permutation.permute
+ *  from right to left, and invert from left to right, with the
+ *  position and ring setting of each slot applied by modular
+ *  arithmetic.  It is slow, and meant to be plainly right.
+ *  @author Neha Kompella
+ */
+final class PlainEngine implements EncryptionEngine {
+
+    /** An engine for configuration CONFIG. */
+    PlainEngine(MachineConfig config) {
+        _config = config;
+        _alphabet = config.alphabet();
+        _size = _alphabet.size();
+        _template = config.newMachine();
+        _slots = config.numRotors();
+        _fix = _slots - _template.numPawls();
+        _perms = new Permutation[_slots];
+        _notches = new boolean[_slots][];
+        _positions = new int[_slots];
+        _rings = new int[_slots];
+    }
+
+    @Override
+    public Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    @Override
+    public void setUp(String settings) {
+        setUp(new Settings(settings, _template, _alphabet), settings);
+    }
+
+    @Override
+    public void setUp(Settings parsed, String line) {
+        int[] rotors = parsed.rotors();
+        for (int i = 0; i < _slots; i++) {
+            _perms[i] = _config.permutation(rotors[i]);
+            _notches[i] = new boolean[_size];
+            String notches = _config.notches(rotors[i]);
+            if (notches != null) {
+                for (int k = 0; k < notches.length(); k++) {
+                    if (_alphabet.contains(notches.charAt(k))) {
+                        _notches[i][_alphabet.toInt(notches.charAt(k))] =
+                            true;
+                    }
+                }
+            }
+            _positions[i] = i == 0 ? 0 : parsed.positions()[i - 1];
+            _rings[i] = i == 0 ? 0 : parsed.rings()[i - 1];
+        }
+        _plugboard = parsed.plugboard();
+        _settings = line;
+        _parsed = parsed;
+        _step = 0;
+    }
+
+    @Override
+    public String settings() {
+        return _settings;
+    }
+
+    @Override
+    public Settings parsed() {
+        return _parsed;
+    }
+
+    @Override
+    public long step() {
+        return _step;
+    }
+
+    @Override
+    public void convert(int[] msg, int n) {
+        for (int i = 0; i < n; i++) {
+            advance();
+            msg[i] = translate(msg[i]);
+            _step += 1;
+        }
+    }
+
+    @Override
+    public void skip(long n) {
+        for (long i = 0; i < n; i++) {
+            advance();
+            _step += 1;
+        }
+    }
+
+    /** Advance the slots as for one keystroke: the rightmost slot, and
+     *  each moving slot other than the leftmost that is at a notch,
+     *  together with the slot to its left. */
+    private void advance() {
+        int last = _slots - 1;
+        boolean[] advance = new boolean[_slots];
+        for (int i = _fix + 1; i <= last; i++) {
+            if (_notches[i][_positions[i]]) {
+                advance[i] = advance[i - 1] = true;
+            }
+        }
+        advance[last] = true;
+        for (int i = _fix; i <= last; i++) {
+            if (advance[i]) {
+                _positions[i] = mod(_positions[i] + 1);
+            }
+        }
+    }
+
+    /** Return the conversion of C at the current positions. */
+    private int translate(int c) {
+        c = _plugboard.permute(c);
+        for (int i = _slots - 1; i >= 0; i--) {
+            int w = _positions[i] - _rings[i];
+            c = mod(_perms[i].permute(mod(c + w)) - w);
+        }
+        for (int i = 1; i < _slots; i++) {
+            int w = _positions[i] - _rings[i];
+            c = mod(_perms[i].invert(mod(c + w)) - w);
+        }
+        return _plugboard.permute(c);
+    }
+
+    /** Return X modulo the alphabet size. */
+    private int mod(int x) {
+        int r = x % _size;
+        return r < 0 ? r + _size : r;
+    }
+
+    /** The configuration. */
+    private final MachineConfig _config;
+    /** Alphabet of my messages. */
+    private final Alphabet _alphabet;
+    /** Alphabet size. */
+    private final int _size;
+    /** Machine used to parse settings lines. */
+    private final Machine _template;
+    /** Number of slots. */
+    private final int _slots;
+    /** Index of the leftmost moving slot. */
+    private final int _fix;
+    /** Permutation of the rotor in each slot. */
+    private final Permutation[] _perms;
+    /** _notches[I][P] is true iff the rotor in slot I has a notch at
+     *  P. */
+    private final boolean[][] _notches;
+    /** Position and ring setting of each slot (0 for the reflector). */
+    private final int[] _positions, _rings;
+    /** Plugboard. */
+    private Permutation _plugboard;
+    /** My last settings line, or null. */
+    private String _settings;
+    /** My last settings, or null. */
+    private Settings _parsed;
+    /** Characters converted or skipped since I was last set up. */
+    private long _step;
+}
@@ -0,0 +1,149 @@
+package enigma;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static enigma.EnigmaException.*;
+
+/** A sparse index of positions in an input file of messages, written
+ *  alongside the file while it is processed.  Each entry records the
+ *  byte offset of a line in the input, the number of characters of the
+ *  current message converted before that line, and the byte offset of
+ *  the settings line that began the message, which together are enough
+ *  to restore a machine to its state at that line.
+ *  @author Neha Kompella
+ */
+class PositionIndex {
+
+    /** An index entry for the line at byte INPUTOFFSET, MESSAGEOFFSET
+     *  characters into the message whose settings line is at byte
+     *  SETTINGSOFFSET (-1 if there has been no settings line). */
+    PositionIndex(long inputOffset, long messageOffset,
+                  long settingsOffset) {
+        _inputOffset = inputOffset;
+        _messageOffset = messageOffset;
+        _settingsOffset = settingsOffset;
+    }
+
+    /** Return the byte offset of my line. */
+    long inputOffset() {
+        return _inputOffset;
+    }
+
+    /** Return the number of message characters converted before my
+     *  line. */
+    long messageOffset() {
+        return _messageOffset;
+    }
+
+    /** Return the byte offset of my message's settings line, or -1. */
+    long settingsOffset() {
+        return _settingsOffset;
+    }
+
+    /** Return the last entry in index FILE whose line starts at or
+     *  before byte OFFSET of the input, or the entry for the start of
+     *  the input if there is none. */
+    static PositionIndex find(File file, long offset) {
+        try (RandomAccessFile index = new RandomAccessFile(file, "r")) {
+            if (index.length() < HEADER_SIZE || index.readInt() != MAGIC) {
+                throw error("%s is not an index file", file);
+            }
+            long lo = 0, hi = (index.length() - HEADER_SIZE) / ENTRY_SIZE;
+            PositionIndex result = new PositionIndex(0, 0, -1);
+            while (lo < hi) {
+                long mid = (lo + hi) >>> 1;
+                index.seek(HEADER_SIZE + mid * ENTRY_SIZE);
+                PositionIndex entry =
+                    new PositionIndex(index.readLong(), index.readLong(),
+                                      index.readLong());
+                if (entry.inputOffset() <= offset) {
+                    result = entry;
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return result;
+        } catch (IOException excp) {
+            throw error("could not read index %s", file);
+        }
+    }
+
+    /** Writes the entries of an index as an input file is processed. */
+    static class Writer {
+
+        /** A writer of an index in FILE with an entry at least every
+         *  SPACING converted characters. */
+        Writer(File file, long spacing) {
+            _file = file;
+            _spacing = spacing;
+            try {
+                _out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(file)));
+                _out.writeInt(MAGIC);
+                _out.writeInt(0);
+                _out.writeLong(spacing);
+            } catch (IOException excp) {
+                throw error("could not write index %s", file);
+            }
+        }
+
+        /** Note that N more characters have been converted.  Add an
+         *  entry for the line at byte INPUTOFFSET, which is
+         *  MESSAGEOFFSET characters into the message whose settings
+         *  line is at SETTINGSOFFSET, if enough characters have been
+         *  converted since the last entry. */
+        void advance(long n, long inputOffset, long messageOffset,
+                     long settingsOffset) {
+            _count += n;
+            if (_count < _spacing) {
+                return;
+            }
+            _count = 0;
+            try {
+                _out.writeLong(inputOffset);
+                _out.writeLong(messageOffset);
+                _out.writeLong(settingsOffset);
+            } catch (IOException excp) {
+                throw error("could not write index %s", _file);
+            }
+        }
+
+        /** Finish writing my index. */
+        void close() {
+            try {
+                _out.close();
+            } catch (IOException excp) {
+                throw error("could not write index %s", _file);
+            }
+        }
+
+        /** Index file. */
+        private final File _file;
+        /** Characters between entries. */
+        private final long _spacing;
+        /** Destination of entries. */
+        private final DataOutputStream _out;
+        /** Characters converted since the last entry. */
+        private long _count;
+    }
+
+    /** Identifies index files. */
+    private static final int MAGIC = 0x456e4931;
+    /** Bytes before the first entry. */
+    private static final int HEADER_SIZE = 16;
+    /** Bytes per entry. */
+    private static final int ENTRY_SIZE = 24;
+
+    /** Byte offset of the line. */
+    private final long _inputOffset;
+    /** Message characters converted before the line. */
+    private final long _messageOffset;
+    /** Byte offset of the message's settings line, or -1. */
+    private final long _settingsOffset;
+}
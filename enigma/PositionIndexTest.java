@@ -0,0 +1,112 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** Tests of position indices and of extracting byte ranges with them.
+ *  @author Neha Kompella
+ */
+public class PositionIndexTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    @Test
+    public void checkFind() throws IOException {
+        File file = tempFile(".idx", "");
+        PositionIndex.Writer index = new PositionIndex.Writer(file, 10);
+        index.advance(4, 100, 4, 0);
+        index.advance(8, 200, 12, 0);
+        index.advance(30, 300, 30, 250);
+        index.advance(9, 400, 39, 250);
+        index.close();
+        PositionIndex entry = PositionIndex.find(file, 99);
+        assertEquals(0, entry.inputOffset());
+        assertEquals(-1, entry.settingsOffset());
+        entry = PositionIndex.find(file, 299);
+        assertEquals(200, entry.inputOffset());
+        assertEquals(12, entry.messageOffset());
+        assertEquals(0, entry.settingsOffset());
+        entry = PositionIndex.find(file, 1000);
+        assertEquals(300, entry.inputOffset());
+        assertEquals(30, entry.messageOffset());
+        assertEquals(250, entry.settingsOffset());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkNotAnIndex() throws IOException {
+        PositionIndex.find(tempFile(".idx", "not an index at all"), 0);
+    }
+
+    /** Return what extracting bytes FROM to TO - 1 of INPUT should
+     *  write, given FULL, the output of converting all of INPUT. */
+    private static String expected(String input, String full, long from,
+                                   long to) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GroupWriter out = new GroupWriter(bytes, 0);
+        String[] lines = input.split("\n", -1);
+        String[] outLines = full.split(System.lineSeparator(), -1);
+        long offset = 0;
+        for (int i = 0, w = 0; i < lines.length && offset < to; i++) {
+            String line = lines[i];
+            long length = line.getBytes(LineReader.CHARSET).length;
+            if (!line.startsWith("*")) {
+                String converted = outLines[w].replace(" ", "");
+                w += 1;
+                if (offset + length >= from) {
+                    long at = offset;
+                    for (int j = 0, k = 0; j < line.length(); j++) {
+                        char c = line.charAt(j);
+                        if (c != ' ') {
+                            if (at >= from && at < to) {
+                                out.write(converted.charAt(k));
+                            }
+                            k += 1;
+                        }
+                        at += String.valueOf(c)
+                            .getBytes(LineReader.CHARSET).length;
+                    }
+                    out.endLine();
+                }
+            }
+            offset += length + 1;
+        }
+        out.flush();
+        return new String(bytes.toByteArray());
+    }
+
+    @Test
+    public void checkExtract() throws IOException {
+        Random random = new Random(30);
+        String input = randomMessages(random, 30, 12).replace('u', '\u00e9');
+        File conf = tempFile(".conf", NAVAL_CONFIG);
+        File in = tempFile(".inp", input);
+        new File(in.getPath() + ".idx").deleteOnExit();
+        File out = tempFile(".out", "");
+        runMain("--index=50", conf.getPath(), in.getPath(), out.getPath());
+        String full = contents(out);
+        long size = in.length();
+        for (int trial = 0; trial < 40; trial++) {
+            long from = (long) (random.nextDouble() * size);
+            long to = Math.min(size, from + random.nextInt(3000));
+            runMain("--extract=" + from + ":" + to, conf.getPath(),
+                    in.getPath(), out.getPath());
+            assertEquals(from + ":" + to, expected(input, full, from, to),
+                         contents(out));
+        }
+        runMain("--extract=0:" + size, conf.getPath(), in.getPath(),
+                out.getPath());
+        assertEquals(full, contents(out));
+    }
+
+}
@@ -0,0 +1,99 @@
+package enigma;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** The reference engine: a Machine.  Settings lines are parsed once and
+ *  retained, most recently used last, and messages sent under settings
+ *  lines that recur start from cached keystream tables.
+ *  @author Neha Kompella
+ */
+final class ReferenceEngine implements EncryptionEngine {
+
+    /** An engine for configuration CONFIG. */
+    ReferenceEngine(MachineConfig config) {
+        _alphabet = config.alphabet();
+        _machine = config.newMachine();
+    }
+
+    @Override
+    public Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    @Override
+    public void setUp(String settings) {
+        Settings parsed = _parsed.get(settings);
+        if (parsed == null) {
+            parsed = new Settings(settings, _machine, _alphabet);
+            _parsed.put(settings, parsed);
+        }
+        setUp(parsed, settings);
+    }
+
+    @Override
+    public void setUp(Settings parsed, String line) {
+        parsed.apply(_machine);
+        _settings = line;
+        _current = parsed;
+        _machine.useKeystream(_keystreams.get(line, _machine));
+    }
+
+    @Override
+    public String settings() {
+        return _settings;
+    }
+
+    @Override
+    public Settings parsed() {
+        return _current;
+    }
+
+    @Override
+    public long step() {
+        return _machine.step();
+    }
+
+    @Override
+    public void convert(int[] msg, int n) {
+        _machine.convert(msg, n);
+    }
+
+    @Override
+    public String convert(String msg) {
+        return _machine.convert(msg);
+    }
+
+    @Override
+    public void skip(long n) {
+        _machine.skip(n);
+    }
+
+    /** Largest number of parsed settings lines retained. */
+    private static final int SETTINGS_CACHE_SIZE = 4096;
+    /** Memory bound on cached keystream tables, in bytes. */
+    private static final long KEYSTREAM_BYTES = 32L << 20;
+    /** Number of keystrokes covered by each keystream table. */
+    private static final int KEYSTREAM_POSITIONS = 1024;
+
+    /** Alphabet of my machine. */
+    private final Alphabet _alphabet;
+    /** The machine doing the conversions. */
+    private final Machine _machine;
+    /** My last settings line, or null. */
+    private String _settings;
+    /** My last settings, or null. */
+    private Settings _current;
+    /** Parsed settings lines, most recently used last. */
+    private final LinkedHashMap<String, Settings> _parsed =
+        new LinkedHashMap<String, Settings>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,
+                                                Settings> eldest) {
+                return size() > SETTINGS_CACHE_SIZE;
+            }
+        };
+    /** Keystream tables for settings lines that recur. */
+    private final KeystreamCache _keystreams =
+        new KeystreamCache(KEYSTREAM_BYTES, KEYSTREAM_POSITIONS);
+}
@@ -11,6 +11,7 @@ class Rotor {
     Rotor(String name, Permutation perm) {
         _name = name;
         _permutation = perm;
+        _tables = RotorTables.of(perm);
         setting = 0;
     }
 
@@ -29,6 +30,11 @@ class Rotor {
         return _permutation;
     }
 
+    /** Return my conversions at each setting. */
+    RotorTables tables() {
+        return _tables;
+    }
+
     /** Return the size of my alphabet. */
     int size() {
         return _permutation.size();
@@ -51,26 +57,47 @@ class Rotor {
 
     /** Set setting() to POSN.  */
     void set(int posn) {
-        setting = _permutation.wrap(posn);
+        setting = posn >= 0 && posn < size() ? posn : _permutation.wrap(posn);
+        setOffset();
     }
 
     /** Set setting() to character CPOSN. */
     void set(char cposn) {
         setting = _permutation.wrap(cposn);
+        setOffset();
+    }
+
+    /** Return my ring setting: the position of my alphabet ring relative
+     *  to my wiring. */
+    int ring() {
+        return _ring;
+    }
+
+    /** Set ring() to RING. */
+    void setRing(int ring) {
+        _ring = _permutation.wrap(ring);
+        setOffset();
     }
 
     /** Return the conversion of P (an integer in the range 0..size()-1)
-     *  according to my permutation. */
+     *  according to my permutation, at my setting less my ring
+     *  setting. */
     int convertForward(int p) {
-        int toBePermuted = p + setting;
-        return _permutation.wrap(_permutation.permute(toBePermuted) - setting);
+        return _tables.forward(_offset, p);
     }
 
     /** Return the conversion of E (an integer in the range 0..size()-1)
-     *  according to the inverse of my permutation. */
+     *  according to the inverse of my permutation, at my setting less my
+     *  ring setting. */
     int convertBackward(int e) {
-        int toBeInverted = e + setting;
-        return _permutation.wrap(_permutation.invert(toBeInverted) - setting);
+        return _tables.backward(_offset, e);
+    }
+
+    /** Recompute _offset from my setting and ring setting, both of
+     *  which are in range, without division. */
+    private void setOffset() {
+        int offset = setting - _ring;
+        _offset = offset < 0 ? offset + size() : offset;
     }
 
     /** Returns true iff I am positioned to allow the rotor to my left
@@ -94,7 +121,17 @@ class Rotor {
     /** The permutation implemnted by this rotor in its 0 position. */
     private Permutation _permutation;
 
+    /** My conversions at each setting. */
+    private final RotorTables _tables;
+
     /** The setting of the rotor in its 0 position. */
     private int setting;
 
+    /** My ring setting. */
+    private int _ring;
+
+    /** My setting less my ring setting, modulo size(): the row of my
+     *  tables in use. */
+    private int _offset;
+
 }
@@ -0,0 +1,374 @@
+package enigma;
+
+import java.util.Arrays;
+
+/** The rotors in the slots of a machine, flattened into primitive arrays
+ *  so that converting a character touches a few contiguous tables and
+ *  makes no virtual calls.  All slots' shifted tables live in one int
+ *  block, with the plugboard fused into the entry and exit tables of
+ *  the rightmost rotor and each slot's ring setting folded into the
+ *  order of its rows; the positions of the slots and their notches
+ *  are held in parallel arrays.  Alphabets too large to tabulate keep
+ *  one unshifted permutation per slot instead, and shift on the fly.
+ *  @author Neha Kompella
+ */
+final class RotorBank {
+
+    /** A bank of NUMROTORS slots, the rightmost PAWLS of which move,
+     *  over an alphabet of SIZE characters. */
+    RotorBank(int size, int numRotors, int pawls) {
+        _size = size;
+        _slots = numRotors;
+        _fix = numRotors - pawls;
+        _tabulated = size <= MAX_TABULATED;
+        _positions = new int[numRotors];
+        _rings = new int[numRotors];
+        _forwardRow = new int[numRotors];
+        _backwardRow = new int[numRotors];
+        _forwardBase = new int[numRotors];
+        _backwardBase = new int[numRotors];
+        _words = (size + WORD - 1) / WORD;
+        _notches = new long[numRotors * _words];
+        _toNotch = new int[numRotors * size];
+        _marked = new boolean[numRotors];
+        _toAdvance = new int[2 * numRotors + 1];
+        _notched = new int[numRotors];
+        _notchedIndex = new int[numRotors];
+        Arrays.fill(_notchedIndex, -1);
+        _perms = new int[numRotors][];
+        _invs = new int[numRotors][];
+        _rotors = new Rotor[numRotors];
+        _plugboard = new int[size];
+        for (int i = 0; i < size; i++) {
+            _plugboard[i] = i;
+        }
+        int base = 0;
+        for (int i = 0; i < numRotors; i++) {
+            _forwardBase[i] = base;
+            base += i == 0 ? size : size * size;
+        }
+        for (int i = 1; i < numRotors; i++) {
+            _backwardBase[i] = base;
+            base += size * size;
+        }
+        _tables = _tabulated ? new int[base] : null;
+    }
+
+    /** Return true iff my slots hold ROTORS, in order. */
+    boolean holds(Rotor[] rotors) {
+        for (int i = 0; i < _slots; i++) {
+            if (_rotors[i] != rotors[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Put ROTORS, reflector first, in my slots, all at position 0. */
+    void load(Rotor[] rotors) {
+        int n = _size;
+        for (int i = 0; i < _slots; i++) {
+            Rotor rotor = rotors[i];
+            _rotors[i] = rotor;
+            _perms[i] = rotor.permutation().table();
+            _invs[i] = rotor.permutation().inverseTable();
+            for (int w = 0; w < _words; w++) {
+                _notches[i * _words + w] = 0;
+            }
+            for (int p = 0; p < n; p++) {
+                int d = Integer.MAX_VALUE;
+                if (rotor instanceof MovingRotor) {
+                    MovingRotor moving = (MovingRotor) rotor;
+                    d = moving.distanceToNotch(p);
+                    if (moving.notchAt(p)) {
+                        _notches[i * _words + p / WORD] |= 1L << p;
+                    }
+                }
+                _toNotch[i * n + p] = d;
+            }
+            tabulate(i);
+            _positions[i] = 0;
+        }
+        for (int i = 0; i < _slots; i++) {
+            setRows(i);
+            track(i);
+        }
+    }
+
+    /** Return true iff my plugboard is PLUGBOARD. */
+    boolean plugged(int[] plugboard) {
+        return Arrays.equals(_plugboard, plugboard);
+    }
+
+    /** Set my plugboard to PLUGBOARD, a permutation table. */
+    void plug(int[] plugboard) {
+        System.arraycopy(plugboard, 0, _plugboard, 0, _size);
+        if (_rotors[_slots - 1] != null) {
+            tabulate(_slots - 1);
+        }
+    }
+
+    /** Return the ring setting of slot I. */
+    int ring(int i) {
+        return _rings[i];
+    }
+
+    /** Set the ring setting of slot I, other than the reflector's, to
+     *  RING, where 0 <= RING < size.  Ring settings are kept when other
+     *  rotors are loaded. */
+    void setRing(int i, int ring) {
+        if (_rings[i] == ring) {
+            return;
+        }
+        _rings[i] = ring;
+        if (_rotors[i] != null) {
+            tabulate(i);
+        }
+    }
+
+    /** Fill in the tables of slot I.  Row S is the rotor's conversion at
+     *  wiring offset S less the slot's ring setting, so that the row for
+     *  a position is found the same way whatever the ring setting.  The
+     *  plugboard is fused into the tables of the rightmost slot. */
+    private void tabulate(int i) {
+        if (!_tabulated) {
+            return;
+        }
+        int n = _size;
+        boolean last = i == _slots - 1;
+        RotorTables tables = _rotors[i].tables();
+        int rows = i == 0 ? 1 : n;
+        for (int s = 0; s < rows; s++) {
+            int w = s - _rings[i];
+            if (w < 0) {
+                w += n;
+            }
+            int fwd = _forwardBase[i] + s * n;
+            int bwd = _backwardBase[i] + s * n;
+            for (int p = 0; p < n; p++) {
+                if (last) {
+                    _tables[fwd + p] = tables.forward(w, _plugboard[p]);
+                    _tables[bwd + p] = _plugboard[tables.backward(w, p)];
+                } else {
+                    _tables[fwd + p] = tables.forward(w, p);
+                    if (i > 0) {
+                        _tables[bwd + p] = tables.backward(w, p);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Return the position of slot I. */
+    int position(int i) {
+        return _positions[i];
+    }
+
+    /** Set the position of slot I to POSN, where 0 <= POSN < size. */
+    void setPosition(int i, int posn) {
+        _positions[i] = posn;
+        setRows(i);
+        track(i);
+    }
+
+    /** Bring the membership of slot I in _notched up to date with its
+     *  position. */
+    private void track(int i) {
+        if (i <= _fix) {
+            return;
+        }
+        boolean at = atNotch(i);
+        int index = _notchedIndex[i];
+        if (at && index < 0) {
+            _notchedIndex[i] = _notchedCount;
+            _notched[_notchedCount] = i;
+            _notchedCount += 1;
+        } else if (!at && index >= 0) {
+            _notchedCount -= 1;
+            int moved = _notched[_notchedCount];
+            _notched[index] = moved;
+            _notchedIndex[moved] = index;
+            _notchedIndex[i] = -1;
+        }
+    }
+
+    /** Recompute the table rows used by slot I at its position. */
+    private void setRows(int i) {
+        int row = _positions[i] * _size;
+        _forwardRow[i] = _forwardBase[i] + (i == 0 ? 0 : row);
+        _backwardRow[i] = _backwardBase[i] + row;
+    }
+
+    /** Return true iff slot I is at one of its notches. */
+    private boolean atNotch(int i) {
+        int p = _positions[i];
+        return (_notches[i * _words + p / WORD] & (1L << p)) != 0;
+    }
+
+    /** Advance slot I by one position. */
+    private void advance(int i) {
+        int p = _positions[i] + 1;
+        if (p == _size) {
+            p = 0;
+        }
+        _positions[i] = p;
+        int row = p * _size;
+        _forwardRow[i] = _forwardBase[i] + row;
+        _backwardRow[i] = _backwardBase[i] + row;
+        if (_notchedIndex[i] >= 0 || atNotch(i)) {
+            track(i);
+        }
+    }
+
+    /** Advance my moving slots as for a single keystroke: the rightmost
+     *  always advances, and each moving slot other than the leftmost that
+     *  is at a notch advances together with its left neighbor (so that a
+     *  slot at its notch steps twice in a row).  Only the slots currently
+     *  at a notch, which are tracked as they move, are examined, so the
+     *  cost does not grow with the number of pawls. */
+    void step() {
+        int last = _slots - 1;
+        int k = _notchedCount;
+        if (k == 0) {
+            advance(last);
+            return;
+        }
+        int m = 0;
+        for (int t = 0; t < k; t++) {
+            int j = _notched[t];
+            m = mark(j, m);
+            m = mark(j - 1, m);
+        }
+        m = mark(last, m);
+        for (int t = 0; t < m; t++) {
+            int j = _toAdvance[t];
+            _marked[j] = false;
+            advance(j);
+        }
+    }
+
+    /** Add slot J to the first M slots to advance, unless it is already
+     *  among them, and return the new number of slots. */
+    private int mark(int j, int m) {
+        if (!_marked[j]) {
+            _marked[j] = true;
+            _toAdvance[m] = j;
+            m += 1;
+        }
+        return m;
+    }
+
+    /** Return the number of upcoming keystrokes that will advance only
+     *  the rightmost slot. */
+    int simpleRun() {
+        int last = _slots - 1;
+        if (_fix == last) {
+            return Integer.MAX_VALUE;
+        }
+        if (_notchedCount > (_notchedIndex[last] >= 0 ? 1 : 0)) {
+            return 0;
+        }
+        return _toNotch[last * _size + _positions[last]];
+    }
+
+    /** Advance the rightmost slot K times, where K <= simpleRun(). */
+    void advanceFast(long k) {
+        int last = _slots - 1;
+        setPosition(last, (int) ((_positions[last] + k) % _size));
+    }
+
+    /** Return the conversion of C through the plugboard, the rotors and
+     *  the reflector and back, at the current positions. */
+    int translate(int c) {
+        if (!_tabulated) {
+            return translateLarge(c);
+        }
+        int[] tables = _tables;
+        int[] forward = _forwardRow;
+        int[] backward = _backwardRow;
+        for (int i = _slots - 1; i >= 0; i--) {
+            c = tables[forward[i] + c];
+        }
+        for (int i = 1; i < _slots; i++) {
+            c = tables[backward[i] + c];
+        }
+        return c;
+    }
+
+    /** Return translate(C) for an alphabet too large to tabulate. */
+    private int translateLarge(int c) {
+        c = _plugboard[c];
+        for (int i = _slots - 1; i >= 0; i--) {
+            c = shift(_perms[i], wiring(i), c);
+        }
+        for (int i = 1; i < _slots; i++) {
+            c = shift(_invs[i], wiring(i), c);
+        }
+        return _plugboard[c];
+    }
+
+    /** Return the wiring offset of slot I: its position less its ring
+     *  setting, modulo the size. */
+    private int wiring(int i) {
+        int w = _positions[i] - _rings[i];
+        return w < 0 ? w + _size : w;
+    }
+
+    /** Return PERM[P + S] - S, modulo the size, for 0 <= P, S < size. */
+    private int shift(int[] perm, int s, int p) {
+        int q = p + s;
+        if (q >= _size) {
+            q -= _size;
+        }
+        int r = perm[q] - s;
+        return r < 0 ? r + _size : r;
+    }
+
+    /** Largest alphabet whose shifted tables are copied into a bank. */
+    static final int MAX_TABULATED = 256;
+    /** Bits in a notch-mask word. */
+    private static final int WORD = 64;
+
+    /** Alphabet size. */
+    private final int _size;
+    /** Number of slots. */
+    private final int _slots;
+    /** Index of the leftmost moving slot. */
+    private final int _fix;
+    /** True iff _tables holds shifted tables. */
+    private final boolean _tabulated;
+    /** All shifted tables: the reflector's, then the forward tables of
+     *  slots 1 .. _slots-1, then their backward tables. */
+    private final int[] _tables;
+    /** Start of each slot's forward and backward tables in _tables. */
+    private final int[] _forwardBase, _backwardBase;
+    /** Start of the row of each slot's tables for its position. */
+    private final int[] _forwardRow, _backwardRow;
+    /** Position of each slot. */
+    private final int[] _positions;
+    /** Ring setting of each slot. */
+    private final int[] _rings;
+    /** Notch bitmask of each slot, _words words per slot. */
+    private final long[] _notches;
+    /** Words per slot in _notches. */
+    private final int _words;
+    /** Distance to the next notch of each slot from each position. */
+    private final int[] _toNotch;
+    /** Slots to advance in the current step. */
+    private final boolean[] _marked;
+    /** The slots marked in _marked. */
+    private final int[] _toAdvance;
+    /** The moving slots, other than the leftmost, that are at a notch,
+     *  in no particular order. */
+    private final int[] _notched;
+    /** Number of slots in _notched. */
+    private int _notchedCount;
+    /** Index of each slot in _notched, or -1. */
+    private final int[] _notchedIndex;
+    /** Unshifted permutations and inverses of each slot. */
+    private final int[][] _perms, _invs;
+    /** Rotor in each slot. */
+    private final Rotor[] _rotors;
+    /** Plugboard table. */
+    private final int[] _plugboard;
+}
@@ -0,0 +1,303 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** Tests of the flattened rotor bank, and of the machine converting
+ *  through it, against a model that steps and converts as the original
+ *  Machine did: one rotor at a time, through Permutation.permute and
+ *  invert with modular arithmetic.
+ *  @author Neha Kompella
+ */
+public class RotorBankTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** Return X modulo N, in the range 0 .. N-1. */
+    private static int mod(int x, int n) {
+        return ((x % n) + n) % n;
+    }
+
+    /** A random machine and the model of it. */
+    private static final class Model {
+
+        /** A random machine of NUMROTORS slots and PAWLS pawls over an
+         *  alphabet of SIZE characters, chosen using RANDOM.  Notches are
+         *  dense, so that slots often step together. */
+        Model(int size, int numRotors, int pawls, Random random) {
+            Alphabet alpha = alphabet(size);
+            _size = size;
+            _fix = numRotors - pawls;
+            _perms = new Permutation[numRotors];
+            _notches = new boolean[numRotors][size];
+            _positions = new int[numRotors];
+            _rings = new int[numRotors];
+            _rotors = new Rotor[numRotors];
+            for (int i = 0; i < numRotors; i++) {
+                _perms[i] = randomPermutation(alpha, random);
+                if (i == 0) {
+                    _rotors[i] = new Reflector("R", _perms[i]);
+                } else if (i < _fix) {
+                    _rotors[i] = new FixedRotor("F" + i, _perms[i]);
+                } else {
+                    StringBuilder notches = new StringBuilder();
+                    int density = random.nextInt(4);
+                    for (int p = 0; p < size; p++) {
+                        if (density > 0 && random.nextInt(4 * density) == 0) {
+                            _notches[i][p] = true;
+                            notches.append(alpha.toChar(p));
+                        }
+                    }
+                    _rotors[i] =
+                        new MovingRotor("M" + i, _perms[i],
+                                        notches.toString());
+                }
+                if (i > 0) {
+                    _positions[i] = random.nextInt(size);
+                    _rings[i] = random.nextInt(size);
+                }
+            }
+            int[] plug = new int[size];
+            for (int p = 0; p < size; p++) {
+                plug[p] = p;
+            }
+            for (int k = random.nextInt(size / 2 + 1); k > 0; k--) {
+                int a = random.nextInt(size), b = random.nextInt(size);
+                if (plug[a] == a && plug[b] == b) {
+                    plug[a] = b;
+                    plug[b] = a;
+                }
+            }
+            _plugboard = new Permutation(plug, alpha);
+            _alphabet = alpha;
+        }
+
+        /** Advance the slots as for one keystroke. */
+        void step() {
+            int last = _positions.length - 1;
+            boolean[] advance = new boolean[_positions.length];
+            for (int i = _fix + 1; i <= last; i++) {
+                if (_notches[i][_positions[i]]) {
+                    advance[i] = advance[i - 1] = true;
+                }
+            }
+            advance[last] = true;
+            for (int i = _fix; i <= last; i++) {
+                if (advance[i]) {
+                    _positions[i] = mod(_positions[i] + 1, _size);
+                }
+            }
+        }
+
+        /** Return the conversion of C at the current positions. */
+        int translate(int c) {
+            c = _plugboard.permute(c);
+            for (int i = _perms.length - 1; i >= 0; i--) {
+                int w = _positions[i] - _rings[i];
+                c = mod(_perms[i].permute(mod(c + w, _size)) - w, _size);
+            }
+            for (int i = 1; i < _perms.length; i++) {
+                int w = _positions[i] - _rings[i];
+                c = mod(_perms[i].invert(mod(c + w, _size)) - w, _size);
+            }
+            return _plugboard.permute(c);
+        }
+
+        /** Return a bank holding my rotors at my positions. */
+        RotorBank bank() {
+            RotorBank bank =
+                new RotorBank(_size, _positions.length,
+                              _positions.length - _fix);
+            bank.load(_rotors);
+            bank.plug(_plugboard.table());
+            for (int i = 1; i < _positions.length; i++) {
+                bank.setRing(i, _rings[i]);
+                bank.setPosition(i, _positions[i]);
+            }
+            return bank;
+        }
+
+        /** Return a machine holding my rotors at my positions. */
+        Machine machine() {
+            ArrayList<Rotor> rotors = new ArrayList<>();
+            int[] slots = new int[_rotors.length];
+            for (int i = 0; i < _rotors.length; i++) {
+                rotors.add(_rotors[i]);
+                slots[i] = i;
+            }
+            Machine m = new Machine(_alphabet, _rotors.length,
+                                    _rotors.length - _fix, rotors);
+            m.insertRotors(slots);
+            int[] rest = new int[_rotors.length - 1];
+            for (int i = 0; i < rest.length; i++) {
+                rest[i] = _rings[i + 1];
+            }
+            m.setRings(rest);
+            for (int i = 0; i < rest.length; i++) {
+                rest[i] = _positions[i + 1];
+            }
+            m.setRotors(rest);
+            m.setPlugboard(_plugboard);
+            return m;
+        }
+
+        /** Set the position of slot I to POSN. */
+        void setPosition(int i, int posn) {
+            _positions[i] = posn;
+        }
+
+        /** Return the current positions, one per slot. */
+        int[] positions() {
+            return _positions.clone();
+        }
+
+        /** Alphabet size. */
+        private final int _size;
+        /** Index of the leftmost moving slot. */
+        private final int _fix;
+        /** Permutation of each slot. */
+        private final Permutation[] _perms;
+        /** Notches of each slot. */
+        private final boolean[][] _notches;
+        /** Position and ring setting of each slot. */
+        private final int[] _positions, _rings;
+        /** Rotor in each slot. */
+        private final Rotor[] _rotors;
+        /** Plugboard. */
+        private final Permutation _plugboard;
+        /** Alphabet. */
+        private final Alphabet _alphabet;
+    }
+
+    /** Return the positions of all slots of BANK, which has N. */
+    private static int[] positions(RotorBank bank, int n) {
+        int[] result = new int[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = bank.position(i);
+        }
+        return result;
+    }
+
+    /** Return a random model, chosen using RANDOM, over an alphabet of
+     *  SIZE characters. */
+    private static Model randomModel(int size, Random random) {
+        int numRotors = 2 + random.nextInt(11);
+        return new Model(size, numRotors, 1 + random.nextInt(numRotors - 1),
+                         random);
+    }
+
+    @Test
+    public void checkSteppingAndTranslation() {
+        Random random = new Random(34);
+        for (int trial = 0; trial < 60; trial++) {
+            int size = trial % 3 == 2 ? 300 : 2 + random.nextInt(40);
+            Model model = randomModel(size, random);
+            int n = model.positions().length;
+            RotorBank bank = model.bank();
+            for (int k = 0; k < 500; k++) {
+                int run = bank.simpleRun();
+                model.step();
+                bank.step();
+                assertArrayEquals(model.positions(), positions(bank, n));
+                int c = random.nextInt(size);
+                assertEquals(model.translate(c), bank.translate(c));
+                if (run > 1 && run < Integer.MAX_VALUE) {
+                    int[] before = model.positions();
+                    model.step();
+                    int[] after = model.positions();
+                    for (int i = 0; i < n - 1; i++) {
+                        assertEquals(before[i], after[i]);
+                    }
+                    bank.step();
+                }
+                if (random.nextInt(50) == 0) {
+                    int i = 1 + random.nextInt(n - 1);
+                    int p = random.nextInt(size);
+                    model.setPosition(i, p);
+                    bank.setPosition(i, p);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void checkSimpleRuns() {
+        Random random = new Random(35);
+        for (int trial = 0; trial < 60; trial++) {
+            Model model = randomModel(2 + random.nextInt(30), random);
+            int n = model.positions().length;
+            RotorBank bank = model.bank();
+            for (int k = 0; k < 200; k++) {
+                int run = (int) Math.min(bank.simpleRun(), 100);
+                int[] start = model.positions();
+                for (int t = 0; t < run; t++) {
+                    model.step();
+                    int[] now = model.positions();
+                    for (int i = 0; i < n - 1; i++) {
+                        assertEquals(start[i], now[i]);
+                    }
+                }
+                bank.advanceFast(run);
+                assertArrayEquals(model.positions(), positions(bank, n));
+                model.step();
+                bank.step();
+                assertArrayEquals(model.positions(), positions(bank, n));
+            }
+        }
+    }
+
+    @Test
+    public void checkManyPawls() {
+        Random random = new Random(3035);
+        for (int pawls : new int[] { 16, 64 }) {
+            Model model = new Model(26, pawls + 1, pawls, random);
+            RotorBank bank = model.bank();
+            for (int k = 0; k < 3000; k++) {
+                model.step();
+                bank.step();
+                assertArrayEquals(model.positions(),
+                                  positions(bank, pawls + 1));
+            }
+        }
+    }
+
+    @Test
+    public void checkMachine() {
+        Random random = new Random(36);
+        for (int trial = 0; trial < 40; trial++) {
+            int size = trial % 4 == 3 ? 300 : 2 + random.nextInt(40);
+            Model model = randomModel(size, random);
+            Machine m = model.machine();
+            int[] msg = new int[1 + random.nextInt(2000)];
+            int[] expected = new int[msg.length];
+            for (int i = 0; i < msg.length; i++) {
+                msg[i] = random.nextInt(size);
+                model.step();
+                expected[i] = model.translate(msg[i]);
+            }
+            m.convert(msg, msg.length);
+            assertArrayEquals(expected, msg);
+            int skip = random.nextInt(5000);
+            m.skip(skip);
+            for (int i = 0; i < skip; i++) {
+                model.step();
+            }
+            int[] positions = m.positions();
+            positions[0] = 0;
+            assertArrayEquals(model.positions(), positions);
+            int c = random.nextInt(size);
+            model.step();
+            assertEquals(model.translate(c), m.convert(c));
+        }
+    }
+
+}
@@ -0,0 +1,236 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** The available rotors of a configuration.  Each rotor is described
+ *  by its name, its kind, its notches and the position of its cycles in
+ *  the text of its configuration file, and is compiled (its Permutation
+ *  and RotorTables built) only when first asked for, so that reading a
+ *  configuration with a great many rotors costs little more than
+ *  scanning it.  Compiled rotors are retained, most recently used last,
+ *  up to a bound; rotors supplied already built are retained for good.
+ *  Safe for use by several threads at once.
+ *  @author Neha Kompella
+ */
+final class RotorCatalogue {
+
+    /** Kinds of rotor, as used in configuration fingerprints. */
+    static final int FIXED = 0, MOVING = 1, REFLECTOR = 2;
+
+    /** A catalogue of rotors of alphabet ALPHA whose cycles are in
+     *  TEXT, which I do not change.  Rotors are added by add. */
+    RotorCatalogue(Alphabet alpha, byte[] text) {
+        _alphabet = alpha;
+        _text = text;
+    }
+
+    /** A catalogue of the built rotors ROTORS. */
+    RotorCatalogue(Collection<Rotor> rotors) {
+        this(null, null);
+        for (Rotor rotor : rotors) {
+            int kind =
+                rotor.reflecting() ? REFLECTOR
+                : rotor.rotates() ? MOVING : FIXED;
+            add(new Descriptor(rotor.name(), kind, null, 0, 0, rotor));
+        }
+    }
+
+    /** Add a rotor named NAME of kind KIND, with notches NOTCHES if it
+     *  is a moving rotor, whose cycles are the characters of my text
+     *  from START to END, less whitespace. */
+    void add(String name, int kind, String notches, int start, int end) {
+        add(new Descriptor(name, kind, notches, start, end, null));
+    }
+
+    /** Return the number of rotors. */
+    int size() {
+        return _rotors.size();
+    }
+
+    /** Return the number of the rotor named NAME (in any case), or -1
+     *  if there is none.  Where names are repeated, the last rotor of
+     *  the name is the one found. */
+    int index(String name) {
+        Integer index = _index.get(name.toUpperCase());
+        return index == null ? -1 : index;
+    }
+
+    /** Return the name of rotor number INDEX. */
+    String name(int index) {
+        return _rotors.get(index)._name;
+    }
+
+    /** Return the kind of rotor number INDEX, or -1 if INDEX is -1. */
+    int kind(int index) {
+        return index < 0 ? -1 : _rotors.get(index)._kind;
+    }
+
+    /** Return the characters naming the notch positions of rotor
+     *  number INDEX, or null if it is not a moving rotor, without
+     *  compiling it. */
+    String notches(int index) {
+        Descriptor rotor = _rotors.get(index);
+        if (rotor._built == null) {
+            return rotor._kind == MOVING ? rotor._notches : null;
+        }
+        return rotor._built instanceof MovingRotor
+            ? ((MovingRotor) rotor._built).notches() : null;
+    }
+
+    /** Return rotor number INDEX, compiling it if it has not been
+     *  compiled or has since been evicted. */
+    synchronized Rotor rotor(int index) {
+        Descriptor rotor = _rotors.get(index);
+        if (rotor._built != null) {
+            return rotor._built;
+        }
+        Rotor result = _compiled.get(index);
+        if (result == null) {
+            Permutation perm = new Permutation(cycles(rotor), _alphabet);
+            switch (rotor._kind) {
+            case MOVING:
+                result =
+                    new MovingRotor(rotor._name, perm, rotor._notches);
+                break;
+            case REFLECTOR:
+                result = new Reflector(rotor._name, perm);
+                break;
+            default:
+                result = new FixedRotor(rotor._name, perm);
+                break;
+            }
+            _compiled.put(index, result);
+        }
+        return result;
+    }
+
+    /** Return the permutation of rotor number INDEX, without building
+     *  its tables if it has not been compiled. */
+    Permutation permutation(int index) {
+        Descriptor rotor = _rotors.get(index);
+        if (rotor._built != null) {
+            return rotor._built.permutation();
+        }
+        synchronized (this) {
+            Rotor result = _compiled.get(index);
+            if (result != null) {
+                return result.permutation();
+            }
+        }
+        return new Permutation(cycles(rotor), _alphabet);
+    }
+
+    /** Return the digest H updated (by MachineConfig.mix) with the
+     *  name, kind, notches and wiring of each of my rotors, without
+     *  compiling any.  A rotor read from text contributes its notches
+     *  and its cycles as written, less whitespace; one supplied built
+     *  contributes its permutation and the positions of its notches. */
+    long fingerprint(long h) {
+        for (Descriptor rotor : _rotors) {
+            for (int i = 0; i < rotor._name.length(); i++) {
+                h = MachineConfig.mix(h, rotor._name.charAt(i));
+            }
+            h = MachineConfig.mix(h, -1);
+            h = MachineConfig.mix(h, rotor._kind);
+            if (rotor._built == null) {
+                if (rotor._notches != null) {
+                    for (int i = 0; i < rotor._notches.length(); i++) {
+                        h = MachineConfig.mix(h, rotor._notches.charAt(i));
+                    }
+                }
+                h = MachineConfig.mix(h, -1);
+                for (int k = rotor._start; k < rotor._end; k++) {
+                    if (!Main.space(_text[k])) {
+                        h = MachineConfig.mix(h, _text[k]);
+                    }
+                }
+            } else {
+                if (rotor._built instanceof MovingRotor) {
+                    MovingRotor moving = (MovingRotor) rotor._built;
+                    for (int p = 0; p < moving.size(); p++) {
+                        h = MachineConfig.mix(h, moving.notchAt(p) ? 1 : 0);
+                    }
+                }
+                h = MachineConfig.mix(h, -1);
+                for (int p : rotor._built.permutation().table()) {
+                    h = MachineConfig.mix(h, p);
+                }
+            }
+            h = MachineConfig.mix(h, -1);
+        }
+        return h;
+    }
+
+    /** Return the number of rotors compiled and retained, not counting
+     *  those supplied already built. */
+    synchronized int numCompiled() {
+        return _compiled.size();
+    }
+
+    /** Add ROTOR to my rotors. */
+    private void add(Descriptor rotor) {
+        _index.put(rotor._name.toUpperCase(), _rotors.size());
+        _rotors.add(rotor);
+    }
+
+    /** Return the cycles of ROTOR, less whitespace. */
+    private String cycles(Descriptor rotor) {
+        String text =
+            new String(_text, rotor._start, rotor._end - rotor._start);
+        return text.replaceAll("\\s+", "");
+    }
+
+    /** The description of a rotor. */
+    private static final class Descriptor {
+
+        /** A rotor named NAME of kind KIND, with notches NOTCHES, whose
+         *  cycles are in the text from START to END, or which is BUILT
+         *  if that is not null. */
+        Descriptor(String name, int kind, String notches, int start,
+                   int end, Rotor built) {
+            _name = name;
+            _kind = kind;
+            _notches = notches;
+            _start = start;
+            _end = end;
+            _built = built;
+        }
+
+        /** Name of the rotor. */
+        final String _name;
+        /** Kind of the rotor. */
+        final int _kind;
+        /** Notches of a moving rotor, or null. */
+        final String _notches;
+        /** Bounds of the cycles in the text. */
+        final int _start, _end;
+        /** The rotor, if it was supplied built, or null. */
+        final Rotor _built;
+    }
+
+    /** Largest number of compiled rotors retained. */
+    static final int MAX_COMPILED = 256;
+
+    /** Alphabet of the rotors, or null if they were all supplied
+     *  built. */
+    private final Alphabet _alphabet;
+    /** Text of the configuration file describing the rotors. */
+    private final byte[] _text;
+    /** The rotors, in the order added. */
+    private final ArrayList<Descriptor> _rotors = new ArrayList<>();
+    /** Number of each rotor by its name in upper case. */
+    private final HashMap<String, Integer> _index = new HashMap<>();
+    /** Compiled rotors by number, most recently used last. */
+    private final LinkedHashMap<Integer, Rotor> _compiled =
+        new LinkedHashMap<Integer, Rotor>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer,
+                                                Rotor> eldest) {
+                return size() > MAX_COMPILED;
+            }
+        };
+}
@@ -0,0 +1,81 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** Tests of the rotor catalogue and of its lazy compilation of rotors.
+ *  @author Neha Kompella
+ */
+public class RotorCatalogueTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    @Test
+    public void checkLazyRotors() {
+        String text =
+            "ABCDEF 4 2 I MA (ABC)\n  (DEF) II MB (AD)(BCEF) III MC (AFCB)"
+            + "(DE) N N (ABCDEF) R R (AB)(CD)(EF) S R (AC)(BE)(DF)";
+        MachineConfig lazy = Main.parseConfig(text);
+        assertEquals(6, lazy.numAvailable());
+        long print = lazy.fingerprint();
+        assertEquals(0, lazy.catalogue().numCompiled());
+        assertEquals(print,
+                     Main.parseConfig(text.replace(")(", ") (")).fingerprint());
+        assertTrue(print != Main.parseConfig(text.replace("(AFCB)", "(AFBC)"))
+                   .fingerprint());
+        Machine m6 = lazy.newMachine();
+        m6.insertRotors(new String[] { "r", "N", "I", "II" });
+        assertEquals(4, lazy.catalogue().numCompiled());
+        MachineConfig built = Main.parseConfig(text);
+        built = new MachineConfig(built.alphabet(), 4, 2, built.rotors());
+        Machine b6 = built.newMachine();
+        b6.insertRotors(new String[] { "R", "N", "I", "II" });
+        m6.setRotors("BCD");
+        b6.setRotors("BCD");
+        assertEquals(b6.convert("ABCDEFFEDCBAACEBDF"),
+                     m6.convert("ABCDEFFEDCBAACEBDF"));
+    }
+
+    @Test
+    public void checkLookup() {
+        MachineConfig config = Main.parseConfig(
+            "ABCDEF 4 2 I MAC (ABC)(DEF) Beta N (ABCDEF) R R (AB)(CD)(EF)");
+        RotorCatalogue rotors = config.catalogue();
+        assertEquals(3, rotors.size());
+        assertEquals(1, rotors.index("BETA"));
+        assertEquals(-1, rotors.index("II"));
+        assertEquals(-1, rotors.kind(-1));
+        assertEquals(RotorCatalogue.MOVING, rotors.kind(0));
+        assertEquals(RotorCatalogue.FIXED, rotors.kind(1));
+        assertEquals(RotorCatalogue.REFLECTOR, rotors.kind(2));
+        assertEquals("AC", rotors.notches(0));
+        assertEquals(null, rotors.notches(2));
+        assertEquals(3, rotors.permutation(0).permute(5));
+        assertEquals(0, rotors.numCompiled());
+        assertTrue(rotors.rotor(0) == rotors.rotor(0));
+        assertEquals("AC", rotors.notches(0));
+        assertEquals(1, rotors.numCompiled());
+    }
+
+    @Test
+    public void checkEviction() {
+        StringBuilder text = new StringBuilder("ABCDEF 3 1 R R (AB)(CD)(EF)");
+        int n = RotorCatalogue.MAX_COMPILED + 50;
+        for (int k = 0; k < n; k++) {
+            text.append(" M" + k + " MA (A" + "BCDEF".charAt(k % 5) + ")");
+        }
+        RotorCatalogue rotors = Main.parseConfig(text.toString()).catalogue();
+        Rotor first = rotors.rotor(1);
+        for (int k = 1; k <= n; k++) {
+            assertEquals(1 + (k - 1) % 5, rotors.rotor(k).convertForward(0));
+        }
+        assertEquals(RotorCatalogue.MAX_COMPILED, rotors.numCompiled());
+        assertTrue(first != rotors.rotor(1));
+        assertEquals(first.name(), rotors.rotor(1).name());
+    }
+
+}
@@ -0,0 +1,150 @@
+package enigma;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/** Precomputed forward and backward conversions of a rotor at each of
+ *  its settings, so that passing a signal through a rotor is a single
+ *  indexed load with no wrap-around arithmetic.  Entry SETTING * SIZE + P
+ *  of each table is the conversion of P at SETTING.  Tables are held in
+ *  bytes for alphabets of at most 256 characters, and are shared by all
+ *  rotors (in any machine) with the same permutation, as far as a bound
+ *  on the memory retained for sharing allows.
+ *  @author Neha Kompella
+ */
+final class RotorTables {
+
+    /** Return the tables for PERM, shared with any other rotor having
+     *  the same permutation while they are retained. */
+    static RotorTables of(Permutation perm) {
+        synchronized (SHARED) {
+            RotorTables result = SHARED.get(perm);
+            if (result == null) {
+                result = new RotorTables(perm);
+                share(perm, result);
+            }
+            return result;
+        }
+    }
+
+    /** Retain TABLES for sharing under PERM, discarding the oldest
+     *  tables retained as needed to stay within MAX_SHARED_BYTES.
+     *  Tables larger than that bound are not retained. */
+    private static void share(Permutation perm, RotorTables tables) {
+        if (tables.bytes() > MAX_SHARED_BYTES) {
+            return;
+        }
+        SHARED.put(perm, tables);
+        _sharedBytes += tables.bytes();
+        Iterator<RotorTables> iter = SHARED.values().iterator();
+        while (_sharedBytes > MAX_SHARED_BYTES && iter.hasNext()) {
+            _sharedBytes -= iter.next().bytes();
+            iter.remove();
+        }
+    }
+
+    /** Tables for PERM. */
+    private RotorTables(Permutation perm) {
+        int n = perm.size();
+        _size = n;
+        _perm = perm.table();
+        _inv = perm.inverseTable();
+        if (n > MAX_TABULATED) {
+            return;
+        }
+        int[] forward = new int[n * n];
+        int[] backward = new int[n * n];
+        for (int s = 0, k = 0; s < n; s++) {
+            for (int p = 0; p < n; p++, k++) {
+                forward[k] = shift(_perm, s, p);
+                backward[k] = shift(_inv, s, p);
+            }
+        }
+        if (n <= KeystreamCache.MAX_ALPHABET) {
+            _forwardBytes = toBytes(forward);
+            _backwardBytes = toBytes(backward);
+        } else {
+            _forwardInts = forward;
+            _backwardInts = backward;
+        }
+    }
+
+    /** Return the size of my alphabet. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the number of bytes in my tables. */
+    long bytes() {
+        long n = _size;
+        if (_forwardBytes != null) {
+            return 2 * n * n + 8 * n;
+        } else if (_forwardInts != null) {
+            return 8 * n * n + 8 * n;
+        }
+        return 8 * n;
+    }
+
+    /** Return the conversion of P by my permutation at SETTING, where
+     *  0 <= P, SETTING < size(). */
+    int forward(int setting, int p) {
+        if (_forwardBytes != null) {
+            return _forwardBytes[setting * _size + p] & 0xff;
+        } else if (_forwardInts != null) {
+            return _forwardInts[setting * _size + p];
+        }
+        return shift(_perm, setting, p);
+    }
+
+    /** Return the conversion of E by the inverse of my permutation at
+     *  SETTING, where 0 <= E, SETTING < size(). */
+    int backward(int setting, int e) {
+        if (_backwardBytes != null) {
+            return _backwardBytes[setting * _size + e] & 0xff;
+        } else if (_backwardInts != null) {
+            return _backwardInts[setting * _size + e];
+        }
+        return shift(_inv, setting, e);
+    }
+
+    /** Return PERM[P + S] - S, modulo the length of PERM, for
+     *  0 <= P, S < PERM.length, without division. */
+    private static int shift(int[] perm, int s, int p) {
+        int n = perm.length;
+        int q = p + s;
+        if (q >= n) {
+            q -= n;
+        }
+        int r = perm[q] - s;
+        return r < 0 ? r + n : r;
+    }
+
+    /** Return VALUES, each less than 256, as bytes. */
+    private static byte[] toBytes(int[] values) {
+        byte[] result = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (byte) values[i];
+        }
+        return result;
+    }
+
+    /** Largest alphabet for which tables are precomputed. */
+    private static final int MAX_TABULATED = 2048;
+    /** Memory bound on the tables retained for sharing, in bytes. */
+    private static final long MAX_SHARED_BYTES = 64L << 20;
+
+    /** Tables by permutation, most recently created last. */
+    private static final LinkedHashMap<Permutation, RotorTables> SHARED =
+        new LinkedHashMap<>();
+    /** Number of bytes in the tables in SHARED. */
+    private static long _sharedBytes;
+
+    /** Size of my alphabet. */
+    private final int _size;
+    /** The permutation and its inverse at setting 0. */
+    private final int[] _perm, _inv;
+    /** Tables for small alphabets, or null. */
+    private byte[] _forwardBytes, _backwardBytes;
+    /** Tables for large alphabets, or null. */
+    private int[] _forwardInts, _backwardInts;
+}
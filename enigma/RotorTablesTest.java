@@ -0,0 +1,109 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** Tests of precomputed rotor tables and of rotors converting through
+ *  them.
+ *  @author Neha Kompella
+ */
+public class RotorTablesTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** Return X modulo N, in the range 0 .. N-1. */
+    private static int mod(int x, int n) {
+        return ((x % n) + n) % n;
+    }
+
+    /** Check the tables of a random permutation of N characters against
+     *  the permutation itself, shifted with modular arithmetic. */
+    private void checkTables(int n, Random random) {
+        Permutation perm = randomPermutation(alphabet(n), random);
+        RotorTables tables = RotorTables.of(perm);
+        assertEquals(n, tables.size());
+        for (int trial = 0; trial < 20000; trial++) {
+            int s = random.nextInt(n), p = random.nextInt(n);
+            assertEquals(mod(perm.permute(mod(p + s, n)) - s, n),
+                         tables.forward(s, p));
+            assertEquals(mod(perm.invert(mod(p + s, n)) - s, n),
+                         tables.backward(s, p));
+        }
+    }
+
+    @Test
+    public void checkAgainstPermutation() {
+        Random random = new Random(33);
+        checkTables(1, random);
+        checkTables(26, random);
+        checkTables(256, random);
+        checkTables(300, random);
+        checkTables(3000, random);
+    }
+
+    @Test
+    public void checkSharing() {
+        Alphabet alpha = alphabet(26);
+        Permutation perm = new Permutation("(ABC) (DE)", alpha);
+        RotorTables tables = RotorTables.of(perm);
+        assertTrue(tables == RotorTables.of(new Permutation("(DE)(CAB)",
+                                                            alpha)));
+        assertEquals(2 * 26 * 26 + 8 * 26, tables.bytes());
+        assertTrue(tables == new FixedRotor("X", perm).tables());
+    }
+
+    /** Tables of 1500 characters take 18 MB, so three fit within the
+     *  64 MB retained for sharing and a fourth displaces the oldest. */
+    @Test
+    public void checkSharedBound() {
+        Random random = new Random(3033);
+        Alphabet alpha = alphabet(1500);
+        Permutation first = randomPermutation(alpha, random);
+        RotorTables tables = RotorTables.of(first);
+        assertEquals(8L * 1500 * 1500 + 8 * 1500, tables.bytes());
+        for (int i = 0; i < 2; i++) {
+            RotorTables.of(randomPermutation(alpha, random));
+        }
+        assertTrue(tables == RotorTables.of(first));
+        RotorTables.of(randomPermutation(alpha, random));
+        assertTrue(tables != RotorTables.of(first));
+    }
+
+    @Test
+    public void checkRotorRings() {
+        Random random = new Random(1033);
+        for (int n : new int[] { 26, 300, 3000 }) {
+            Permutation perm = randomPermutation(alphabet(n), random);
+            Rotor rotor = new MovingRotor("R", perm, "");
+            for (int trial = 0; trial < 2000; trial++) {
+                int posn = random.nextInt(3 * n) - n;
+                int ring = random.nextInt(n);
+                rotor.setRing(ring);
+                rotor.set(posn);
+                if (random.nextBoolean()) {
+                    rotor.advance();
+                    posn += 1;
+                }
+                int shift = mod(posn - ring, n);
+                assertEquals(mod(posn, n), rotor.setting());
+                for (int p = 0; p < n; p += 1 + n / 30) {
+                    assertEquals(mod(perm.permute(mod(p + shift, n)) - shift,
+                                     n),
+                                 rotor.convertForward(p));
+                    assertEquals(mod(perm.invert(mod(p + shift, n)) - shift,
+                                     n),
+                                 rotor.convertBackward(p));
+                }
+            }
+        }
+    }
+
+}
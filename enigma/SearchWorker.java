@@ -0,0 +1,84 @@
+package enigma;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+
+import static enigma.EnigmaException.*;
+
+/** A worker for a KeySearch: connects to its coordinator, receives the
+ *  search, and searches the leases it is handed until told to stop.
+ *  Usage:
+ *      java enigma.SearchWorker HOST PORT
+ *  @author Neha Kompella
+ */
+public final class SearchWorker {
+
+    /** Work for the coordinator at ARGS[0], port ARGS[1]. */
+    public static void main(String... args) {
+        try {
+            new SearchWorker(args).run();
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** A worker as specified by ARGS. */
+    SearchWorker(String[] args) {
+        if (args.length != 2) {
+            throw error("expected a host and a port");
+        }
+        _host = args[0];
+        try {
+            _port = Integer.parseInt(args[1]);
+        } catch (NumberFormatException excp) {
+            throw error("bad port: %s", args[1]);
+        }
+    }
+
+    /** Connect to the coordinator and search the leases it hands out. */
+    void run() {
+        try (Socket socket = new Socket(_host, _port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(
+                new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(socket.getOutputStream()));
+            if (in.readInt() != KeySearch.MAGIC) {
+                throw error("not a key search coordinator");
+            }
+            KeySearch.Job job = KeySearch.Job.read(in);
+            job.prepare();
+            ArrayList<String> hits = new ArrayList<>();
+            for (int tag = in.readByte(); tag == KeySearch.LEASE;
+                 tag = in.readByte()) {
+                long id = in.readLong();
+                long order = in.readLong();
+                long start = in.readLong();
+                int count = in.readInt();
+                hits.clear();
+                job.search(order, start, count, hits);
+                for (String hit : hits) {
+                    out.writeByte(KeySearch.HIT);
+                    out.writeUTF(hit);
+                }
+                out.writeByte(KeySearch.DONE);
+                out.writeLong(id);
+                out.flush();
+            }
+        } catch (IOException excp) {
+            throw error("lost the coordinator");
+        }
+    }
+
+    /** Coordinator's host. */
+    private final String _host;
+    /** Coordinator's port. */
+    private final int _port;
+}
@@ -0,0 +1,135 @@
+package enigma;
+
+import java.util.Random;
+
+/** Measures the heap used by a SessionStore holding many sessions of the
+ *  standard five-slot machine, and the rate at which short messages can
+ *  be converted with randomly chosen sessions.  Usage:
+ *      java enigma.SessionBenchmark CONFIG [SESSIONS [MESSAGES]]
+ *  @author Neha Kompella
+ */
+class SessionBenchmark {
+
+    /** Run the benchmark as specified by ARGS (see above). */
+    public static void main(String... args) {
+        MachineConfig config = Main.loadConfig(args[0]);
+        int sessions = args.length > 1 ? Integer.parseInt(args[1])
+            : DEFAULT_SESSIONS;
+        int messages = args.length > 2 ? Integer.parseInt(args[2])
+            : DEFAULT_MESSAGES;
+        Random random = new Random(0);
+        Machine m = config.newMachine();
+        int size = config.alphabet().size();
+        int slots = config.numRotors();
+        int available = config.numAvailable();
+
+        int[][] choices = new int[CHOICES][slots];
+        for (int[] choice : choices) {
+            do {
+                for (int i = 0; i < slots; i++) {
+                    choice[i] = random.nextInt(available);
+                }
+            } while (!valid(m, choice));
+        }
+        Permutation[] plugboards = new Permutation[PLUGBOARDS];
+        for (int i = 0; i < plugboards.length; i++) {
+            plugboards[i] = plugboard(size, config.alphabet(), random);
+        }
+
+        long before = usedHeap();
+        SessionStore store = new SessionStore(config, sessions);
+        int[] positions = new int[slots - 1];
+        int[] rings = new int[slots - 1];
+        long start = System.nanoTime();
+        for (int s = 0; s < sessions; s++) {
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = random.nextInt(size);
+            }
+            store.open(choices[random.nextInt(CHOICES)], positions, rings,
+                       plugboards[random.nextInt(plugboards.length)]);
+        }
+        long openTime = System.nanoTime() - start;
+        long after = usedHeap();
+        System.out.printf("%d sessions opened in %.2f s%n", store.size(),
+                          openTime / 1e9);
+        System.out.printf("session arrays: %d bytes (%.1f per session)%n",
+                          store.footprint(),
+                          (double) store.footprint() / sessions);
+        System.out.printf("heap growth: %.1f MB%n",
+                          (after - before) / (double) (1 << 20));
+
+        int[] msg = new int[MESSAGE_LENGTH];
+        for (int pass = 0; pass < 2; pass++) {
+            start = System.nanoTime();
+            for (int k = 0; k < messages; k++) {
+                for (int i = 0; i < msg.length; i++) {
+                    msg[i] = random.nextInt(size);
+                }
+                store.convert(random.nextInt(sessions), msg, msg.length);
+            }
+            long nanos = System.nanoTime() - start;
+            System.out.printf("%s: %d messages of %d characters,"
+                              + " %.0f ns/message, %.1f ns/char%n",
+                              pass == 0 ? "warm-up" : "measured", messages,
+                              MESSAGE_LENGTH, (double) nanos / messages,
+                              (double) nanos / messages / MESSAGE_LENGTH);
+        }
+    }
+
+    /** Return true iff ROTORS is a valid choice of rotors for M. */
+    private static boolean valid(Machine m, int[] rotors) {
+        try {
+            m.checkRotors(rotors);
+            return true;
+        } catch (EnigmaException excp) {
+            return false;
+        }
+    }
+
+    /** Return a random plugboard of ten pairs over the first SIZE
+     *  characters of ALPHA, using RANDOM. */
+    private static Permutation plugboard(int size, Alphabet alpha,
+                                         Random random) {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        int[] table = new int[size];
+        for (int i = 0; i < size; i++) {
+            table[i] = i;
+        }
+        for (int i = 0; i + 1 < Math.min(size, 2 * PAIRS); i += 2) {
+            table[order[i]] = order[i + 1];
+            table[order[i + 1]] = order[i];
+        }
+        return new Permutation(table, alpha);
+    }
+
+    /** Return the heap in use after a garbage collection. */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /** Default number of sessions. */
+    private static final int DEFAULT_SESSIONS = 10_000_000;
+    /** Default number of messages converted per pass. */
+    private static final int DEFAULT_MESSAGES = 2_000_000;
+    /** Characters per message. */
+    private static final int MESSAGE_LENGTH = 16;
+    /** Number of distinct choices of rotors. */
+    private static final int CHOICES = 20;
+    /** Number of distinct plugboards. */
+    private static final int PLUGBOARDS = 1000;
+    /** Pairs of letters swapped by each plugboard. */
+    private static final int PAIRS = 10;
+}
@@ -0,0 +1,356 @@
+package enigma;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static enigma.EnigmaException.*;
+
+/** The states of many machines that share one configuration, packed so
+ *  that each costs a few bytes instead of a Machine.  A session's rotor
+ *  choices, positions and ring settings are bit fields in a few longs
+ *  (usually one) of a single array, and its plugboard is the number of
+ *  a plugboard interned in the store.  Conversions run on machines
+ *  belonging to the calling thread, loaded from the packed state and
+ *  saved back; each thread keeps a machine for each of its recently
+ *  used choices of rotors, so that only positions and plugboard need be
+ *  loaded.  Sessions may be opened and closed by any thread; each
+ *  session must be used by one thread at a time.
+ *  @author Neha Kompella
+ */
+final class SessionStore {
+
+    /** A store with room for CAPACITY sessions of machines with
+     *  configuration CONFIG. */
+    SessionStore(MachineConfig config, int capacity) {
+        _config = config;
+        _slots = config.numRotors();
+        _capacity = capacity;
+        int indexBits = bits(config.numAvailable());
+        int positionBits = bits(config.alphabet().size());
+        _indexBits = indexBits * _slots < Long.SIZE ? indexBits : 0;
+        int fields = ringField(_slots - 1) + 1;
+        _word = new int[fields];
+        _shift = new int[fields];
+        _width = new int[fields];
+        int word = 0, shift = 0;
+        for (int f = 0; f < fields; f++) {
+            int width = f < _slots ? indexBits : positionBits;
+            if (shift + width > Long.SIZE) {
+                word += 1;
+                shift = 0;
+            }
+            _word[f] = word;
+            _shift[f] = shift;
+            _width[f] = width;
+            shift += width;
+        }
+        _words = word + 1;
+        _state = new long[capacity * _words];
+        _plugs = new int[capacity];
+        _free = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            _free[i] = capacity - 1 - i;
+            _plugs[i] = -1;
+        }
+        _freeCount = capacity;
+        _template = config.newMachine();
+    }
+
+    /** Open a session set as specified by the settings line SETTINGS,
+     *  and return its number. */
+    int open(String settings) {
+        Settings parsed;
+        synchronized (_template) {
+            parsed = new Settings(settings, _template, _config.alphabet());
+        }
+        return open(parsed.rotors(), parsed.positions(), parsed.rings(),
+                    parsed.plugboard());
+    }
+
+    /** Open a session with the rotors numbered ROTORS (reflector first),
+     *  which must have been validated by Machine.checkRotors, the rotors
+     *  other than the reflector at POSITIONS with ring settings RINGS,
+     *  and plugboard PLUGBOARD.  Return its number. */
+    int open(int[] rotors, int[] positions, int[] rings,
+             Permutation plugboard) {
+        int plug = intern(plugboard);
+        int id;
+        synchronized (_free) {
+            if (_freeCount == 0) {
+                throw error("too many sessions");
+            }
+            _freeCount -= 1;
+            id = _free[_freeCount];
+            _open += 1;
+        }
+        int base = id * _words;
+        for (int w = 0; w < _words; w++) {
+            _state[base + w] = 0;
+        }
+        for (int i = 0; i < _slots; i++) {
+            put(base, i, rotors[i]);
+        }
+        for (int i = 1; i < _slots; i++) {
+            put(base, positionField(i), positions[i - 1]);
+            put(base, ringField(i), rings[i - 1]);
+        }
+        _plugs[id] = plug;
+        return id;
+    }
+
+    /** Close session ID, making its number available for reuse. */
+    void close(int id) {
+        check(id);
+        int plug = _plugs[id];
+        _plugs[id] = -1;
+        release(plug);
+        synchronized (_free) {
+            _free[_freeCount] = id;
+            _freeCount += 1;
+            _open -= 1;
+        }
+    }
+
+    /** Return the number of open sessions. */
+    int size() {
+        synchronized (_free) {
+            return _open;
+        }
+    }
+
+    /** Return the number of distinct plugboards in use by open
+     *  sessions. */
+    int plugboards() {
+        synchronized (_plugboardIds) {
+            return _plugboardIds.size();
+        }
+    }
+
+    /** Return the number of bytes in my per-session arrays. */
+    long footprint() {
+        return (long) _state.length * Long.BYTES
+            + (long) _plugs.length * Integer.BYTES
+            + (long) _free.length * Integer.BYTES;
+    }
+
+    /** Return the current positions of the rotors of session ID, other
+     *  than the reflector. */
+    int[] positions(int id) {
+        check(id);
+        int[] result = new int[_slots - 1];
+        for (int i = 1; i < _slots; i++) {
+            result[i - 1] = get(id * _words, positionField(i));
+        }
+        return result;
+    }
+
+    /** Convert the N indices in MSG in place with session ID, advancing
+     *  its rotors accordingly. */
+    void convert(int id, int[] msg, int n) {
+        check(id);
+        Machine m = load(id);
+        m.convert(msg, n);
+        save(id, m);
+    }
+
+    /** Return the conversion of MSG with session ID, as for
+     *  Machine.convert(String). */
+    String convert(int id, String msg) {
+        check(id);
+        Machine m = load(id);
+        String result = m.convert(msg);
+        save(id, m);
+        return result;
+    }
+
+    /** Return this thread's machine, set to the state of session ID. */
+    private Machine load(int id) {
+        Work work = _work.get();
+        int base = id * _words;
+        long key = 0;
+        for (int i = 0; i < _slots; i++) {
+            work.rotors[i] = get(base, i);
+            if (_indexBits > 0) {
+                key = (key << _indexBits) | work.rotors[i];
+            }
+        }
+        for (int i = 1; i < _slots; i++) {
+            work.positions[i - 1] = get(base, positionField(i));
+            work.rings[i - 1] = get(base, ringField(i));
+        }
+        Machine m = work.machines.get(key);
+        if (m == null) {
+            m = _config.newMachine();
+            work.machines.put(key, m);
+        }
+        m.insertRotors(work.rotors);
+        m.setRings(work.rings);
+        m.setRotors(work.positions);
+        m.setPlugboard(_plugboards[_plugs[id]]);
+        return m;
+    }
+
+    /** Save the rotor positions of M as those of session ID. */
+    private void save(int id, Machine m) {
+        int[] positions = m.positions();
+        int base = id * _words;
+        for (int i = 1; i < _slots; i++) {
+            put(base, positionField(i), positions[i]);
+        }
+    }
+
+    /** Return the number of plugboard PLUGBOARD, interning it if it is
+     *  new, and count one more session using it. */
+    private int intern(Permutation plugboard) {
+        synchronized (_plugboardIds) {
+            Integer id = _plugboardIds.get(plugboard);
+            if (id == null) {
+                if (_freePlugCount > 0) {
+                    _freePlugCount -= 1;
+                    id = _freePlugs[_freePlugCount];
+                } else {
+                    id = _plugboardIds.size();
+                }
+                Permutation[] plugboards = _plugboards;
+                if (id == plugboards.length) {
+                    plugboards = Arrays.copyOf(plugboards, 2 * id);
+                    _plugRefs = Arrays.copyOf(_plugRefs, 2 * id);
+                    _freePlugs = Arrays.copyOf(_freePlugs, 2 * id);
+                }
+                plugboards[id] = plugboard;
+                _plugboards = plugboards;
+                _plugboardIds.put(plugboard, id);
+            }
+            _plugRefs[id] += 1;
+            return id;
+        }
+    }
+
+    /** Count one fewer session using plugboard number PLUG, freeing the
+     *  number for reuse when no session uses it. */
+    private void release(int plug) {
+        synchronized (_plugboardIds) {
+            _plugRefs[plug] -= 1;
+            if (_plugRefs[plug] == 0) {
+                _plugboardIds.remove(_plugboards[plug]);
+                _plugboards[plug] = null;
+                _freePlugs[_freePlugCount] = plug;
+                _freePlugCount += 1;
+            }
+        }
+    }
+
+    /** Check that ID is an open session. */
+    private void check(int id) {
+        if (id < 0 || id >= _capacity || _plugs[id] < 0) {
+            throw error("no session %d", id);
+        }
+    }
+
+    /** Return the number of the field holding the position of slot I,
+     *  where 0 < I < _slots. */
+    private int positionField(int i) {
+        return _slots + i - 1;
+    }
+
+    /** Return the number of the field holding the ring setting of slot
+     *  I, where 0 < I < _slots. */
+    private int ringField(int i) {
+        return 2 * _slots + i - 2;
+    }
+
+    /** Return field F of the session whose state starts at BASE. */
+    private int get(int base, int f) {
+        long word = _state[base + _word[f]];
+        return (int) (word >>> _shift[f]) & ((1 << _width[f]) - 1);
+    }
+
+    /** Set field F of the session whose state starts at BASE to VALUE. */
+    private void put(int base, int f, int value) {
+        long mask = ((1L << _width[f]) - 1) << _shift[f];
+        int k = base + _word[f];
+        _state[k] = (_state[k] & ~mask) | ((long) value << _shift[f]);
+    }
+
+    /** Return the number of bits needed to hold 0 .. N-1. */
+    private static int bits(int n) {
+        return Math.max(1, Integer.SIZE
+                        - Integer.numberOfLeadingZeros(n - 1));
+    }
+
+    /** A thread's machines and scratch arrays. */
+    private final class Work {
+        /** Machines for conversions, by choice of rotors (packed as a
+         *  key by load), most recently used last. */
+        private final LinkedHashMap<Long, Machine> machines =
+            new LinkedHashMap<Long, Machine>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long,
+                                                    Machine> eldest) {
+                    return size() > MACHINES_PER_THREAD;
+                }
+            };
+        /** Rotor numbers of the session being converted. */
+        private final int[] rotors = new int[_slots];
+        /** Rotor positions of the session being converted. */
+        private final int[] positions = new int[_slots - 1];
+        /** Ring settings of the session being converted. */
+        private final int[] rings = new int[_slots - 1];
+    }
+
+    /** Largest number of machines kept by each thread. */
+    private static final int MACHINES_PER_THREAD = 64;
+    /** Initial size of _plugboards. */
+    private static final int INITIAL_PLUGBOARDS = 16;
+
+    /** The shared configuration. */
+    private final MachineConfig _config;
+    /** Number of rotor slots. */
+    private final int _slots;
+    /** Largest number of sessions. */
+    private final int _capacity;
+    /** Bits per rotor number in the keys of Work.machines, or 0 if the
+     *  rotor numbers do not fit in a key, in which case every choice has
+     *  key 0 and one machine is used for all of them. */
+    private final int _indexBits;
+    /** Longs of _state per session. */
+    private final int _words;
+    /** The word, shift and width in bits of each field of a session's
+     *  state: the rotor numbers, reflector first, then the positions,
+     *  then the ring settings. */
+    private final int[] _word, _shift, _width;
+    /** Packed rotor numbers and positions of all sessions, _words longs
+     *  per session. */
+    private final long[] _state;
+    /** Plugboard number of each session, or -1 if it is not open. */
+    private final int[] _plugs;
+    /** Numbers of unopened sessions, in _free[0 .. _freeCount-1]. */
+    private final int[] _free;
+    /** Number of unopened sessions. */
+    private int _freeCount;
+    /** Number of open sessions. */
+    private int _open;
+    /** Interned plugboards, by number.  Replaced (under the lock on
+     *  _plugboardIds) when it grows, so that it may be read without
+     *  locking. */
+    private volatile Permutation[] _plugboards =
+        new Permutation[INITIAL_PLUGBOARDS];
+    /** Numbers of interned plugboards. */
+    private final HashMap<Permutation, Integer> _plugboardIds =
+        new HashMap<>();
+    /** Number of open sessions using each interned plugboard, by
+     *  number.  Guarded by the lock on _plugboardIds. */
+    private int[] _plugRefs = new int[INITIAL_PLUGBOARDS];
+    /** Plugboard numbers freed for reuse, in
+     *  _freePlugs[0 .. _freePlugCount-1].  Guarded by the lock on
+     *  _plugboardIds. */
+    private int[] _freePlugs = new int[INITIAL_PLUGBOARDS];
+    /** Number of plugboard numbers freed for reuse. */
+    private int _freePlugCount;
+    /** Machine used to validate settings lines. */
+    private final Machine _template;
+    /** Per-thread machines. */
+    private final ThreadLocal<Work> _work = ThreadLocal.withInitial(Work::new);
+}
@@ -0,0 +1,110 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** Tests of packed session storage.
+ *  @author Neha Kompella
+ */
+public class SessionStoreTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** The naval configuration. */
+    private MachineConfig config = Main.parseConfig(NAVAL_CONFIG);
+
+    /** Return the conversion of TEXT by a machine newly set up with the
+     *  settings line SETTINGS. */
+    private String convert(String settings, String text) {
+        Machine m = config.newMachine();
+        new Settings(settings, m, config.alphabet()).apply(m);
+        return m.convert(text);
+    }
+
+    @Test
+    public void checkSessions() {
+        SessionStore store = new SessionStore(config, 4);
+        int one = store.open("* B BETA III IV I AXLE (HQ) (EX)");
+        int two = store.open("* C GAMMA VI VII VIII AZMY");
+        String first = store.convert(one, "THEQUICKBROWNFOX");
+        String second = store.convert(two, "HELLOWORLD");
+        first += store.convert(one, "JUMPSOVERTHELAZYDOG");
+        store.close(two);
+        assertEquals(1, store.size());
+        assertEquals(convert("* B BETA III IV I AXLE (HQ) (EX)",
+                             "THEQUICKBROWNFOXJUMPSOVERTHELAZYDOG"),
+                     first);
+        assertEquals(convert("* C GAMMA VI VII VIII AZMY", "HELLOWORLD"),
+                     second);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkClosed() {
+        SessionStore store = new SessionStore(config, 2);
+        int id = store.open("* B BETA III IV I AXLE");
+        store.close(id);
+        store.convert(id, "HELLO");
+    }
+
+    @Test
+    public void checkPlugboardsReleased() {
+        String[] plugs = { "(AB)", "(CD) (EF)", "(GH)", "(IJ) (KL)", "" };
+        int capacity = 40;
+        SessionStore store = new SessionStore(config, capacity);
+        Random random = new Random(39);
+        String[] settings = new String[capacity];
+        int[] ids = new int[capacity];
+        int open = 0;
+        for (int k = 0; k < 20000; k++) {
+            if (open == capacity
+                || (open > 0 && random.nextBoolean())) {
+                int i = random.nextInt(open);
+                String text = "ATTACKATDAWN";
+                String expected = convert(settings[i], text);
+                assertEquals(expected, store.convert(ids[i], text));
+                store.close(ids[i]);
+                open -= 1;
+                ids[i] = ids[open];
+                settings[i] = settings[open];
+            } else {
+                String line = "* B BETA III IV I AXLE "
+                    + plugs[random.nextInt(k < 10000 ? 2 : plugs.length)];
+                ids[open] = store.open(line);
+                settings[open] = line;
+                open += 1;
+            }
+            assertEquals(open, store.size());
+            HashSet<String> distinct = new HashSet<>();
+            for (int i = 0; i < open; i++) {
+                distinct.add(settings[i].substring(23));
+            }
+            assertEquals(distinct.size(), store.plugboards());
+        }
+        while (open > 0) {
+            open -= 1;
+            store.close(ids[open]);
+        }
+        assertEquals(0, store.size());
+        assertEquals(0, store.plugboards());
+        for (int k = 0; k < 1000; k++) {
+            String line = "* B BETA III IV I AXLE (" + (char) ('A' + k % 25)
+                + "Z)";
+            int id = store.open(line);
+            assertTrue(store.plugboards() <= 1);
+            assertEquals(convert(line, "HELLOWORLD"),
+                         store.convert(id, "HELLOWORLD"));
+            store.close(id);
+        }
+        assertEquals(0, store.plugboards());
+    }
+
+}
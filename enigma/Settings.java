@@ -0,0 +1,120 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** A parsed and validated settings line: the rotors to insert, as
+ *  indices into a machine's available rotors, their initial positions,
+ *  their ring settings, and the compiled plugboard.
+ *  @author Neha Kompella
+ */
+class Settings {
+
+    /** Parse LINE, which must have the form
+     *  "* REFLECTOR ROTOR... SETTING [RINGS] CYCLES...", for machine M
+     *  with alphabet ALPHA.  RINGS, if present, gives the ring settings
+     *  of the rotors other than the reflector, as SETTING gives their
+     *  positions; by default they are all at the first character. */
+    Settings(String line, Machine m, Alphabet alpha) {
+        String[] arr = line.split(" ");
+        if (!arr[0].equals("*")) {
+            throw new EnigmaException("No '*' as first character");
+        }
+        int numRotors = m.numRotors();
+        if (arr.length < numRotors + 2) {
+            throw new EnigmaException("Incorrect number of rotors");
+        }
+
+        _rotors = new int[numRotors];
+        for (int i = 0; i < numRotors; i++) {
+            _rotors[i] = m.rotorIndex(arr[i + 1]);
+        }
+        m.checkRotors(_rotors);
+
+        String setting = arr[numRotors + 1];
+        if (setting.length() < numRotors - 1) {
+            throw new EnigmaException("setting too short");
+        }
+        for (int i = 0; i < setting.length(); i++) {
+            if (!alpha.contains(setting.charAt(i))) {
+                throw new EnigmaException("setting not in alphabet");
+            }
+        }
+        _positions = new int[numRotors - 1];
+        for (int i = 0; i < _positions.length; i++) {
+            _positions[i] = alpha.toInt(setting.charAt(i));
+        }
+
+        _rings = new int[numRotors - 1];
+        int cycles = numRotors + 2;
+        if (cycles < arr.length && !arr[cycles].isEmpty()
+            && !arr[cycles].startsWith("(")) {
+            String rings = arr[cycles];
+            if (rings.length() < numRotors - 1) {
+                throw new EnigmaException("ring setting too short");
+            }
+            for (int i = 0; i < rings.length(); i++) {
+                if (!alpha.contains(rings.charAt(i))) {
+                    throw new EnigmaException("ring setting not in alphabet");
+                }
+            }
+            for (int i = 0; i < _rings.length; i++) {
+                _rings[i] = alpha.toInt(rings.charAt(i));
+            }
+            cycles += 1;
+        }
+
+        StringBuilder plugboard = new StringBuilder();
+        for (int i = cycles; i < arr.length; i++) {
+            plugboard.append(' ').append(arr[i]);
+        }
+        _plugboard = new Permutation(plugboard.toString(), alpha);
+    }
+
+    /** Settings already resolved and validated for a machine: rotors
+     *  ROTORS, reflector first, at POSITIONS with ring settings RINGS,
+     *  and plugboard PLUGBOARD. */
+    Settings(int[] rotors, int[] positions, int[] rings,
+             Permutation plugboard) {
+        _rotors = rotors;
+        _positions = positions;
+        _rings = rings;
+        _plugboard = plugboard;
+    }
+
+    /** Return the indices of the rotors to insert, reflector first. */
+    int[] rotors() {
+        return _rotors;
+    }
+
+    /** Return the initial positions of all rotors but the reflector. */
+    int[] positions() {
+        return _positions;
+    }
+
+    /** Return the ring settings of all rotors but the reflector. */
+    int[] rings() {
+        return _rings;
+    }
+
+    /** Return the plugboard. */
+    Permutation plugboard() {
+        return _plugboard;
+    }
+
+    /** Apply me to M, which must be the machine I was parsed for. */
+    void apply(Machine m) {
+        m.insertRotors(_rotors);
+        m.setRings(_rings);
+        m.setRotors(_positions);
+        m.setPlugboard(_plugboard);
+    }
+
+    /** Rotor indices, reflector first. */
+    private final int[] _rotors;
+    /** Initial rotor positions, leftmost non-reflector first. */
+    private final int[] _positions;
+    /** Ring settings, leftmost non-reflector first. */
+    private final int[] _rings;
+    /** Compiled plugboard. */
+    private final Permutation _plugboard;
+}
@@ -0,0 +1,99 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** Tests of parsed settings lines and of their reuse by the reference
+ *  engine.
+ *  @author Neha Kompella
+ */
+public class SettingsTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** The naval configuration. */
+    private MachineConfig config = Main.parseConfig(NAVAL_CONFIG);
+
+    /** A machine of that configuration. */
+    private Machine m = config.newMachine();
+
+    /** A message. */
+    private static final String TEXT = "THEQUICKBROWNFOXJUMPSOVERTHELAZYDOG";
+
+    @Test
+    public void checkParse() {
+        Settings s =
+            new Settings("* B BETA III IV I AXLE BCDE (HQ) (EX)", m, UPPER);
+        String[] names = { "B", "Beta", "III", "IV", "I" };
+        for (int i = 0; i < names.length; i++) {
+            assertEquals(names[i], config.rotorName(s.rotors()[i]));
+        }
+        assertArrayEquals(new int[] { 0, 23, 11, 4 }, s.positions());
+        assertArrayEquals(new int[] { 1, 2, 3, 4 }, s.rings());
+        assertEquals('Q', UPPER.toChar(s.plugboard().permute(
+            UPPER.toInt('H'))));
+        assertEquals('A', UPPER.toChar(s.plugboard().permute(
+            UPPER.toInt('A'))));
+        s = new Settings("* B BETA III IV I AXLE", m, UPPER);
+        assertArrayEquals(new int[4], s.rings());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkTooFewRotors() {
+        new Settings("* B BETA III", m, UPPER);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkBadPosition() {
+        new Settings("* B BETA III IV I AX1E", m, UPPER);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkMisplacedReflector() {
+        new Settings("* BETA B III IV I AXLE", m, UPPER);
+    }
+
+    @Test
+    public void checkApplyMatchesSetUp() {
+        m.insertRotors(new String[] { "B", "BETA", "III", "IV", "I" });
+        m.setRotors("AXLE");
+        m.setPlugboard(new Permutation("(HQ) (EX)", UPPER));
+        String expected = m.convert(TEXT);
+        new Settings("* B BETA III IV I AXLE (HQ) (EX)", m, UPPER).apply(m);
+        assertEquals(expected, m.convert(TEXT));
+    }
+
+    @Test
+    public void checkCachedSettings() {
+        String[] lines = {
+            "* B BETA III IV I AXLE (HQ) (EX)",
+            "* C GAMMA VI VII VIII AZMY BCDE",
+        };
+        String[] expected = new String[lines.length];
+        for (int k = 0; k < lines.length; k++) {
+            new Settings(lines[k], m, UPPER).apply(m);
+            expected[k] = m.convert(TEXT);
+        }
+        EncryptionEngine engine = EncryptionEngine.create("reference", config);
+        engine.setUp(lines[0]);
+        Settings first = engine.parsed();
+        for (int trial = 0; trial < 4; trial++) {
+            for (int k = 0; k < lines.length; k++) {
+                engine.setUp(lines[k]);
+                assertEquals(lines[k], engine.settings());
+                assertEquals(expected[k], engine.convert(TEXT));
+                assertEquals(TEXT.length(), engine.step());
+            }
+        }
+        engine.setUp(lines[0]);
+        assertTrue(first == engine.parsed());
+        assertArrayEquals(new int[] { 0, 23, 11, 4 }, first.positions());
+    }
+
+}
@@ -0,0 +1,135 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/** Measures the cost of stepping, keystroke by keystroke, and of
+ *  converting characters on machines with from 3 to 64 pawls, to check
+ *  that stepping does not slow down as the number of moving rotors
+ *  grows.  Conversion passes each character through every slot twice,
+ *  so its cost grows with the number of pawls; the cost of stepping
+ *  alone should not.  Usage: java enigma.SteppingBenchmark [CHARS].
+ *  @author Neha Kompella
+ */
+class SteppingBenchmark {
+
+    /** Pawl counts to measure. */
+    private static final int[] PAWLS = {
+        3, 4, 6, 8, 12, 16, 24, 32, 48, 64
+    };
+
+    /** Default number of characters converted per measurement. */
+    private static final int DEFAULT_CHARS = 20_000_000;
+
+    /** Size of the message buffer. */
+    private static final int BUFFER = 1 << 16;
+
+    /** Run the benchmark, converting ARGS[0] characters (if present)
+     *  for each number of pawls. */
+    public static void main(String... args) {
+        int chars = args.length > 0 ? Integer.parseInt(args[0])
+            : DEFAULT_CHARS;
+        Random random = new Random(0);
+        System.out.printf("%6s %12s %12s%n", "pawls", "ns/step",
+                          "ns/char");
+        for (int pawls : PAWLS) {
+            Machine m = machine(pawls, random);
+            int[] msg = new int[BUFFER];
+            measureSteps(m, chars / 4);
+            long stepNanos = measureSteps(m, chars);
+            measure(m, msg, chars / 4, random);
+            long nanos = measure(m, msg, chars, random);
+            System.out.printf("%6d %12.2f %12.2f%n", pawls,
+                              (double) stepNanos / chars,
+                              (double) nanos / chars);
+        }
+    }
+
+    /** Return the time in nanoseconds taken by M to step through CHARS
+     *  keystrokes one at a time, without converting anything. */
+    private static long measureSteps(Machine m, int chars) {
+        long start = System.nanoTime();
+        for (int i = 0; i < chars; i++) {
+            m.skip(1);
+        }
+        return System.nanoTime() - start;
+    }
+
+    /** Return the time in nanoseconds taken by M to convert CHARS random
+     *  characters, in blocks of the size of MSG. */
+    private static long measure(Machine m, int[] msg, int chars,
+                                Random random) {
+        int size = UPPER.size();
+        long total = 0;
+        for (int done = 0; done < chars; done += msg.length) {
+            int n = Math.min(msg.length, chars - done);
+            for (int i = 0; i < n; i++) {
+                msg[i] = random.nextInt(size);
+            }
+            long start = System.nanoTime();
+            m.convert(msg, n);
+            total += System.nanoTime() - start;
+        }
+        return total;
+    }
+
+    /** Return a machine with random rotors: a reflector, one fixed rotor
+     *  and PAWLS moving rotors with one or two notches each, set to
+     *  random positions.  Uses RANDOM for all choices. */
+    private static Machine machine(int pawls, Random random) {
+        int size = UPPER.size();
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        int[] reflector = new int[size];
+        int[] order = shuffle(random);
+        for (int i = 0; i < size; i += 2) {
+            reflector[order[i]] = order[i + 1];
+            reflector[order[i + 1]] = order[i];
+        }
+        rotors.add(new Reflector("R", new Permutation(reflector, UPPER)));
+        rotors.add(new FixedRotor("F", new Permutation(shuffle(random),
+                                                        UPPER)));
+        String[] names = new String[pawls + 2];
+        names[0] = "R";
+        names[1] = "F";
+        for (int i = 0; i < pawls; i++) {
+            String notches = "" + UPPER.toChar(random.nextInt(size));
+            if (random.nextBoolean()) {
+                notches += UPPER.toChar(random.nextInt(size));
+            }
+            names[i + 2] = "M" + i;
+            rotors.add(new MovingRotor(names[i + 2],
+                                       new Permutation(shuffle(random),
+                                                       UPPER),
+                                       notches));
+        }
+        Machine m = new Machine(UPPER, pawls + 2, pawls, rotors);
+        m.insertRotors(names);
+        int[] positions = new int[pawls + 1];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = random.nextInt(size);
+        }
+        m.setRotors(positions);
+        m.setPlugboard(new Permutation("", UPPER));
+        return m;
+    }
+
+    /** Return a random permutation table of the upper-case alphabet,
+     *  using RANDOM. */
+    private static int[] shuffle(Random random) {
+        int size = UPPER.size();
+        int[] result = new int[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = i;
+        }
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = result[i];
+            result[i] = result[j];
+            result[j] = t;
+        }
+        return result;
+    }
+
+    /** The alphabet of the benchmark machines. */
+    private static final Alphabet UPPER = new UpperCaseAlphabet();
+}
@@ -1,6 +1,10 @@
 package enigma;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.HashMap;
+import java.util.Random;
 
 /** Utility definitions for use in unit tests.
  *  @author P. N. Hilfinger
@@ -18,6 +22,114 @@ class TestUtils {
         return testId + " (" + String.format(msgFormat, args) + ")";
     }
 
+    /** The naval configuration, as in testing/correct/default.conf. */
+    static final String NAVAL_CONFIG =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZ 5 3\n"
+        + " I MQ (AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)\n"
+        + " II ME (FIXVYOMW) (CDKLHUP) (ESZ) (BJ) (GR) (NT) (A) (Q)\n"
+        + " III MV (ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)\n"
+        + " IV MJ (AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)\n"
+        + " V MZ (AVOLDRWFIUQ)(BZKSMNHYC) (EGTJPX)\n"
+        + " VI MZM (AJQDVLEOZWIYTS) (CGMNHFUX) (BPRK)\n"
+        + " VII MZM (ANOUPFRIMBZTLWKSVEGCJYDHXQ)\n"
+        + " VIII MZM (AFLSETWUNDHOZVICQ) (BKJ) (GXY) (MPR)\n"
+        + " Beta N (ALBEVFCYODJWUGNMQTZSKPR) (HIX)\n"
+        + " Gamma N (AFNIRLBSQWVXGUZDKMTPCOYJHE)\n"
+        + " B R (AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP)\n"
+        + "     (RX) (SZ) (TV)\n"
+        + " C R (AR) (BD) (CO) (EJ) (FN) (GT) (HK) (IV) (LM) (PW)\n"
+        + "     (QZ) (SX) (UY)\n";
+
+    /** Return an alphabet of N characters: upper-case letters if N is
+     *  at most 26, and otherwise characters from U+0100. */
+    static Alphabet alphabet(int n) {
+        StringBuilder chars = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            chars.append((char) (n <= 26 ? 'A' + i : 0x100 + i));
+        }
+        return new Alphabet(chars.toString());
+    }
+
+    /** Return a random permutation of ALPHA, chosen using RANDOM. */
+    static Permutation randomPermutation(Alphabet alpha, Random random) {
+        int n = alpha.size();
+        int[] table = new int[n];
+        for (int i = 0; i < n; i++) {
+            int j = random.nextInt(i + 1);
+            table[i] = table[j];
+            table[j] = i;
+        }
+        return new Permutation(table, alpha);
+    }
+
+    /** Return a new temporary file, deleted on exit, whose name ends
+     *  in SUFFIX and which holds CONTENTS. */
+    static File tempFile(String suffix, byte[] contents)
+        throws IOException {
+        File file = File.createTempFile("enigma", suffix);
+        file.deleteOnExit();
+        Files.write(file.toPath(), contents);
+        return file;
+    }
+
+    /** Return a new temporary file, deleted on exit, whose name ends
+     *  in SUFFIX and which holds CONTENTS. */
+    static File tempFile(String suffix, String contents)
+        throws IOException {
+        return tempFile(suffix, contents.getBytes());
+    }
+
+    /** Return the contents of FILE. */
+    static String contents(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()));
+    }
+
+    /** Run Main with command-line arguments ARGS, as its main would,
+     *  but reporting errors by throwing EnigmaException. */
+    static void runMain(String... args) {
+        new Main(args).process();
+    }
+
+    /** Return a random input file for NAVAL_CONFIG of MESSAGES messages
+     *  of up to LINES lines each, chosen using RANDOM.  Lines are
+     *  separated by newlines, and messages have mixed case and
+     *  blanks. */
+    static String randomMessages(Random random, int messages, int lines) {
+        String[] moving = { "I", "II", "III", "IV", "V", "VI", "VII",
+                            "VIII" };
+        StringBuilder result = new StringBuilder();
+        for (int k = 0; k < messages; k++) {
+            result.append(random.nextBoolean() ? "* B " : "* C ");
+            result.append(random.nextBoolean() ? "Beta" : "Gamma");
+            int a = random.nextInt(8), b, c;
+            do {
+                b = random.nextInt(8);
+            } while (b == a);
+            do {
+                c = random.nextInt(8);
+            } while (c == a || c == b);
+            result.append(' ').append(moving[a]).append(' ')
+                .append(moving[b]).append(' ').append(moving[c]).append(' ');
+            for (int i = 0; i < 4; i++) {
+                result.append(UPPER_STRING.charAt(random.nextInt(26)));
+            }
+            if (random.nextBoolean()) {
+                result.append(" (AQ) (EP)");
+            }
+            result.append('\n');
+            for (int n = 1 + random.nextInt(lines); n > 0; n--) {
+                for (int i = random.nextInt(70); i > 0; i--) {
+                    int x = random.nextInt(30);
+                    result.append(x >= 26 ? ' '
+                                  : x >= 20 ? (char) ('a' + x)
+                                  : UPPER_STRING.charAt(x));
+                }
+                result.append('\n');
+            }
+        }
+        return result.toString();
+    }
+
     /** The naval rotors in the A (0) setting. */
     static final HashMap<String, String> NAVALA = new HashMap<>();
     static {
@@ -10,7 +10,19 @@ public class UnitTest {
     /** Run the JUnit tests in this package. Add xxxTest.class entries to
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
-        textui.runClasses(PermutationTest.class, MovingRotorTest.class);
+        textui.runClasses(PermutationTest.class, MovingRotorTest.class,
+                          CribLocatorTest.class, OverlapScorerTest.class,
+                          EngineCheckTest.class, MachineTest.class,
+                          SettingsTest.class, MachineStateTest.class,
+                          PositionIndexTest.class, LineReaderTest.class,
+                          GroupWriterTest.class, RotorTablesTest.class,
+                          RotorBankTest.class, PipelineTest.class,
+                          MainTest.class, BatchRunnerTest.class,
+                          SessionStoreTest.class, MultiKeyEngineTest.class,
+                          KeySpaceTest.class, KeySearchTest.class,
+                          PeriodCalculatorTest.class,
+                          CycleCatalogueTest.class, CipherStatsTest.class,
+                          KeySheetTest.class, RotorCatalogueTest.class);
     }
 
 }